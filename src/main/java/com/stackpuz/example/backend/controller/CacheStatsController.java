@@ -0,0 +1,30 @@
+package com.stackpuz.example.backend.controller;
+
+import com.stackpuz.example.backend.service.CacheStatsService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/cache")
+@PreAuthorize("hasRole('ADMIN')")
+public class CacheStatsController {
+    private final CacheStatsService cacheStatsService;
+
+    public CacheStatsController(CacheStatsService cacheStatsService) {
+        this.cacheStatsService = cacheStatsService;
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> getStats() {
+        return cacheStatsService.getSecondLevelCacheStats();
+    }
+
+    @DeleteMapping("/stats")
+    public ResponseEntity<Void> resetStats() {
+        cacheStatsService.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,49 +1,64 @@
 package com.stackpuz.example.backend.controller;
 
+import com.stackpuz.example.backend.dto.CartOperation;
+import com.stackpuz.example.backend.dto.CartTotals;
 import com.stackpuz.example.backend.entity.Cart;
 import com.stackpuz.example.backend.entity.User;
 import com.stackpuz.example.backend.repository.UserRepository;
+import com.stackpuz.example.backend.security.AuthenticatedUser;
+import com.stackpuz.example.backend.security.CurrentUser;
 import com.stackpuz.example.backend.service.CartService;
+import com.stackpuz.example.backend.service.GuestCartCookie;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+
 @Controller
 @RequestMapping("/cart")
 public class CartController {
     private final CartService cartService;
     private final UserRepository userRepository;
+    private final GuestCartCookie guestCartCookie;
 
-    public CartController(CartService cartService, UserRepository userRepository) {
+    public CartController(CartService cartService, UserRepository userRepository, GuestCartCookie guestCartCookie) {
         this.cartService = cartService;
         this.userRepository = userRepository;
+        this.guestCartCookie = guestCartCookie;
     }
 
-    private User getCurrentUser() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null) {
-            return null;
-        }
-        return userRepository.findByUsername(auth.getName()).orElse(null);
+    // A lazy reference: the cart services only use the user's id, so no user row is read
+    private User user(AuthenticatedUser currentUser) {
+        return userRepository.getReferenceById(currentUser.getId());
     }
 
     @GetMapping
-    public String viewCart(Model model) {
-        User user = getCurrentUser();
-        if (user == null) {
-            return "redirect:/login";
+    public String viewCart(@CurrentUser AuthenticatedUser currentUser,
+                           @CookieValue(name = GuestCartCookie.NAME, required = false) String guestCart, Model model) {
+        if (currentUser == null) {
+            // Guests see the cart held in their cookie; rendering it reads products but writes nothing
+            Cart cart = cartService.guestCart(guestCartCookie.read(guestCart));
+            model.addAttribute("cart", cart);
+            model.addAttribute("guest", true);
+            model.addAttribute("subtotal", cart.getSubtotal());
+            model.addAttribute("discountAmount", cart.getDiscountAmount());
+            model.addAttribute("totalPrice", cart.getTotalPrice());
+            return "cart";
         }
 
-        if ("ROLE_ADMIN".equals(user.getRole())) {
+        if (currentUser.isAdmin()) {
             return "redirect:/products";
         }
         
-        Cart cart = cartService.getUserCart(user);
+        Cart cart = cartService.getUserCart(user(currentUser));
         model.addAttribute("cart", cart);
+        model.addAttribute("guest", false);
         model.addAttribute("subtotal", cart.getSubtotal());
         model.addAttribute("discountAmount", cart.getDiscountAmount());
         model.addAttribute("totalPrice", cart.getTotalPrice());
@@ -53,56 +68,96 @@ public class CartController {
     @PostMapping("/add/{productId}")
     @ResponseBody
     public ResponseEntity<String> addToCart(
+            @CurrentUser AuthenticatedUser currentUser,
             @PathVariable Integer productId,
-            @RequestParam(defaultValue = "1") Integer quantity
+            @RequestParam(defaultValue = "1") Integer quantity,
+            @CookieValue(name = GuestCartCookie.NAME, required = false) String guestCart
     ) {
-        User user = getCurrentUser();
-        if (user == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body("Please log in to add items to cart");
+        if (currentUser == null) {
+            try {
+                Map<Integer, Integer> lines = cartService.addToGuestCart(guestCartCookie.read(guestCart), productId, quantity);
+                return ResponseEntity.ok()
+                        .header(HttpHeaders.SET_COOKIE, guestCartCookie.write(lines).toString())
+                        .body("Product added to cart");
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            } catch (EntityNotFoundException e) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+            }
         }
 
-        if ("ROLE_ADMIN".equals(user.getRole())) {
+        if (currentUser.isAdmin()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body("Admins cannot use cart functionality");
         }
         
-        cartService.addToCart(user, productId, quantity);
+        try {
+            cartService.addToCart(user(currentUser), productId, quantity);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
         return ResponseEntity.ok("Product added to cart");
     }
 
+    // Many line changes (a reorder, a restored cart) in one round trip and one transaction
+    @PatchMapping("/api")
+    @ResponseBody
+    public ResponseEntity<CartTotals> applyOperations(@CurrentUser AuthenticatedUser currentUser,
+                                                      @RequestBody List<CartOperation> operations) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (currentUser.isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return ResponseEntity.ok(cartService.applyOperations(user(currentUser), operations));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @DeleteMapping("/remove/{productId}")
     @ResponseBody
-    public ResponseEntity<String> removeFromCart(@PathVariable Integer productId) {
-        User user = getCurrentUser();
-        if (user == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body("Please log in to remove items from cart");
+    public ResponseEntity<String> removeFromCart(
+            @CurrentUser AuthenticatedUser currentUser,
+            @PathVariable Integer productId,
+            @CookieValue(name = GuestCartCookie.NAME, required = false) String guestCart
+    ) {
+        if (currentUser == null) {
+            Map<Integer, Integer> lines = guestCartCookie.read(guestCart);
+            lines.remove(productId);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.SET_COOKIE, guestCartCookie.write(lines).toString())
+                    .body("Product removed from cart");
         }
 
-        if ("ROLE_ADMIN".equals(user.getRole())) {
+        if (currentUser.isAdmin()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body("Admins cannot use cart functionality");
         }
         
-        cartService.removeFromCart(user, productId);
+        cartService.removeFromCart(user(currentUser), productId);
         return ResponseEntity.ok("Product removed from cart");
     }
 
     @PostMapping("/discount/apply")
     @ResponseBody
-    public ResponseEntity<String> applyDiscount(@RequestParam String code) {
-        User user = getCurrentUser();
-        if (user == null) {
+    public ResponseEntity<String> applyDiscount(@CurrentUser AuthenticatedUser currentUser, @RequestParam String code) {
+        if (currentUser == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body("Please log in to apply a discount");
         }
-        if ("ROLE_ADMIN".equals(user.getRole())) {
+        if (currentUser.isAdmin()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body("Admins cannot use cart functionality");
         }
         try {
-            cartService.applyDiscountCode(user, code);
+            cartService.applyDiscountCode(user(currentUser), code);
             return ResponseEntity.ok("Discount applied");
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
@@ -111,17 +166,16 @@ public class CartController {
 
     @DeleteMapping("/discount/clear")
     @ResponseBody
-    public ResponseEntity<String> clearDiscount() {
-        User user = getCurrentUser();
-        if (user == null) {
+    public ResponseEntity<String> clearDiscount(@CurrentUser AuthenticatedUser currentUser) {
+        if (currentUser == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body("Please log in to clear discount");
         }
-        if ("ROLE_ADMIN".equals(user.getRole())) {
+        if (currentUser.isAdmin()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body("Admins cannot use cart functionality");
         }
-        cartService.clearDiscount(user);
+        cartService.clearDiscount(user(currentUser));
         return ResponseEntity.ok("Discount cleared");
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.stackpuz.example.backend.controller;
 
+import com.stackpuz.example.backend.security.PasswordHashingBusyException;
 import com.stackpuz.example.backend.service.UserService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -42,7 +43,12 @@ public class LoginController {
             return "register";
         }
 
-        userService.registerUser(username, password);
+        try {
+            userService.registerUser(username, password);
+        } catch (PasswordHashingBusyException e) {
+            model.addAttribute("error", e.getMessage());
+            return "register";
+        }
         return "redirect:/login";
     }
 }
\ No newline at end of file
@@ -1,55 +1,141 @@
 package com.stackpuz.example.backend.controller;
 
-import com.stackpuz.example.backend.entity.Order;
+import com.stackpuz.example.backend.dto.BulkStatusRequest;
+import com.stackpuz.example.backend.dto.BulkStatusResult;
+import com.stackpuz.example.backend.dto.OrderFilter;
+import com.stackpuz.example.backend.dto.OrderPage;
+import com.stackpuz.example.backend.dto.OrderStatusView;
+import com.stackpuz.example.backend.dto.OrderSummary;
 import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.ExportFormat;
 import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.service.IdempotentCheckoutService;
+import com.stackpuz.example.backend.service.OrderExportService;
 import com.stackpuz.example.backend.service.OrderService;
+import com.stackpuz.example.backend.service.OrderStatusBulkService;
 import com.stackpuz.example.backend.service.UserService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.time.LocalDate;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/orders")
 public class OrderController {
     private final OrderService orderService;
     private final UserService userService;
+    private final OrderStatusBulkService bulkService;
+    private final OrderExportService exportService;
+    private final IdempotentCheckoutService checkoutService;
 
-    public OrderController(OrderService orderService, UserService userService) {
+    public OrderController(OrderService orderService, UserService userService, OrderStatusBulkService bulkService,
+                           OrderExportService exportService, IdempotentCheckoutService checkoutService) {
         this.orderService = orderService;
         this.userService = userService;
+        this.bulkService = bulkService;
+        this.exportService = exportService;
+        this.checkoutService = checkoutService;
     }
     
+    // Admin order table: newest first, one keyset page at a time
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<OrderPage> getOrderPage(@RequestParam(required = false) OrderStatus status,
+                                                  @RequestParam(required = false) String username,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                  @RequestParam(required = false) String after,
+                                                  @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(orderService.getOrderPage(new OrderFilter(status, username, from, to), after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Finance export of live and archived orders, streamed straight from a database cursor
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportOrders(@RequestParam(required = false) String format,
+                                                              @RequestParam(required = false) OrderStatus status,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                              @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.from(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        OrderFilter filter = new OrderFilter(status, null, from, to);
+        String filename = "orders-" + LocalDate.now() + "." + exportFormat.extension();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.contentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(out -> exportService.export(filter, exportFormat, out));
+    }
+
+    // A repeated Idempotency-Key returns the first request's order instead of checking out again
     @PostMapping("/create")
-    public ResponseEntity<Order> createOrder(@AuthenticationPrincipal UserDetails userDetails) {
+    public ResponseEntity<OrderSummary> createOrder(@AuthenticationPrincipal UserDetails userDetails,
+                                                    @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
             User user = userService.findByUsername(userDetails.getUsername())
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-            
-            Order order = orderService.createOrderFromCart(user);
-            return ResponseEntity.ok(order);
+
+            return ResponseEntity.ok(checkoutService.checkout(user, idempotencyKey));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    // Newest first across live and archived orders; follow nextCursor for older pages
+    @GetMapping("/history")
+    public ResponseEntity<OrderPage> getOrderHistory(@AuthenticationPrincipal UserDetails userDetails,
+                                                     @RequestParam(required = false) String after,
+                                                     @RequestParam(required = false) Integer limit) {
+        Optional<User> user = userService.findByUsername(userDetails.getUsername());
+        if (user.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(orderService.getUserOrderHistory(user.get(), after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PutMapping("/{orderId}/status")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Order> updateOrderStatus(@PathVariable Long orderId, 
-                                                 @RequestParam OrderStatus status) {
+    public ResponseEntity<OrderStatusView> updateOrderStatus(@PathVariable Long orderId,
+                                                             @RequestParam OrderStatus status) {
         try {
-            Order updatedOrder = orderService.updateOrderStatus(orderId, status);
-            return ResponseEntity.ok(updatedOrder);
+            return ResponseEntity.ok(OrderStatusView.from(orderService.updateOrderStatus(orderId, status)));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    // Shipping waves: move many orders at once, by id list or by filter, with per-chunk progress
+    @PostMapping("/status/bulk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkStatusResult> bulkUpdateStatus(@RequestBody BulkStatusRequest request) {
+        try {
+            return ResponseEntity.ok(bulkService.transition(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("/{orderId}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Void> deleteOrder(@PathVariable Long orderId) {
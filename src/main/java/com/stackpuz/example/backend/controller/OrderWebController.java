@@ -1,18 +1,23 @@
 package com.stackpuz.example.backend.controller;
 
-import com.stackpuz.example.backend.entity.Order;
-import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.dto.OrderFilter;
+import com.stackpuz.example.backend.dto.OrderPage;
+import com.stackpuz.example.backend.dto.OrderSummary;
 import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.security.AuthenticatedUser;
+import com.stackpuz.example.backend.security.CurrentUser;
 import com.stackpuz.example.backend.service.OrderService;
 import com.stackpuz.example.backend.service.UserService;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import java.time.LocalDate;
 import java.util.List;
+
 @Controller
 @RequestMapping("/orders")
 public class OrderWebController {
@@ -25,18 +30,41 @@ public class OrderWebController {
     }
 
     @GetMapping
-    public String viewOrders(Model model) {
-        User user = getCurrentUser();
-        if (user == null) {
+    public String viewOrders(@CurrentUser AuthenticatedUser currentUser,
+                             @RequestParam(required = false) OrderStatus status,
+                             @RequestParam(required = false) String username,
+                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                             @RequestParam(required = false) String after,
+                             Model model) {
+        if (currentUser == null) {
             return "redirect:/login";
         }
 
-        List<Order> orders;
-        if ("ROLE_ADMIN".equals(user.getRole())) {
-            orders = orderService.getAllOrders();
+        List<OrderSummary> orders;
+        if (currentUser.isAdmin()) {
+            // Admins see every order, so page through them instead of loading the whole table
+            OrderFilter filter = new OrderFilter(status, username, from, to);
+            OrderPage page;
+            try {
+                page = orderService.getOrderPage(filter, after, null);
+            } catch (IllegalArgumentException e) {
+                return "redirect:/orders";
+            }
+            orders = page.items();
+            model.addAttribute("page", page);
+            model.addAttribute("filter", filter);
             model.addAttribute("isAdmin", true);
         } else {
-            orders = orderService.getUserOrders(user);
+            // Older history, including archived orders, is paged in on demand
+            OrderPage page;
+            try {
+                page = orderService.getUserOrderHistory(userService.getReference(currentUser), after, null);
+            } catch (IllegalArgumentException e) {
+                return "redirect:/orders";
+            }
+            orders = page.items();
+            model.addAttribute("page", page);
             model.addAttribute("isAdmin", false);
         }
 
@@ -44,12 +72,4 @@ public class OrderWebController {
         model.addAttribute("orderStatuses", OrderStatus.values());  // Add this line
         return "orders";
     }
-
-    private User getCurrentUser() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null) {
-            return null;
-        }
-        return userService.findByUsername(auth.getName()).orElse(null);
-    }
 }
\ No newline at end of file
@@ -1,8 +1,13 @@
 package com.stackpuz.example.backend.controller;
 
+import com.stackpuz.example.backend.dto.ProductPage;
+import com.stackpuz.example.backend.dto.ProductSuggestion;
 import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.enums.ProductSort;
 import com.stackpuz.example.backend.service.ProductService;
 import com.stackpuz.example.backend.service.DiscountCodeService;
+import com.stackpuz.example.backend.service.ReviewService;
+import com.stackpuz.example.backend.service.StockService;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -18,22 +23,68 @@ import java.util.List;
 public class ProductController {
     private final ProductService service;
     private final DiscountCodeService discountCodeService;
+    private final ReviewService reviewService;
+    private final StockService stockService;
 
-    public ProductController(ProductService service, DiscountCodeService discountCodeService) {
+    public ProductController(ProductService service,
+                             DiscountCodeService discountCodeService,
+                             ReviewService reviewService,
+                             StockService stockService) {
         this.service = service;
         this.discountCodeService = discountCodeService;
+        this.reviewService = reviewService;
+        this.stockService = stockService;
+    }
+
+    // Ratings for every card on the page in one grouped query instead of one request per card
+    private void addRatingSummaries(Model model, List<Product> products) {
+        List<Integer> ids = products.stream().map(Product::getId).toList();
+        model.addAttribute("ratingSummaries", reviewService.getRatingSummaries(ids));
     }
 
     @GetMapping
     @Secured({"ROLE_ADMIN", "ROLE_VIEWER"})  // Allow both ADMIN and VIEWER roles
-    public String getProducts(Model model) {
-        List<Product> products = service.getProducts();
+    public String getProducts(@RequestParam(required = false) String sort,
+                              @RequestParam(required = false) String after,
+                              @RequestParam(required = false) Integer limit,
+                              Model model) {
+        ProductPage page;
+        try {
+            page = service.getProductPage(ProductSort.from(sort), after, limit);
+        } catch (IllegalArgumentException e) {
+            // Stale or tampered cursor: start over from the first page
+            return "redirect:/products";
+        }
+        List<Product> products = page.items();
         model.addAttribute("products", products);
+        model.addAttribute("page", page);
+        addRatingSummaries(model, products);
         discountCodeService.getActiveBanner().ifPresent(dc -> model.addAttribute("activeDiscount", dc));
         model.addAttribute("activeDiscounts", discountCodeService.getAllActive());
         return "products";
     }
 
+    // JSON variant of the catalog page, e.g. /products/api?sort=price&after=...&limit=50
+    @GetMapping("/api")
+    @ResponseBody
+    public ResponseEntity<?> getProductPageApi(@RequestParam(required = false) String sort,
+                                               @RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(service.getProductPage(ProductSort.from(sort), after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Autocomplete for the search box, ranked by popularity
+    @GetMapping("/api/suggest")
+    @ResponseBody
+    public List<ProductSuggestion> suggestProducts(@RequestParam(defaultValue = "") String prefix,
+                                                   @RequestParam(defaultValue = "8") int limit) {
+        return service.suggestProducts(prefix, limit);
+    }
+
     // Provide API endpoint to fetch a product by ID for client-side modal usage
     @GetMapping("/api/{id}")
     @ResponseBody
@@ -69,6 +120,28 @@ public class ProductController {
         }
     }
 
+    // Units on hand; 404 when the product is not stock-tracked
+    @GetMapping("/api/{id}/stock")
+    @ResponseBody
+    public ResponseEntity<Integer> getStock(@PathVariable int id) {
+        return stockService.getStock(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PutMapping("/api/{id}/stock")
+    @Secured("ROLE_ADMIN")  // Only ADMIN can restock
+    @ResponseBody
+    public ResponseEntity<?> setStock(@PathVariable int id, @RequestParam int quantity) {
+        try {
+            return ResponseEntity.ok(stockService.setStock(id, quantity));
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @GetMapping("/search")
     @Secured({"ROLE_ADMIN", "ROLE_VIEWER"})
     public String searchProducts(
@@ -92,6 +165,7 @@ public class ProductController {
         }
 
         model.addAttribute("products", products);
+        addRatingSummaries(model, products);
         return "products";
     }
 }
\ No newline at end of file
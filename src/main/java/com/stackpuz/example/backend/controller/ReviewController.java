@@ -1,15 +1,14 @@
 package com.stackpuz.example.backend.controller;
 
+import com.stackpuz.example.backend.dto.RatingSummary;
 import com.stackpuz.example.backend.entity.Review;
-import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.security.AuthenticatedUser;
+import com.stackpuz.example.backend.security.CurrentUser;
 import com.stackpuz.example.backend.service.ReviewService;
-import com.stackpuz.example.backend.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -22,21 +21,12 @@ import java.util.Map;
 public class ReviewController {
 
     private final ReviewService reviewService;
-    private final UserRepository userRepository;
-
-    private User currentUser() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null) return null;
-        return userRepository.findByUsername(auth.getName()).orElse(null);
-    }
 
     @GetMapping("/product/{productId}")
-    public Map<String, Object> getReviewsForProduct(@PathVariable int productId) {
+    public Map<String, Object> getReviewsForProduct(@CurrentUser AuthenticatedUser me, @PathVariable int productId) {
         List<Review> reviews = reviewService.getReviewsForProduct(productId);
-        Double average = reviewService.getAverageRating(productId);
-        Long count = reviewService.getReviewCount(productId);
+        RatingSummary summary = reviewService.getRatingSummary(productId);
 
-        User me = currentUser();
         List<Map<String, Object>> items = reviews.stream().map(r -> {
             Map<String, Object> m = new HashMap<>();
             m.put("id", r.getId());
@@ -49,25 +39,35 @@ public class ReviewController {
         }).toList();
 
         Map<String, Object> payload = new HashMap<>();
-        payload.put("average", average);
-        payload.put("count", count);
+        payload.put("average", summary.average());
+        payload.put("count", summary.count());
         payload.put("items", items);
         return payload;
     }
 
+    // Average and count for many products at once, e.g. /reviews/api/summary?ids=1,2,3
+    @GetMapping("/summary")
+    public ResponseEntity<?> getRatingSummaries(@RequestParam List<Integer> ids) {
+        try {
+            return ResponseEntity.ok(reviewService.getRatingSummaries(ids));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping("/product/{productId}")
-    public ResponseEntity<?> addOrUpdateReview(@PathVariable int productId,
+    public ResponseEntity<?> addOrUpdateReview(@CurrentUser AuthenticatedUser me,
+                                               @PathVariable int productId,
                                                @RequestParam int rating,
                                                @RequestParam(required = false) String comment) {
-        User me = currentUser();
         if (me == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Please login to submit a review");
         }
-        if ("ROLE_ADMIN".equals(me.getRole())) {
+        if (me.isAdmin()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Admins cannot create or edit reviews");
         }
         try {
-            Review r = reviewService.addOrUpdateReview(productId, me.getUsername(), rating, comment);
+            Review r = reviewService.addOrUpdateReview(productId, me.getId(), rating, comment);
             return ResponseEntity.ok(r.getId());
         } catch (IllegalArgumentException | EntityNotFoundException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
@@ -75,18 +75,18 @@ public class ReviewController {
     }
 
     @PutMapping("/{reviewId}")
-    public ResponseEntity<?> updateReview(@PathVariable Long reviewId,
+    public ResponseEntity<?> updateReview(@CurrentUser AuthenticatedUser me,
+                                          @PathVariable Long reviewId,
                                           @RequestParam int rating,
                                           @RequestParam(required = false) String comment) {
-        User me = currentUser();
         if (me == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Please login");
         }
-        if ("ROLE_ADMIN".equals(me.getRole())) {
+        if (me.isAdmin()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Admins cannot edit reviews");
         }
         try {
-            reviewService.updateReview(reviewId, me.getUsername(), rating, comment);
+            reviewService.updateReview(reviewId, me.getId(), rating, comment);
             return ResponseEntity.ok().build();
         } catch (SecurityException ex) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ex.getMessage());
@@ -96,16 +96,15 @@ public class ReviewController {
     }
 
     @DeleteMapping("/{reviewId}")
-    public ResponseEntity<?> deleteReview(@PathVariable Long reviewId) {
-        User me = currentUser();
+    public ResponseEntity<?> deleteReview(@CurrentUser AuthenticatedUser me, @PathVariable Long reviewId) {
         if (me == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Please login");
         }
-        if ("ROLE_ADMIN".equals(me.getRole())) {
+        if (me.isAdmin()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Admins cannot delete reviews");
         }
         try {
-            reviewService.deleteReview(reviewId, me.getUsername());
+            reviewService.deleteReview(reviewId, me.getId());
             return ResponseEntity.ok().build();
         } catch (SecurityException ex) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ex.getMessage());
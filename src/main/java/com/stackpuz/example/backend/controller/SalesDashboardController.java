@@ -0,0 +1,42 @@
+package com.stackpuz.example.backend.controller;
+
+import com.stackpuz.example.backend.dto.SalesDashboard;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.service.SalesRollupService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/admin/sales")
+@PreAuthorize("hasRole('ADMIN')")
+public class SalesDashboardController {
+    private final SalesRollupService salesRollupService;
+
+    public SalesDashboardController(SalesRollupService salesRollupService) {
+        this.salesRollupService = salesRollupService;
+    }
+
+    @GetMapping
+    public ResponseEntity<SalesDashboard> getDashboard(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Set<OrderStatus> status) {
+        try {
+            return ResponseEntity.ok(salesRollupService.getDashboard(from, to, status));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Backfill: rebuild the rollups from order history
+    @PostMapping("/rebuild")
+    public ResponseEntity<Void> rebuild() {
+        salesRollupService.rebuild();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -3,11 +3,11 @@ package com.stackpuz.example.backend.controller;
 import com.stackpuz.example.backend.entity.User;
 import com.stackpuz.example.backend.entity.Wishlist;
 import com.stackpuz.example.backend.repository.UserRepository;
+import com.stackpuz.example.backend.security.AuthenticatedUser;
+import com.stackpuz.example.backend.security.CurrentUser;
 import com.stackpuz.example.backend.service.WishlistService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -23,63 +23,57 @@ public class WishlistController {
         this.userRepository = userRepository;
     }
 
-    private User getCurrentUser() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null) {
-            return null;
-        }
-        return userRepository.findByUsername(auth.getName()).orElse(null);
+    // A lazy reference: the wishlist services only use the user's id, so no user row is read
+    private User user(AuthenticatedUser currentUser) {
+        return userRepository.getReferenceById(currentUser.getId());
     }
 
     @GetMapping
-    public String viewWishlist(Model model) {
-        User user = getCurrentUser();
-        if (user == null) {
+    public String viewWishlist(@CurrentUser AuthenticatedUser currentUser, Model model) {
+        if (currentUser == null) {
             return "redirect:/login";
         }
 
-        if ("ROLE_ADMIN".equals(user.getRole())) {
+        if (currentUser.isAdmin()) {
             return "redirect:/products";
         }
 
-        Wishlist wishlist = wishlistService.getUserWishlist(user);
+        Wishlist wishlist = wishlistService.getUserWishlist(user(currentUser));
         model.addAttribute("wishlist", wishlist);
         return "wishlist";
     }
 
     @PostMapping("/add/{productId}")
     @ResponseBody
-    public ResponseEntity<String> addToWishlist(@PathVariable Integer productId) {
-        User user = getCurrentUser();
-        if (user == null) {
+    public ResponseEntity<String> addToWishlist(@CurrentUser AuthenticatedUser currentUser, @PathVariable Integer productId) {
+        if (currentUser == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body("Please log in to add items to wishlist");
         }
 
-        if ("ROLE_ADMIN".equals(user.getRole())) {
+        if (currentUser.isAdmin()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body("Admins cannot use wishlist functionality");
         }
 
-        wishlistService.addToWishlist(user, productId);
+        wishlistService.addToWishlist(user(currentUser), productId);
         return ResponseEntity.ok("Product added to wishlist");
     }
 
     @DeleteMapping("/remove/{productId}")
     @ResponseBody
-    public ResponseEntity<String> removeFromWishlist(@PathVariable Integer productId) {
-        User user = getCurrentUser();
-        if (user == null) {
+    public ResponseEntity<String> removeFromWishlist(@CurrentUser AuthenticatedUser currentUser, @PathVariable Integer productId) {
+        if (currentUser == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body("Please log in to remove items from wishlist");
         }
 
-        if ("ROLE_ADMIN".equals(user.getRole())) {
+        if (currentUser.isAdmin()) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body("Admins cannot use wishlist functionality");
         }
 
-        wishlistService.removeFromWishlist(user, productId);
+        wishlistService.removeFromWishlist(user(currentUser), productId);
         return ResponseEntity.ok("Product removed from wishlist");
     }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.stackpuz.example.backend.dto;
+
+import com.stackpuz.example.backend.enums.OrderStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Bulk transition to `target`, either for explicit order ids or for every order matching the filter fields
+public record BulkStatusRequest(OrderStatus target, List<Long> ids,
+                                OrderStatus status, String username, LocalDate from, LocalDate to) {
+
+    public boolean hasIds() {
+        return ids != null && !ids.isEmpty();
+    }
+
+    public OrderFilter filter() {
+        return new OrderFilter(status, username, from, to);
+    }
+}
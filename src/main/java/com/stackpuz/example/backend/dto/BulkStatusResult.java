@@ -0,0 +1,12 @@
+package com.stackpuz.example.backend.dto;
+
+import com.stackpuz.example.backend.enums.OrderStatus;
+
+import java.util.List;
+
+// Outcome of a bulk transition; skipped counts requested ids that were missing or not in an allowed status
+public record BulkStatusResult(OrderStatus target, long updated, long skipped, List<Chunk> chunks) {
+
+    public record Chunk(int index, int size, int updated) {
+    }
+}
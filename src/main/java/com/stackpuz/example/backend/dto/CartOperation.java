@@ -0,0 +1,7 @@
+package com.stackpuz.example.backend.dto;
+
+import com.stackpuz.example.backend.enums.CartOperationType;
+
+// One change in a batch cart update; quantity is ignored for REMOVE
+public record CartOperation(CartOperationType op, Integer productId, Integer quantity) {
+}
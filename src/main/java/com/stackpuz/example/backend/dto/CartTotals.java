@@ -0,0 +1,5 @@
+package com.stackpuz.example.backend.dto;
+
+// A cart's stored totals, read straight from its row
+public record CartTotals(double subtotal, double discountAmount, double totalPrice) {
+}
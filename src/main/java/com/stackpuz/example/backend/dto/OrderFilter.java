@@ -0,0 +1,31 @@
+package com.stackpuz.example.backend.dto;
+
+import com.stackpuz.example.backend.enums.OrderStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Optional filters for the admin order listing; null means "any". Dates are inclusive days.
+public record OrderFilter(OrderStatus status, String username, LocalDate from, LocalDate to) {
+
+    public static OrderFilter none() {
+        return new OrderFilter(null, null, null, null);
+    }
+
+    public boolean isNone() {
+        return status == null && !hasUsername() && from == null && to == null;
+    }
+
+    public boolean hasUsername() {
+        return username != null && !username.isBlank();
+    }
+
+    public LocalDateTime fromInclusive() {
+        return from == null ? null : from.atStartOfDay();
+    }
+
+    // The "to" day is inclusive, so the bound is the start of the next day
+    public LocalDateTime toExclusive() {
+        return to == null ? null : to.plusDays(1).atStartOfDay();
+    }
+}
@@ -0,0 +1,17 @@
+package com.stackpuz.example.backend.dto;
+
+import com.stackpuz.example.backend.entity.ArchivedOrderItem;
+import com.stackpuz.example.backend.entity.OrderItem;
+
+// One order line as shown to clients: product reference plus the price paid
+public record OrderLine(Integer productId, String productName, int quantity, double priceAtOrder) {
+
+    public static OrderLine from(OrderItem item) {
+        return new OrderLine(item.getProduct().getId(), item.getProduct().getName(),
+                item.getQuantity(), item.getPriceAtOrder());
+    }
+
+    public static OrderLine from(ArchivedOrderItem item) {
+        return new OrderLine(item.getProductId(), item.getProductName(), item.getQuantity(), item.getPriceAtOrder());
+    }
+}
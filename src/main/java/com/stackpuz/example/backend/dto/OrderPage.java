@@ -0,0 +1,11 @@
+package com.stackpuz.example.backend.dto;
+
+import java.util.List;
+
+// One keyset page of orders, newest first; nextCursor is null on the last page
+public record OrderPage(List<OrderSummary> items, int limit, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
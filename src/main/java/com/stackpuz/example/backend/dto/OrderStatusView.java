@@ -0,0 +1,12 @@
+package com.stackpuz.example.backend.dto;
+
+import com.stackpuz.example.backend.entity.Order;
+import com.stackpuz.example.backend.enums.OrderStatus;
+
+// Response to a status change: the admin table only needs to confirm the new status
+public record OrderStatusView(Long id, OrderStatus status) {
+
+    public static OrderStatusView from(Order order) {
+        return new OrderStatusView(order.getId(), order.getStatus());
+    }
+}
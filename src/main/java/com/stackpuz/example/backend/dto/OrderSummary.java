@@ -0,0 +1,26 @@
+package com.stackpuz.example.backend.dto;
+
+import com.stackpuz.example.backend.entity.ArchivedOrder;
+import com.stackpuz.example.backend.entity.Order;
+import com.stackpuz.example.backend.enums.OrderStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Read model of an order; carries only what the orders views render, never the User entity
+public record OrderSummary(Long id, Long userId, String username, LocalDateTime orderDate, double totalPrice,
+                           String discountCode, Double discountPercent, OrderStatus status, List<OrderLine> items) {
+
+    public static OrderSummary from(Order order) {
+        return new OrderSummary(order.getId(), order.getUser().getId(), order.getUser().getUsername(),
+                order.getOrderDate(), order.getTotalPrice(), order.getDiscountCode(), order.getDiscountPercent(),
+                order.getStatus(), order.getItems().stream().map(OrderLine::from).toList());
+    }
+
+    // Archived rows hold only the user id; the caller supplies the name it already knows
+    public static OrderSummary fromArchived(ArchivedOrder order, String username) {
+        return new OrderSummary(order.getId(), order.getUserId(), username,
+                order.getOrderDate(), order.getTotalPrice(), order.getDiscountCode(), order.getDiscountPercent(),
+                order.getStatus(), order.getItems().stream().map(OrderLine::from).toList());
+    }
+}
@@ -0,0 +1,13 @@
+package com.stackpuz.example.backend.dto;
+
+import com.stackpuz.example.backend.entity.Product;
+
+import java.util.List;
+
+// One keyset page of the catalog; nextCursor is null on the last page
+public record ProductPage(List<Product> items, String sort, int limit, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
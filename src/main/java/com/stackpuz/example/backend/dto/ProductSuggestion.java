@@ -0,0 +1,4 @@
+package com.stackpuz.example.backend.dto;
+
+public record ProductSuggestion(int id, String name) {
+}
@@ -0,0 +1,9 @@
+package com.stackpuz.example.backend.dto;
+
+// Average rating and review count for a single product
+public record RatingSummary(Integer productId, Double average, Long count) {
+
+    public static RatingSummary empty(Integer productId) {
+        return new RatingSummary(productId, 0.0, 0L);
+    }
+}
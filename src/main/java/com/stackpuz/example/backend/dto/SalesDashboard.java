@@ -0,0 +1,23 @@
+package com.stackpuz.example.backend.dto;
+
+import com.stackpuz.example.backend.enums.OrderStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Sales over an inclusive day range, read from the rollup tables only
+public record SalesDashboard(LocalDate from, LocalDate to, Set<OrderStatus> statuses,
+                             Totals total, List<Day> days, Map<OrderStatus, Totals> byStatus,
+                             List<ProductLine> topProducts) {
+
+    public record Totals(long orders, long units, double revenue) {
+    }
+
+    public record Day(LocalDate day, long orders, long units, double revenue) {
+    }
+
+    public record ProductLine(Integer productId, String name, long units, double revenue) {
+    }
+}
@@ -0,0 +1,40 @@
+package com.stackpuz.example.backend.entity;
+
+import com.stackpuz.example.backend.enums.OrderStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Cold copy of a finished order; rows keep their original ids and are only ever read
+@Entity
+@Table(name = "orders_archive", indexes = {
+        // Archived history of one user, newest first
+        @Index(name = "idx_orders_archive_user_date_id", columnList = "user_id, orderDate, id"),
+        // Finance export walks the archive oldest first
+        @Index(name = "idx_orders_archive_date_id", columnList = "orderDate, id")
+})
+@Data
+public class ArchivedOrder {
+    @Id
+    private Long id;
+
+    // Plain column rather than a relation so archived rows never constrain user changes
+    @Column(name = "user_id")
+    private Long userId;
+
+    @OneToMany(mappedBy = "order")
+    private List<ArchivedOrderItem> items = new ArrayList<>();
+
+    private double totalPrice;
+    private String discountCode;
+    private Double discountPercent;
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    private LocalDateTime archivedAt;
+}
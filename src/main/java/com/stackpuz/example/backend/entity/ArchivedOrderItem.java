@@ -0,0 +1,28 @@
+package com.stackpuz.example.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+// Archived order line; the product name is copied so history survives product changes
+@Entity
+@Table(name = "order_item_archive")
+@Data
+public class ArchivedOrderItem {
+    @Id
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private ArchivedOrder order;
+
+    @Column(name = "product_id")
+    private Integer productId;
+
+    private String productName;
+    private Integer quantity;
+    private double priceAtOrder;
+}
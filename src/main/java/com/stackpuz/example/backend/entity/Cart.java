@@ -6,13 +6,23 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(name = "cart", uniqueConstraints = {
+        // One cart per user, even when the first requests of a session race to create it
+        @UniqueConstraint(name = "uk_cart_user", columnNames = "user_id")
+})
 @Data
 public class Cart {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
-    @OneToOne
+    // Concurrent writes to the cart row fail the losing transaction instead of overwriting; CartService retries it
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long version;
+
+    // Lazy, so loading the cart never reads the user row; callers only need the user's id
+    @OneToOne(fetch = FetchType.LAZY)
     private User user;
 
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
@@ -22,19 +32,20 @@ public class Cart {
     private String appliedDiscountCode;
     private Double appliedDiscountPercent; // null means no discount
 
-    public double getSubtotal() {
-        return items.stream()
-                .mapToDouble(item -> item.getProduct().getPrice() * item.getQuantity())
-                .sum();
-    }
+    // Stored instead of summed over the lines on every read. Only CartRepository statements write them, each
+    // a delta or recompute on the row, so a stale entity never overwrites them; CartService reconciles drift
+    @Column(insertable = false, updatable = false, columnDefinition = "double default 0 not null")
+    private double subtotal;
 
-    public double getDiscountAmount() {
-        if (appliedDiscountPercent == null || appliedDiscountPercent <= 0) return 0.0;
-        return getSubtotal() * (appliedDiscountPercent / 100.0);
-    }
+    @Column(insertable = false, updatable = false, columnDefinition = "double default 0 not null")
+    private double discountAmount;
+
+    @Column(insertable = false, updatable = false, columnDefinition = "double default 0 not null")
+    private double totalPrice;
 
-    public double getTotalPrice() {
-        double total = getSubtotal() - getDiscountAmount();
-        return Math.max(total, 0.0);
+    // Discount in currency for a subtotal, rounded to cents like the stored totals
+    public static double discountOf(double subtotal, Double percent) {
+        if (percent == null || percent <= 0) return 0.0;
+        return Math.round(subtotal * percent) / 100.0;
     }
-}
\ No newline at end of file
+}
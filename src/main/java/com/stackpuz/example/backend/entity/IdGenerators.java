@@ -0,0 +1,33 @@
+package com.stackpuz.example.backend.entity;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Shared settings for the table-backed pooled id generators.
+ * MySQL has no sequences, and IDENTITY ids force Hibernate to insert rows one at a time;
+ * a pooled table generator hands out blocks of ids so inserts can be JDBC-batched.
+ */
+public final class IdGenerators {
+    public static final String TABLE = "id_generator";
+    public static final String NAME_COLUMN = "gen_name";
+    public static final String VALUE_COLUMN = "gen_value";
+
+    // Ids reserved per round trip to the generator table
+    public static final int ALLOCATION_SIZE = 50;
+
+    private IdGenerators() {
+    }
+
+    // Next id from the entity's own generator, for rows written by native SQL instead of persist().
+    // Uses a throwaway session, so it works outside a transaction; a refill takes its own connection.
+    public static Object next(EntityManagerFactory entityManagerFactory, Class<?> entityType) {
+        try (Session session = entityManagerFactory.unwrap(SessionFactory.class).openSession()) {
+            SharedSessionContractImplementor source = session.unwrap(SharedSessionContractImplementor.class);
+            return source.getFactory().getMappingMetamodel().getEntityDescriptor(entityType)
+                    .getIdentifierGenerator().generate(source, null);
+        }
+    }
+}
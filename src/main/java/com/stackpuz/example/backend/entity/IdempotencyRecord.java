@@ -0,0 +1,43 @@
+package com.stackpuz.example.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Outcome of a checkout sent with an Idempotency-Key; keys are scoped to the user who sent them
+@Entity
+@Table(name = "idempotency_key", indexes = {
+        @Index(name = "idx_idempotency_key_created_at", columnList = "createdAt")
+})
+@IdClass(IdempotencyRecord.Key.class)
+@Data
+public class IdempotencyRecord {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "idempotency_key", length = 100)
+    private String idempotencyKey;
+
+    // Both stay null while the first request is still running; that row lock is what holds back duplicates
+    private Long orderId;
+
+    // The OrderSummary JSON returned to the first request
+    @Column(columnDefinition = "TEXT")
+    private String response;
+
+    private LocalDateTime createdAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long userId;
+        private String idempotencyKey;
+    }
+}
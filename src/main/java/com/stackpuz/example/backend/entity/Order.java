@@ -10,11 +10,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")  // using 'orders' as 'order' is a reserved SQL keyword
+@Table(name = "orders", indexes = {  // using 'orders' as 'order' is a reserved SQL keyword
+        // Keyset pagination of the admin listing, newest first, with and without filters
+        @Index(name = "idx_orders_date_id", columnList = "orderDate, id"),
+        @Index(name = "idx_orders_status_date_id", columnList = "status, orderDate, id"),
+        @Index(name = "idx_orders_user_date_id", columnList = "user_id, orderDate, id")
+})
 @Data
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "orders_id")
+    @TableGenerator(name = "orders_id", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "orders", allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne
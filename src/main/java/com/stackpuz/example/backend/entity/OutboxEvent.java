@@ -0,0 +1,47 @@
+package com.stackpuz.example.backend.entity;
+
+import com.stackpuz.example.backend.enums.OutboxStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// An event written in the same transaction as the change it describes; OutboxDispatcher delivers and deletes it
+@Entity
+@Table(name = "outbox_event", indexes = {
+        // Dispatcher scan: due events in insertion order
+        @Index(name = "idx_outbox_status_available_id", columnList = "status, availableAt, id"),
+        @Index(name = "idx_outbox_lease", columnList = "leaseToken")
+})
+@Data
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Simple name of the event record, e.g. OrderPlaced
+    @Column(nullable = false, length = 100)
+    private String type;
+
+    private Long aggregateId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private OutboxStatus status = OutboxStatus.PENDING;
+
+    private int attempts;
+    private LocalDateTime createdAt;
+
+    // Next delivery attempt; pushed out by the claim lease and by retry backoff
+    private LocalDateTime availableAt;
+
+    // Set by the dispatcher instance that claimed the event
+    @Column(length = 36)
+    private String leaseToken;
+
+    @Column(length = 1000)
+    private String lastError;
+}
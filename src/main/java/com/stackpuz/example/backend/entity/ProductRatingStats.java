@@ -0,0 +1,37 @@
+package com.stackpuz.example.backend.entity;
+
+import com.stackpuz.example.backend.dto.RatingSummary;
+import jakarta.persistence.*;
+import lombok.Data;
+
+// Read model kept in step with the review table by ReviewService (delta updates)
+@Entity
+@Data
+@Table(name = "product_rating_stats")
+public class ProductRatingStats {
+    @Id
+    @Column(name = "product_id")
+    private Integer productId;
+
+    private long ratingSum;
+    private long ratingCount;
+
+    // Histogram: number of reviews per star value
+    private long stars1;
+    private long stars2;
+    private long stars3;
+    private long stars4;
+    private long stars5;
+
+    public double getAverage() {
+        return ratingCount <= 0 ? 0.0 : (double) ratingSum / ratingCount;
+    }
+
+    public long[] getHistogram() {
+        return new long[] {stars1, stars2, stars3, stars4, stars5};
+    }
+
+    public RatingSummary toSummary() {
+        return new RatingSummary(productId, getAverage(), Math.max(ratingCount, 0L));
+    }
+}
@@ -0,0 +1,44 @@
+package com.stackpuz.example.backend.entity;
+
+import com.stackpuz.example.backend.enums.OrderStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Rollup of order lines per day, product and status; maintained incrementally by SalesRollupService
+@Entity
+@Table(name = "product_sales_daily")
+@IdClass(ProductSalesDaily.Key.class)
+@Data
+public class ProductSalesDaily {
+    @Id
+    @Column(name = "sales_day")
+    private LocalDate salesDay;
+
+    @Id
+    @Column(name = "product_id")
+    private Integer productId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private OrderStatus status;
+
+    private long units;
+
+    // Sum of quantity * priceAtOrder, i.e. before order-level discounts
+    private double revenue;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate salesDay;
+        private Integer productId;
+        private OrderStatus status;
+    }
+}
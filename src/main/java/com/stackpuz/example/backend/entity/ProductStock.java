@@ -0,0 +1,21 @@
+package com.stackpuz.example.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Units on hand per product; kept out of the cached Product row because checkout writes it constantly.
+// A product without a row is not stock-tracked and never runs out.
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "product_stock")
+public class ProductStock {
+    @Id
+    @Column(name = "product_id")
+    private Integer productId;
+
+    private int quantity;
+}
@@ -0,0 +1,40 @@
+package com.stackpuz.example.backend.entity;
+
+import com.stackpuz.example.backend.enums.OrderStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Rollup of orders per day and status; maintained incrementally by SalesRollupService
+@Entity
+@Table(name = "sales_daily")
+@IdClass(SalesDaily.Key.class)
+@Data
+public class SalesDaily {
+    @Id
+    @Column(name = "sales_day")
+    private LocalDate salesDay;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private OrderStatus status;
+
+    private long orderCount;
+    private long units;
+
+    // Sum of order totals, i.e. after discounts
+    private double revenue;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate salesDay;
+        private OrderStatus status;
+    }
+}
@@ -0,0 +1,6 @@
+package com.stackpuz.example.backend.enums;
+
+// Batch cart changes: ADD bumps or creates a line, SET changes an existing line (0 removes it), REMOVE drops it
+public enum CartOperationType {
+    ADD, SET, REMOVE
+}
@@ -0,0 +1,6 @@
+package com.stackpuz.example.backend.enums;
+
+// Where cart line changes go first: WRITE_THROUGH writes each to the database, WRITE_BEHIND keeps them in memory and flushes in batches
+public enum CartStoreMode {
+    WRITE_THROUGH, WRITE_BEHIND
+}
@@ -0,0 +1,31 @@
+package com.stackpuz.example.backend.enums;
+
+// Order export formats: CSV has one row per order line, NDJSON one JSON order per line
+public enum ExportFormat {
+    CSV("text/csv"), NDJSON("application/x-ndjson");
+
+    private final String contentType;
+
+    ExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public String extension() {
+        return name().toLowerCase();
+    }
+
+    public static ExportFormat from(String value) {
+        if (value == null || value.isBlank()) {
+            return CSV;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported export format: " + value);
+        }
+    }
+}
@@ -1,5 +1,29 @@
 package com.stackpuz.example.backend.enums;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum OrderStatus {
-    PLACED, PROCESSING, SHIPPED, DELIVERED, CANCELED
-}
\ No newline at end of file
+    PLACED, PROCESSING, SHIPPED, DELIVERED, CANCELED;
+
+    // Forward-only lifecycle enforced by bulk transitions; DELIVERED and CANCELED are final
+    public boolean canTransitionTo(OrderStatus next) {
+        return switch (this) {
+            case PLACED -> next == PROCESSING || next == CANCELED;
+            case PROCESSING -> next == SHIPPED || next == CANCELED;
+            case SHIPPED -> next == DELIVERED;
+            case DELIVERED, CANCELED -> false;
+        };
+    }
+
+    // Statuses an order may be in to move to the given one
+    public static Set<OrderStatus> sourcesOf(OrderStatus target) {
+        Set<OrderStatus> sources = EnumSet.noneOf(OrderStatus.class);
+        for (OrderStatus status : values()) {
+            if (status.canTransitionTo(target)) {
+                sources.add(status);
+            }
+        }
+        return sources;
+    }
+}
@@ -0,0 +1,6 @@
+package com.stackpuz.example.backend.enums;
+
+// FAILED events ran out of retries and are left for inspection
+public enum OutboxStatus {
+    PENDING, FAILED
+}
@@ -0,0 +1,17 @@
+package com.stackpuz.example.backend.enums;
+
+// Catalog sort orders supported by keyset pagination (ties broken by id)
+public enum ProductSort {
+    ID, PRICE, NAME;
+
+    public static ProductSort from(String value) {
+        if (value == null || value.isBlank()) {
+            return ID;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported sort: " + value);
+        }
+    }
+}
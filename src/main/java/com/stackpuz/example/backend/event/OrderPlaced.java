@@ -0,0 +1,24 @@
+package com.stackpuz.example.backend.event;
+
+import com.stackpuz.example.backend.entity.Order;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Published through the outbox once a checkout commits; carries everything consumers need so they never re-read the order
+public record OrderPlaced(Long orderId, Long userId, LocalDateTime orderDate, double totalPrice, List<Line> lines) {
+
+    public record Line(Integer productId, int quantity, double priceAtOrder) {
+    }
+
+    public static OrderPlaced from(Order order) {
+        return new OrderPlaced(order.getId(), order.getUser().getId(), order.getOrderDate(), order.getTotalPrice(),
+                order.getItems().stream()
+                        .map(item -> new Line(item.getProduct().getId(), item.getQuantity(), item.getPriceAtOrder()))
+                        .toList());
+    }
+
+    public int units() {
+        return lines.stream().mapToInt(Line::quantity).sum();
+    }
+}
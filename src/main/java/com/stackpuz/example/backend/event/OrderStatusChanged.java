@@ -0,0 +1,7 @@
+package com.stackpuz.example.backend.event;
+
+import com.stackpuz.example.backend.enums.OrderStatus;
+
+// Published through the outbox for every order whose status changed, singly or in bulk
+public record OrderStatusChanged(Long orderId, Long userId, OrderStatus from, OrderStatus to) {
+}
@@ -0,0 +1,78 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.entity.ArchivedOrder;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+// Native writes declare the table they touch; otherwise Hibernate evicts the whole second-level cache
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedOrder, Long> {
+
+    // One archival batch: finished orders past the cutoff, locked until the batch commits
+    @Query(value = "select id from orders where status in (:statuses) and order_date < :cutoff " +
+            "limit :batchSize for update", nativeQuery = true)
+    List<Long> lockArchivable(@Param("statuses") Collection<String> statuses,
+                              @Param("cutoff") LocalDateTime cutoff,
+                              @Param("batchSize") int batchSize);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "orders_archive"))
+    @Query(value = "insert into orders_archive " +
+            "(id, user_id, order_date, total_price, discount_code, discount_percent, status, archived_at) " +
+            "select id, user_id, order_date, total_price, discount_code, discount_percent, status, now() " +
+            "from orders where id in (:ids)", nativeQuery = true)
+    int copyOrders(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "order_item_archive"))
+    @Query(value = "insert into order_item_archive (id, order_id, product_id, product_name, quantity, price_at_order) " +
+            "select i.id, i.order_id, i.product_id, p.name, i.quantity, i.price_at_order " +
+            "from order_item i left join product p on p.id = i.product_id where i.order_id in (:ids)", nativeQuery = true)
+    int copyItems(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "order_item"))
+    @Query(value = "delete from order_item where order_id in (:ids)", nativeQuery = true)
+    int deleteLiveItems(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "orders"))
+    @Query(value = "delete from orders where id in (:ids)", nativeQuery = true)
+    int deleteLiveOrders(@Param("ids") Collection<Long> ids);
+
+    // Keyset page of one user's archived orders, newest first; a null afterDate starts from the top
+    @Query("select a from ArchivedOrder a where a.userId = :userId" +
+            " and (:afterDate is null or a.orderDate < :afterDate or (a.orderDate = :afterDate and a.id < :afterId))" +
+            " order by a.orderDate desc, a.id desc")
+    List<ArchivedOrder> findUserPage(@Param("userId") Long userId,
+                                     @Param("afterDate") LocalDateTime afterDate,
+                                     @Param("afterId") Long afterId,
+                                     Pageable pageable);
+
+    // Loads the lines of one page of archived orders in a single query
+    @EntityGraph(attributePaths = "items")
+    List<ArchivedOrder> findWithItemsByIdIn(Collection<Long> ids);
+
+    long countByUserId(Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "order_item_archive"))
+    @Query(value = "delete from order_item_archive where order_id in " +
+            "(select id from orders_archive where user_id = :userId)", nativeQuery = true)
+    int deleteItemsByUserId(@Param("userId") Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "orders_archive"))
+    @Query(value = "delete from orders_archive where user_id = :userId", nativeQuery = true)
+    int deleteByUserId(@Param("userId") Long userId);
+}
@@ -1,13 +1,43 @@
 package com.stackpuz.example.backend.repository;
 
 import com.stackpuz.example.backend.entity.CartItem;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+
+// Native writes declare the table they touch; otherwise Hibernate evicts the whole second-level cache
 public interface CartItemRepository extends JpaRepository<CartItem, Integer> {
+    String TABLE = "cart_item";
+
     @Modifying
     @Query("delete from CartItem ci where ci.product.id = :productId")
     void deleteByProductId(@Param("productId") int productId);
+
+    // Adds a line or bumps an existing one in a single statement; id is only used when a row is inserted
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "insert into cart_item (id, cart_id, product_id, quantity) values (:id, :cartId, :productId, :quantity) " +
+            "on duplicate key update quantity = quantity + values(quantity)", nativeQuery = true)
+    int addQuantity(@Param("id") Integer id,
+                    @Param("cartId") Integer cartId,
+                    @Param("productId") Integer productId,
+                    @Param("quantity") int quantity);
+
+    // The lines a batch is about to touch; read under the cart's row lock, so their quantities cannot move
+    List<CartItem> findByCartIdAndProductIdIn(Integer cartId, Collection<Integer> productIds);
+
+    // The carts holding a product, in id order so repricing them takes their row locks in a stable order
+    @Query("select distinct ci.cart.id from CartItem ci where ci.product.id = :productId order by ci.cart.id")
+    List<Integer> findCartIdsByProductId(@Param("productId") Integer productId);
+
+    @Modifying
+    @Query("delete from CartItem ci where ci.cart.id = :cartId")
+    int deleteByCartId(@Param("cartId") Integer cartId);
 }
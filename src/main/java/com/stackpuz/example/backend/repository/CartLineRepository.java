@@ -0,0 +1,102 @@
+package com.stackpuz.example.backend.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cart lines written as JDBC batches, which the driver rewrites into multi-row statements.
+ * Spring Data native queries run one statement per call; a batch such as a guest cart merged at login,
+ * or a write-behind flush covering many carts, would otherwise cost a round trip per line.
+ */
+@Repository
+public class CartLineRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public record NewLine(Integer id, Integer productId, int quantity) {
+    }
+
+    // A line's quantity as a write-behind flush leaves it; id is only used when the line is inserted
+    public record LineWrite(Integer id, Integer cartId, Integer productId, int quantity) {
+    }
+
+    public CartLineRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Plain inserts: callers hold the cart's row lock and have read that none of these lines exist
+    public void insertLines(Integer cartId, List<NewLine> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("insert into cart_item (id, cart_id, product_id, quantity) values (?, ?, ?, ?)",
+                lines, lines.size(), (statement, line) -> {
+                    statement.setInt(1, line.id());
+                    statement.setInt(2, cartId);
+                    statement.setInt(3, line.productId());
+                    statement.setInt(4, line.quantity());
+                });
+    }
+
+    // Product id to quantity, in the order the lines were added
+    public Map<Integer, Integer> findQuantities(Integer cartId) {
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        jdbcTemplate.query("select product_id, quantity from cart_item where cart_id = ? order by id",
+                rs -> {
+                    quantities.put(rs.getInt(1), rs.getInt(2));
+                }, cartId);
+        return quantities;
+    }
+
+    // Locks the cart rows in id order, so flushes and line changes of the same carts queue rather than deadlock
+    public void lockCarts(Collection<Integer> cartIds) {
+        if (cartIds.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(", ", cartIds.stream().map(id -> "?").toList());
+        jdbcTemplate.queryForList("select id from cart where id in (" + placeholders + ") order by id for update",
+                Integer.class, cartIds.toArray());
+    }
+
+    // Absolute quantities, so a line another writer inserted or changed meanwhile is overwritten, not added to
+    public void upsertLines(List<LineWrite> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("insert into cart_item (id, cart_id, product_id, quantity) values (?, ?, ?, ?) " +
+                        "on duplicate key update quantity = values(quantity)",
+                lines, lines.size(), (statement, line) -> {
+                    statement.setInt(1, line.id());
+                    statement.setInt(2, line.cartId());
+                    statement.setInt(3, line.productId());
+                    statement.setInt(4, line.quantity());
+                });
+    }
+
+    public void updateLines(List<LineWrite> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("update cart_item set quantity = ? where cart_id = ? and product_id = ?",
+                lines, lines.size(), (statement, line) -> {
+                    statement.setInt(1, line.quantity());
+                    statement.setInt(2, line.cartId());
+                    statement.setInt(3, line.productId());
+                });
+    }
+
+    public void deleteLines(List<LineWrite> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("delete from cart_item where cart_id = ? and product_id = ?",
+                lines, lines.size(), (statement, line) -> {
+                    statement.setInt(1, line.cartId());
+                    statement.setInt(2, line.productId());
+                });
+    }
+}
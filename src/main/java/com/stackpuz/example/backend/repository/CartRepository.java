@@ -1,10 +1,110 @@
 package com.stackpuz.example.backend.repository;
 
+import com.stackpuz.example.backend.dto.CartTotals;
 import com.stackpuz.example.backend.entity.Cart;
 import com.stackpuz.example.backend.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.Optional;
 
+// Native writes declare the table they touch; otherwise Hibernate evicts the whole second-level cache
 public interface CartRepository extends JpaRepository<Cart, Integer> {
+    String TABLE = "cart";
+
     Optional<Cart> findByUser(User user);
-}
\ No newline at end of file
+
+    // Line changes take the cart row's exclusive lock before touching any line. Inserting a line share-locks the
+    // cart row through its foreign key, so taking the exclusive lock last, to move the totals, lets two line
+    // writers deadlock. A no-op UPDATE takes it without a SELECT ... FOR UPDATE; it counts the matched row
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "update cart set subtotal = subtotal where user_id = :userId", nativeQuery = true)
+    int lockByUser(@Param("userId") Long userId);
+
+    default Cart lockOrCreateByUser(User user) {
+        if (lockByUser(user.getId()) == 0) {
+            insertIfAbsent(user.getId());
+            lockByUser(user.getId());
+        }
+        return findByUser(user).orElseThrow();
+    }
+
+    // Creates the user's cart unless one exists; a racing insert is ignored rather than failing the transaction
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "insert ignore into cart (user_id, version) values (:userId, 0)", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId);
+
+    @Query("select new com.stackpuz.example.backend.dto.CartTotals(c.subtotal, c.discountAmount, c.totalPrice) " +
+            "from Cart c where c.id = :cartId")
+    CartTotals findTotals(@Param("cartId") Integer cartId);
+
+    // Moves the stored totals by a change in subtotal. MySQL assigns SET columns left to right, so subtotal
+    // goes last and every expression still reads the old value, as it would in standard SQL
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "update cart set " +
+            "discount_amount = round((subtotal + :delta) * coalesce(applied_discount_percent, 0) / 100, 2), " +
+            "total_price = round(subtotal + :delta, 2) - round((subtotal + :delta) * coalesce(applied_discount_percent, 0) / 100, 2), " +
+            "subtotal = round(subtotal + :delta, 2) " +
+            "where id = :cartId", nativeQuery = true)
+    int addToSubtotal(@Param("cartId") Integer cartId, @Param("delta") double delta);
+
+    // Recomputes discount and total from the stored subtotal, after the discount itself changed
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "update cart set " +
+            "discount_amount = round(subtotal * coalesce(applied_discount_percent, 0) / 100, 2), " +
+            "total_price = subtotal - round(subtotal * coalesce(applied_discount_percent, 0) / 100, 2) " +
+            "where id = :cartId", nativeQuery = true)
+    int refreshTotals(@Param("cartId") Integer cartId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "update cart set subtotal = 0, discount_amount = 0, total_price = 0 where id = :cartId", nativeQuery = true)
+    int resetTotals(@Param("cartId") Integer cartId);
+
+    // Write-behind flushes replace whole lines rather than moving them by a delta, so the totals are recomputed
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "update cart c set " +
+            "c.discount_amount = round(" + LINES_SUBTOTAL + " * coalesce(c.applied_discount_percent, 0) / 100, 2), " +
+            "c.total_price = " + LINES_SUBTOTAL + " - round(" + LINES_SUBTOTAL + " * coalesce(c.applied_discount_percent, 0) / 100, 2), " +
+            "c.subtotal = " + LINES_SUBTOTAL + " " +
+            "where c.id in (:cartIds)", nativeQuery = true)
+    int repriceTotals(@Param("cartIds") Collection<Integer> cartIds);
+
+    // Reconciliation walks the table in id ranges, one short transaction each, so a line writer waits on the
+    // cart rows of one range at most rather than on every cart until the whole table is done
+    @Query("select max(c.id) from Cart c")
+    Integer findMaxId();
+
+    // Subtotals in (fromId, toId] that no longer match the lines at current product prices
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "update cart c set c.subtotal = " + LINES_SUBTOTAL + " " +
+            "where c.id > :fromId and c.id <= :toId and abs(c.subtotal - " + LINES_SUBTOTAL + ") >= 0.005",
+            nativeQuery = true)
+    int repriceSubtotals(@Param("fromId") int fromId, @Param("toId") int toId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "update cart set " +
+            "discount_amount = round(subtotal * coalesce(applied_discount_percent, 0) / 100, 2), " +
+            "total_price = subtotal - round(subtotal * coalesce(applied_discount_percent, 0) / 100, 2) " +
+            "where id > :fromId and id <= :toId " +
+            "and (abs(total_price - (subtotal - round(subtotal * coalesce(applied_discount_percent, 0) / 100, 2))) >= 0.005 " +
+            "or abs(discount_amount - round(subtotal * coalesce(applied_discount_percent, 0) / 100, 2)) >= 0.005)",
+            nativeQuery = true)
+    int refreshDriftedTotals(@Param("fromId") int fromId, @Param("toId") int toId);
+
+    String LINES_SUBTOTAL = "coalesce((select round(sum(ci.quantity * p.price), 2) from cart_item ci " +
+            "join product p on p.id = ci.product_id where ci.cart_id = c.id), 0)";
+}
@@ -1,15 +1,25 @@
 package com.stackpuz.example.backend.repository;
 
 import com.stackpuz.example.backend.entity.DiscountCode;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public interface DiscountCodeRepository extends JpaRepository<DiscountCode, Long> {
+    // Read on every cart discount and catalog view; results live in the query cache until the table changes
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<DiscountCode> findByCodeIgnoreCase(String code);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<DiscountCode> findFirstByActiveTrueOrderByIdDesc();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<DiscountCode> findAllByActiveTrueOrderByIdDesc();
+
     void deleteAllByExpiresAtBefore(LocalDateTime time);
 }
@@ -0,0 +1,39 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.entity.IdempotencyRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+// Native writes declare the table they touch; otherwise Hibernate evicts the whole second-level cache
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, IdempotencyRecord.Key> {
+    String TABLE = "idempotency_key";
+
+    // 1 if this request now owns the key. 0 if the key was already used; when another transaction
+    // is still inserting it, this waits on its row lock until that one commits or rolls back
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "insert ignore into idempotency_key (user_id, idempotency_key, created_at) " +
+            "values (:userId, :key, :now)", nativeQuery = true)
+    int claim(@Param("userId") Long userId, @Param("key") String key, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "update idempotency_key set order_id = :orderId, response = :response " +
+            "where user_id = :userId and idempotency_key = :key", nativeQuery = true)
+    int complete(@Param("userId") Long userId,
+                 @Param("key") String key,
+                 @Param("orderId") Long orderId,
+                 @Param("response") String response);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "delete from idempotency_key where created_at < :cutoff", nativeQuery = true)
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -5,7 +5,17 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
+
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     @Query("select count(oi.id) from OrderItem oi where oi.product.id = :productId")
     long countByProductId(@Param("productId") int productId);
+
+    interface ProductUnits {
+        Integer getProductId();
+        Long getUnits();
+    }
+
+    @Query("select oi.product.id as productId, sum(oi.quantity) as units from OrderItem oi group by oi.product.id")
+    List<ProductUnits> sumUnitsByProduct();
 }
@@ -2,14 +2,69 @@ package com.stackpuz.example.backend.repository;
 
 import com.stackpuz.example.backend.entity.Order;
 import com.stackpuz.example.backend.entity.User;
+import org.springframework.data.jpa.repository.EntityGraph;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
+    // The orders page renders user, items and item products; fetch them with the orders in one query
+    @EntityGraph(attributePaths = {"user", "items", "items.product"})
     List<Order> findByUserOrderByOrderDateDesc(User user);
-    List<Order> findAllByOrderByOrderDateDesc();
+
 	long countByUserId(Long userId);
+
+    // Keyset page of the admin listing, newest first; every null argument disables its filter.
+    // Items are not fetched here: a collection fetch would defeat the SQL limit.
+    @EntityGraph(attributePaths = "user")
+    @Query("select o from Order o where (:status is null or o.status = :status)"
+            + " and (:userId is null or o.user.id = :userId)"
+            + " and (:from is null or o.orderDate >= :from)"
+            + " and (:to is null or o.orderDate < :to)"
+            + " and (:afterDate is null or o.orderDate < :afterDate or (o.orderDate = :afterDate and o.id < :afterId))"
+            + " order by o.orderDate desc, o.id desc")
+    List<Order> findAdminPage(@Param("status") OrderStatus status,
+                              @Param("userId") Long userId,
+                              @Param("from") LocalDateTime from,
+                              @Param("to") LocalDateTime to,
+                              @Param("afterDate") LocalDateTime afterDate,
+                              @Param("afterId") Long afterId,
+                              Pageable pageable);
+
+    // Next chunk of ids for a bulk transition, walked in id order; null filters are ignored
+    @Query("select o.id from Order o where o.status in :sources"
+            + " and (:userId is null or o.user.id = :userId)"
+            + " and (:from is null or o.orderDate >= :from)"
+            + " and (:to is null or o.orderDate < :to)"
+            + " and o.id > :afterId order by o.id")
+    List<Long> findIdsForTransition(@Param("sources") Collection<OrderStatus> sources,
+                                    @Param("userId") Long userId,
+                                    @Param("from") LocalDateTime from,
+                                    @Param("to") LocalDateTime to,
+                                    @Param("afterId") Long afterId,
+                                    Pageable pageable);
+
+    // Locks the chunk's orders that are still in `status`, so rollups and the update see the same rows
+    @Query(value = "select id from orders where id in (:ids) and status = :status for update", nativeQuery = true)
+    List<Long> lockIdsInStatus(@Param("ids") Collection<Long> ids, @Param("status") String status);
+
+    // Set-based transition; the status guard skips rows that moved on since they were selected
+    @Modifying
+    @Query("update Order o set o.status = :target where o.id in :ids and o.status in :sources")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("sources") Collection<OrderStatus> sources,
+                     @Param("target") OrderStatus target);
+
+    // Loads the items of one page of orders in a single query
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    List<Order> findWithItemsByIdIn(Collection<Long> ids);
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.entity.OutboxEvent;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+// Native writes declare the table they touch; otherwise Hibernate evicts the whole second-level cache
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    String TABLE = "outbox_event";
+
+    // Claims up to batchSize due events for one dispatcher until leaseUntil; a crashed dispatcher's claim simply expires
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "update outbox_event set lease_token = :token, available_at = :leaseUntil " +
+            "where status = 'PENDING' and available_at <= :now order by id limit :batchSize", nativeQuery = true)
+    int claim(@Param("token") String token,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil,
+              @Param("batchSize") int batchSize);
+
+    List<OutboxEvent> findByLeaseTokenOrderById(String leaseToken);
+
+    // Deletes delivered events only while the lease is still ours; rows another dispatcher re-claimed are left alone
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "delete from outbox_event where id in (:ids) and lease_token = :token", nativeQuery = true)
+    int deleteLeased(@Param("ids") Collection<Long> ids, @Param("token") String token);
+
+    // One event per order for a bulk status change, built in SQL so orders are never loaded
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "insert into outbox_event (type, aggregate_id, payload, status, attempts, created_at, available_at) " +
+            "select 'OrderStatusChanged', o.id, " +
+            "concat('{\"orderId\":', o.id, ',\"userId\":', o.user_id, ',\"from\":\"', :from, '\",\"to\":\"', :to, '\"}'), " +
+            "'PENDING', 0, :now, :now from orders o where o.id in (:ids) order by o.id", nativeQuery = true)
+    int insertStatusChanged(@Param("ids") Collection<Long> ids,
+                            @Param("from") String from,
+                            @Param("to") String to,
+                            @Param("now") LocalDateTime now);
+
+    // Undelivered events of one type, locked so the dispatcher cannot deliver them while the caller works
+    @Query(value = "select * from outbox_event where type = :type and status = 'PENDING' order by id for update",
+            nativeQuery = true)
+    List<OutboxEvent> lockPending(@Param("type") String type);
+}
@@ -0,0 +1,53 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.entity.ProductRatingStats;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+// Native writes declare the table they touch; otherwise Hibernate evicts the whole second-level cache
+public interface ProductRatingStatsRepository extends JpaRepository<ProductRatingStats, Integer> {
+    String STATS_TABLE = "product_rating_stats";
+
+    // Single-statement upsert so concurrent reviews on the same product never lose a delta
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = STATS_TABLE))
+    @Query(value = "insert into product_rating_stats " +
+            "(product_id, rating_sum, rating_count, stars1, stars2, stars3, stars4, stars5) " +
+            "values (:productId, :sumDelta, :countDelta, :d1, :d2, :d3, :d4, :d5) " +
+            "on duplicate key update " +
+            "rating_sum = rating_sum + values(rating_sum), " +
+            "rating_count = rating_count + values(rating_count), " +
+            "stars1 = stars1 + values(stars1), " +
+            "stars2 = stars2 + values(stars2), " +
+            "stars3 = stars3 + values(stars3), " +
+            "stars4 = stars4 + values(stars4), " +
+            "stars5 = stars5 + values(stars5)", nativeQuery = true)
+    void applyDelta(@Param("productId") int productId,
+                    @Param("sumDelta") long sumDelta,
+                    @Param("countDelta") long countDelta,
+                    @Param("d1") long d1,
+                    @Param("d2") long d2,
+                    @Param("d3") long d3,
+                    @Param("d4") long d4,
+                    @Param("d5") long d5);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = STATS_TABLE))
+    @Query(value = "delete from product_rating_stats", nativeQuery = true)
+    void deleteAllStats();
+
+    // Recompute every row from the review table in one pass
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = STATS_TABLE))
+    @Query(value = "insert into product_rating_stats " +
+            "(product_id, rating_sum, rating_count, stars1, stars2, stars3, stars4, stars5) " +
+            "select product_id, sum(rating), count(*), " +
+            "sum(rating = 1), sum(rating = 2), sum(rating = 3), sum(rating = 4), sum(rating = 5) " +
+            "from review group by product_id", nativeQuery = true)
+    int insertFromReviews();
+}
@@ -1,11 +1,61 @@
 package com.stackpuz.example.backend.repository;
 
 import com.stackpuz.example.backend.entity.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ProductRepository extends JpaRepository<Product, Integer> {
     List<Product> findByNameContainingIgnoreCase(String name);
-}
 
+    // Keyset pages: callers pass PageRequest.of(0, size) so only a LIMIT is applied, never an OFFSET
+    // First pages are what almost every visitor sees, so they go through the query cache
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Product> findAllByOrderByIdAsc(Pageable pageable);
+
+    List<Product> findByIdGreaterThanOrderByIdAsc(int id, Pageable pageable);
+
+    // Price and name are nullable; nulls come first, which is also MySQL's own order, so no emulation is rendered
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("select p from Product p order by p.price asc nulls first, p.id asc")
+    List<Product> findAllByOrderByPriceAscIdAsc(Pageable pageable);
+
+    @Query("select p from Product p where p.price > :price or (p.price = :price and p.id > :id) " +
+            "order by p.price asc nulls first, p.id asc")
+    List<Product> findPricePageAfter(@Param("price") Double price, @Param("id") int id, Pageable pageable);
+
+    // After a row without a price: the rest of the unpriced rows, then every priced one
+    @Query("select p from Product p where (p.price is null and p.id > :id) or p.price is not null " +
+            "order by p.price asc nulls first, p.id asc")
+    List<Product> findPricePageAfterNull(@Param("id") int id, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("select p from Product p order by p.name asc nulls first, p.id asc")
+    List<Product> findAllByOrderByNameAscIdAsc(Pageable pageable);
+
+    @Query("select p from Product p where p.name > :name or (p.name = :name and p.id > :id) " +
+            "order by p.name asc nulls first, p.id asc")
+    List<Product> findNamePageAfter(@Param("name") String name, @Param("id") int id, Pageable pageable);
+
+    @Query("select p from Product p where (p.name is null and p.id > :id) or p.name is not null " +
+            "order by p.name asc nulls first, p.id asc")
+    List<Product> findNamePageAfterNull(@Param("id") int id, Pageable pageable);
+
+    // Walk the whole catalog in id order without holding it all in one result set
+    default void forEachBatch(int batchSize, Consumer<List<Product>> consumer) {
+        List<Product> batch = findAllByOrderByIdAsc(PageRequest.of(0, batchSize));
+        while (!batch.isEmpty()) {
+            consumer.accept(batch);
+            int lastId = batch.get(batch.size() - 1).getId();
+            batch = findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, batchSize));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.entity.ProductSalesDaily;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+// Native writes declare the table they touch; otherwise Hibernate evicts the whole second-level cache
+public interface ProductSalesDailyRepository extends JpaRepository<ProductSalesDaily, ProductSalesDaily.Key> {
+    String TABLE = "product_sales_daily";
+
+    interface ProductTotals {
+        Integer getProductId();
+        Long getUnits();
+        Double getRevenue();
+    }
+
+    // Adds (sign = 1) or removes (sign = -1) the lines of the given orders under `status`
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "insert into product_sales_daily (sales_day, product_id, status, units, revenue) " +
+            "select date(o.order_date), i.product_id, :status, :sign * sum(i.quantity), " +
+            ":sign * sum(i.quantity * i.price_at_order) " +
+            "from order_item i join orders o on o.id = i.order_id " +
+            "where o.id in (:ids) group by date(o.order_date), i.product_id " +
+            "on duplicate key update " +
+            "units = units + values(units), " +
+            "revenue = revenue + values(revenue)", nativeQuery = true)
+    int apply(@Param("ids") Collection<Long> ids, @Param("status") String status, @Param("sign") int sign);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "insert into product_sales_daily (sales_day, product_id, status, units, revenue) " +
+            "values (:day, :productId, :status, :units, :revenue) " +
+            "on duplicate key update " +
+            "units = units + values(units), " +
+            "revenue = revenue + values(revenue)", nativeQuery = true)
+    int add(@Param("day") LocalDate day,
+            @Param("productId") int productId,
+            @Param("status") String status,
+            @Param("units") long units,
+            @Param("revenue") double revenue);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "delete from product_sales_daily", nativeQuery = true)
+    void deleteAllRows();
+
+    // Backfill from every live and archived order line in one grouped pass
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "insert into product_sales_daily (sales_day, product_id, status, units, revenue) " +
+            "select date(l.order_date), l.product_id, l.status, sum(l.quantity), sum(l.quantity * l.price_at_order) from (" +
+            "select o.order_date, o.status, i.product_id, i.quantity, i.price_at_order " +
+            "from order_item i join orders o on o.id = i.order_id " +
+            "union all " +
+            "select a.order_date, a.status, i.product_id, i.quantity, i.price_at_order " +
+            "from order_item_archive i join orders_archive a on a.id = i.order_id" +
+            ") l group by date(l.order_date), l.product_id, l.status", nativeQuery = true)
+    int insertFromOrders();
+
+    // Removes the lines of one user's archived orders
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "insert into product_sales_daily (sales_day, product_id, status, units, revenue) " +
+            "select date(a.order_date), i.product_id, a.status, -sum(i.quantity), -sum(i.quantity * i.price_at_order) " +
+            "from order_item_archive i join orders_archive a on a.id = i.order_id " +
+            "where a.user_id = :userId group by date(a.order_date), i.product_id, a.status " +
+            "on duplicate key update " +
+            "units = units + values(units), " +
+            "revenue = revenue + values(revenue)", nativeQuery = true)
+    int removeArchivedForUser(@Param("userId") Long userId);
+
+    @Query("select p.productId as productId, sum(p.units) as units, sum(p.revenue) as revenue " +
+            "from ProductSalesDaily p where p.salesDay between :from and :to and p.status in :statuses " +
+            "group by p.productId order by sum(p.units) desc, p.productId")
+    List<ProductTotals> topProducts(@Param("from") LocalDate from,
+                                    @Param("to") LocalDate to,
+                                    @Param("statuses") Collection<OrderStatus> statuses,
+                                    Pageable pageable);
+}
@@ -0,0 +1,38 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.entity.ProductStock;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+// Native writes declare the table they touch; otherwise Hibernate evicts the whole second-level cache
+public interface ProductStockRepository extends JpaRepository<ProductStock, Integer> {
+
+    @Query("select s.quantity from ProductStock s where s.productId = :productId")
+    Optional<Integer> findQuantity(@Param("productId") int productId);
+
+    // Conditional decrement: 0 rows means not enough stock (or not tracked), never a negative quantity
+    @Modifying
+    @Query("update ProductStock s set s.quantity = s.quantity - :quantity " +
+            "where s.productId = :productId and s.quantity >= :quantity")
+    int deduct(@Param("productId") int productId, @Param("quantity") int quantity);
+
+    // Puts back the units of canceled orders in one statement
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "product_stock"))
+    @Query(value = "update product_stock s join (" +
+            "select product_id, sum(quantity) as units from order_item where order_id in (:orderIds) group by product_id" +
+            ") i on i.product_id = s.product_id set s.quantity = s.quantity + i.units", nativeQuery = true)
+    int restockOrders(@Param("orderIds") Collection<Long> orderIds);
+
+    @Query("select distinct i.product.id from OrderItem i where i.order.id in :orderIds")
+    List<Integer> findProductIdsOfOrders(@Param("orderIds") Collection<Long> orderIds);
+}
@@ -3,7 +3,9 @@ package com.stackpuz.example.backend.repository;
 import com.stackpuz.example.backend.entity.Product;
 import com.stackpuz.example.backend.entity.Review;
 import com.stackpuz.example.backend.entity.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -17,7 +19,15 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
     @Query("select r from Review r where r.product.id = :productId order by r.createdAt desc")
     List<Review> findByProductId(@Param("productId") int productId);
 
-    Optional<Review> findByProductAndUser(Product product, User user);
+    // Reviews are read for update before a rating change: the stats move by the old rating, which a concurrent
+    // edit must not read too
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from Review r where r.product = :product and r.user = :user")
+    Optional<Review> findByProductAndUserForUpdate(@Param("product") Product product, @Param("user") User user);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from Review r where r.id = :id")
+    Optional<Review> findByIdForUpdate(@Param("id") Long id);
 
     @Query("select avg(r.rating) from Review r where r.product.id = :productId")
     Double getAverageRating(@Param("productId") int productId);
@@ -0,0 +1,106 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.entity.SalesDaily;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+// Native writes declare the table they touch; otherwise Hibernate evicts the whole second-level cache
+public interface SalesDailyRepository extends JpaRepository<SalesDaily, SalesDaily.Key> {
+    String TABLE = "sales_daily";
+
+    interface DayTotals {
+        LocalDate getSalesDay();
+        Long getOrderCount();
+        Long getUnits();
+        Double getRevenue();
+    }
+
+    interface StatusTotals {
+        OrderStatus getStatus();
+        Long getOrderCount();
+        Long getUnits();
+        Double getRevenue();
+    }
+
+    // Adds (sign = 1) or removes (sign = -1) the given orders under `status`, one upsert per order day
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "insert into sales_daily (sales_day, status, order_count, units, revenue) " +
+            "select date(o.order_date), :status, :sign * count(*), " +
+            ":sign * coalesce(sum((select sum(i.quantity) from order_item i where i.order_id = o.id)), 0), " +
+            ":sign * sum(o.total_price) " +
+            "from orders o where o.id in (:ids) group by date(o.order_date) " +
+            "on duplicate key update " +
+            "order_count = order_count + values(order_count), " +
+            "units = units + values(units), " +
+            "revenue = revenue + values(revenue)", nativeQuery = true)
+    int apply(@Param("ids") Collection<Long> ids, @Param("status") String status, @Param("sign") int sign);
+
+    // Adds explicit totals to one day/status row; used when the order itself is not read
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "insert into sales_daily (sales_day, status, order_count, units, revenue) " +
+            "values (:day, :status, :orders, :units, :revenue) " +
+            "on duplicate key update " +
+            "order_count = order_count + values(order_count), " +
+            "units = units + values(units), " +
+            "revenue = revenue + values(revenue)", nativeQuery = true)
+    int add(@Param("day") LocalDate day,
+            @Param("status") String status,
+            @Param("orders") long orders,
+            @Param("units") long units,
+            @Param("revenue") double revenue);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "delete from sales_daily", nativeQuery = true)
+    void deleteAllRows();
+
+    // Backfill from every live and archived order in one grouped pass
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "insert into sales_daily (sales_day, status, order_count, units, revenue) " +
+            "select date(o.order_date), o.status, count(*), coalesce(sum(o.units), 0), sum(o.total_price) from (" +
+            "select o.order_date, o.status, o.total_price, " +
+            "(select sum(i.quantity) from order_item i where i.order_id = o.id) as units from orders o " +
+            "union all " +
+            "select a.order_date, a.status, a.total_price, " +
+            "(select sum(i.quantity) from order_item_archive i where i.order_id = a.id) as units from orders_archive a" +
+            ") o group by date(o.order_date), o.status", nativeQuery = true)
+    int insertFromOrders();
+
+    // Removes one user's archived orders, which no longer live in the orders table
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = TABLE))
+    @Query(value = "insert into sales_daily (sales_day, status, order_count, units, revenue) " +
+            "select date(a.order_date), a.status, -count(*), " +
+            "-coalesce(sum((select sum(i.quantity) from order_item_archive i where i.order_id = a.id)), 0), " +
+            "-sum(a.total_price) " +
+            "from orders_archive a where a.user_id = :userId group by date(a.order_date), a.status " +
+            "on duplicate key update " +
+            "order_count = order_count + values(order_count), " +
+            "units = units + values(units), " +
+            "revenue = revenue + values(revenue)", nativeQuery = true)
+    int removeArchivedForUser(@Param("userId") Long userId);
+
+    @Query("select d.salesDay as salesDay, sum(d.orderCount) as orderCount, sum(d.units) as units, sum(d.revenue) as revenue " +
+            "from SalesDaily d where d.salesDay between :from and :to and d.status in :statuses " +
+            "group by d.salesDay order by d.salesDay")
+    List<DayTotals> sumByDay(@Param("from") LocalDate from,
+                             @Param("to") LocalDate to,
+                             @Param("statuses") Collection<OrderStatus> statuses);
+
+    @Query("select d.status as status, sum(d.orderCount) as orderCount, sum(d.units) as units, sum(d.revenue) as revenue " +
+            "from SalesDaily d where d.salesDay between :from and :to group by d.status")
+    List<StatusTotals> sumByStatus(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,34 @@
+package com.stackpuz.example.backend.security;
+
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.List;
+
+/**
+ * The principal kept in the session after login. It carries the user's id and role, so controllers can
+ * check who is calling and hand services a lazy reference to the user without looking them up again.
+ */
+public class AuthenticatedUser extends User {
+    private final Long id;
+    private final String role;
+
+    public AuthenticatedUser(Long id, String username, String password, String role) {
+        super(username, password, List.of(new SimpleGrantedAuthority(role)));
+        this.id = id;
+        this.role = role;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    // As stored on the user, e.g. ROLE_USER
+    public String getRole() {
+        return role;
+    }
+
+    public boolean isAdmin() {
+        return "ROLE_ADMIN".equals(role);
+    }
+}
@@ -0,0 +1,10 @@
+package com.stackpuz.example.backend.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+// The password hashing pool is full; the caller should try again shortly rather than wait
+public class PasswordHashingBusyException extends AuthenticationServiceException {
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,103 @@
+package com.stackpuz.example.backend.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recently authenticated users, so repeated logins skip the user lookup. The authentication provider falls
+ * back to the database when a cached password does not match, and UserService evicts a user whose account
+ * changes. Entries are copies: Spring Security erases the password of the principal it hands out, which
+ * must not reach the cached one.
+ */
+@Component
+public class UserDetailsCache implements UserCache {
+    private final long ttlMillis;
+    private final Map<String, CachedUser> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+
+    private record CachedUser(Long id, String username, String password, String role, long expiresAt) {
+    }
+
+    public UserDetailsCache(@Value("${auth.user-cache.size:10000}") int maxSize,
+                            @Value("${auth.user-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+        // Access-ordered LinkedHashMap evicting the least recently used entry past maxSize
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        CachedUser entry;
+        synchronized (entries) {
+            entry = entries.get(username);
+            if (entry != null && System.currentTimeMillis() >= entry.expiresAt()) {
+                entries.remove(username);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new AuthenticatedUser(entry.id(), entry.username(), entry.password(), entry.role());
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        // UserService only hands out AuthenticatedUser; anything else is not ours to cache
+        if (!(user instanceof AuthenticatedUser authenticated) || authenticated.getPassword() == null) {
+            return;
+        }
+        CachedUser entry = new CachedUser(authenticated.getId(), authenticated.getUsername(), authenticated.getPassword(),
+                authenticated.getRole(), System.currentTimeMillis() + ttlMillis);
+        synchronized (entries) {
+            entries.put(entry.username(), entry);
+        }
+        puts.increment();
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        synchronized (entries) {
+            entries.remove(username);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getPutCount() {
+        return puts.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        puts.reset();
+    }
+}
@@ -0,0 +1,79 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.entity.DiscountCode;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.security.UserDetailsCache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Hit/miss counters of the Hibernate second-level and query caches, and of the login user cache
+@Service
+public class CacheStatsService {
+    private static final List<String> ENTITY_REGIONS = List.of(
+            Product.class.getName(),
+            DiscountCode.class.getName());
+
+    private final Statistics statistics;
+    private final UserDetailsCache userDetailsCache;
+
+    public CacheStatsService(EntityManagerFactory entityManagerFactory, UserDetailsCache userDetailsCache) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.userDetailsCache = userDetailsCache;
+    }
+
+    public Map<String, Object> getSecondLevelCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", statistics.isStatisticsEnabled());
+        stats.put("secondLevel", counters(statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(),
+                statistics.getSecondLevelCachePutCount()));
+        stats.put("queryCache", counters(statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount()));
+
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String region : ENTITY_REGIONS) {
+            CacheRegionStatistics regionStats = statistics.getDomainDataRegionStatistics(region);
+            if (regionStats == null) {
+                continue;
+            }
+            Map<String, Object> counters = counters(regionStats.getHitCount(),
+                    regionStats.getMissCount(),
+                    regionStats.getPutCount());
+            // JCache does not expose sizes; Hibernate reports a negative count in that case
+            long elements = regionStats.getElementCountInMemory();
+            counters.put("elementsInMemory", elements < 0 ? null : elements);
+            regions.put(region, counters);
+        }
+        stats.put("regions", regions);
+
+        Map<String, Object> userDetails = counters(userDetailsCache.getHitCount(),
+                userDetailsCache.getMissCount(),
+                userDetailsCache.getPutCount());
+        userDetails.put("size", userDetailsCache.size());
+        stats.put("userDetails", userDetails);
+        return stats;
+    }
+
+    public void reset() {
+        statistics.clear();
+        userDetailsCache.resetStatistics();
+    }
+
+    private static Map<String, Object> counters(long hits, long misses, long puts) {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("hits", hits);
+        counters.put("misses", misses);
+        counters.put("puts", puts);
+        long lookups = hits + misses;
+        counters.put("hitRatio", lookups == 0 ? 0.0 : (double) hits / lookups);
+        return counters;
+    }
+}
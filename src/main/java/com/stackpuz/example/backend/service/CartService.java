@@ -1,101 +1,323 @@
 package com.stackpuz.example.backend.service;
 
+import com.stackpuz.example.backend.dto.CartOperation;
+import com.stackpuz.example.backend.dto.CartTotals;
 import com.stackpuz.example.backend.entity.Cart;
 import com.stackpuz.example.backend.entity.CartItem;
+import com.stackpuz.example.backend.entity.IdGenerators;
 import com.stackpuz.example.backend.entity.Product;
 import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.CartOperationType;
+import com.stackpuz.example.backend.repository.CartItemRepository;
+import com.stackpuz.example.backend.repository.CartLineRepository;
 import com.stackpuz.example.backend.repository.CartRepository;
 import com.stackpuz.example.backend.repository.ProductRepository;
-import com.stackpuz.example.backend.service.DiscountCodeService;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.EntityNotFoundException;
-import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cart reads and writes. Writes run through {@link OptimisticRetry}: line changes lock the cart row,
+ * then run single statements on cart_item and move the cart's stored totals by their delta, so showing
+ * a cart never sums its lines; discount changes are guarded by the row's @Version and rerun on a conflict.
+ * With cart.store.mode=WRITE_BEHIND line changes go to {@link WriteBehindCartStore} instead, and every
+ * other read or write of a cart goes through it so pending changes are flushed first.
+ */
 @Service
-@Transactional
+@Slf4j
 public class CartService {
+    public static final int MAX_OPERATIONS = 100;
+    public static final int RECONCILE_CHUNK_SIZE = 500;
+
     private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final CartLineRepository cartLineRepository;
     private final ProductRepository productRepository;
     private final DiscountCodeService discountCodeService;
+    private final EntityManagerFactory entityManagerFactory;
+    private final OptimisticRetry retry;
+    private final WriteBehindCartStore cartStore;
+    private final Set<Integer> pendingReprices = ConcurrentHashMap.newKeySet();
 
-    public CartService(CartRepository cartRepository, ProductRepository productRepository, DiscountCodeService discountCodeService) {
+    public CartService(CartRepository cartRepository, CartItemRepository cartItemRepository,
+                       CartLineRepository cartLineRepository, ProductRepository productRepository,
+                       DiscountCodeService discountCodeService, EntityManagerFactory entityManagerFactory,
+                       OptimisticRetry retry, WriteBehindCartStore cartStore) {
         this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.cartLineRepository = cartLineRepository;
         this.productRepository = productRepository;
         this.discountCodeService = discountCodeService;
+        this.entityManagerFactory = entityManagerFactory;
+        this.retry = retry;
+        this.cartStore = cartStore;
     }
 
     public Cart getUserCart(User user) {
-        return cartRepository.findByUser(user)
-                .orElseGet(() -> {
-                    Cart newCart = new Cart();
-                    newCart.setUser(user);
-                    return cartRepository.save(newCart);
-                });
+        return cartStore.readThrough(user, () -> findUserCart(user));
+    }
+
+    public CartTotals getTotals(User user) {
+        return cartStore.readThrough(user, () -> retry.inTransaction(() -> cartRepository.findTotals(findUserCart(user).getId())));
     }
 
+    // Line mutations are single statements against cart_item; the cart's items are never loaded
     public void addToCart(User user, Integer productId, int quantity) {
-        Cart cart = getUserCart(user);
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new EntityNotFoundException("Product not found"));
-                
-        cart.getItems().stream()
-                .filter(item -> item.getProduct().getId() == product.getId())
-                .findFirst()
-                .ifPresentOrElse(
-                        item -> item.setQuantity(item.getQuantity() + quantity),
-                        () -> {
-                            CartItem newItem = new CartItem();
-                            newItem.setCart(cart);
-                            newItem.setProduct(product);
-                            newItem.setQuantity(quantity);
-                            cart.getItems().add(newItem);
-                        }
-                );
-        cartRepository.save(cart);
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        if (cartStore.isEnabled()) {
+            requireProduct(productId);
+            cartStore.apply(user, List.of(new CartOperation(CartOperationType.ADD, productId, quantity)));
+            return;
+        }
+        double price = requireProduct(productId).getPrice();
+        // The id for a possibly new line is drawn before the transaction: refilling the pooled generator takes
+        // a connection of its own, which must not be needed while this request holds one. When the line
+        // already exists the upsert ignores the id and it is simply skipped
+        Integer id = (Integer) IdGenerators.next(entityManagerFactory, CartItem.class);
+        retry.inTransaction(() -> {
+            Cart cart = lockUserCart(user);
+            cartItemRepository.addQuantity(id, cart.getId(), productId, quantity);
+            cartRepository.addToSubtotal(cart.getId(), price * quantity);
+        });
     }
 
     public void updateCartItemQuantity(User user, Integer productId, int quantity) {
-        Cart cart = getUserCart(user);
-        cart.getItems().stream()
-                .filter(item -> item.getProduct().getId() == productId)
-                .findFirst()
-                .ifPresent(item -> {
-                    if (quantity <= 0) {
-                        cart.getItems().remove(item);
+        applyOperations(user, List.of(new CartOperation(CartOperationType.SET, productId, quantity)));
+    }
+
+    public void removeFromCart(User user, Integer productId) {
+        applyOperations(user, List.of(new CartOperation(CartOperationType.REMOVE, productId, null)));
+    }
+
+    /**
+     * Applies a batch of line changes, in order, as one transaction: the touched lines are read in one
+     * query, new lines go in as one JDBC batch, changed lines are written once at flush, and the totals
+     * move by one summed delta.
+     */
+    public CartTotals applyOperations(User user, List<CartOperation> operations) {
+        if (operations.size() > MAX_OPERATIONS) {
+            throw new IllegalArgumentException("At most " + MAX_OPERATIONS + " operations per request");
+        }
+        Set<Integer> touched = new LinkedHashSet<>();
+        Map<Integer, Product> added = new HashMap<>();
+        for (CartOperation operation : operations) {
+            if (operation == null || operation.op() == null || operation.productId() == null) {
+                throw new IllegalArgumentException("Each operation needs an op and a productId");
+            }
+            if (operation.op() == CartOperationType.ADD) {
+                if (operation.quantity() == null || operation.quantity() <= 0) {
+                    throw new IllegalArgumentException("Quantity must be positive");
+                }
+                added.computeIfAbsent(operation.productId(), this::requireProduct);
+            } else if (operation.op() == CartOperationType.SET && operation.quantity() == null) {
+                throw new IllegalArgumentException("SET needs a quantity");
+            }
+            touched.add(operation.productId());
+        }
+        if (cartStore.isEnabled()) {
+            return cartStore.apply(user, operations);
+        }
+        // Ids for lines that may turn out to be new, drawn before a transaction holds a connection
+        Map<Integer, Integer> newIds = new HashMap<>();
+        added.keySet().forEach(productId -> newIds.put(productId, (Integer) IdGenerators.next(entityManagerFactory, CartItem.class)));
+
+        return retry.inTransaction(() -> {
+            Cart cart = lockUserCart(user);
+            if (touched.isEmpty()) {
+                return cartRepository.findTotals(cart.getId());
+            }
+            Map<Integer, CartItem> lines = new HashMap<>();
+            cartItemRepository.findByCartIdAndProductIdIn(cart.getId(), touched)
+                    .forEach(line -> lines.put(line.getProduct().getId(), line));
+
+            Map<Integer, Integer> quantities = new HashMap<>();
+            lines.forEach((productId, line) -> quantities.put(productId, line.getQuantity()));
+            for (CartOperation operation : operations) {
+                int current = quantities.getOrDefault(operation.productId(), 0);
+                switch (operation.op()) {
+                    case ADD -> quantities.put(operation.productId(), current + operation.quantity());
+                    // Like the single-line endpoint, SET only changes a line that exists at that point
+                    case SET -> {
+                        if (current > 0) {
+                            quantities.put(operation.productId(), Math.max(operation.quantity(), 0));
+                        }
+                    }
+                    case REMOVE -> quantities.put(operation.productId(), 0);
+                }
+            }
+
+            double delta = 0;
+            List<CartLineRepository.NewLine> newLines = new ArrayList<>();
+            for (Integer productId : touched) {
+                CartItem line = lines.get(productId);
+                int before = line == null ? 0 : line.getQuantity();
+                int after = quantities.getOrDefault(productId, 0);
+                if (after == before) {
+                    continue;
+                }
+                if (line == null) {
+                    newLines.add(new CartLineRepository.NewLine(newIds.get(productId), productId, after));
+                    delta += added.get(productId).getPrice() * after;
+                } else {
+                    if (after == 0) {
+                        cartItemRepository.delete(line);
                     } else {
-                        item.setQuantity(quantity);
+                        line.setQuantity(after);
                     }
-                });
-        cartRepository.save(cart);
+                    delta += line.getProduct().getPrice() * (after - before);
+                }
+            }
+            cartLineRepository.insertLines(cart.getId(), newLines);
+            if (delta != 0) {
+                cartRepository.addToSubtotal(cart.getId(), delta);
+            }
+            return cartRepository.findTotals(cart.getId());
+        });
     }
 
-    public void removeFromCart(User user, Integer productId) {
-        Cart cart = getUserCart(user);
-        cart.getItems().removeIf(item -> item.getProduct().getId() == productId);
-        cartRepository.save(cart);
+    // Guest carts live in a signed cookie (GuestCartCookie); these validate and price them without writing anything
+
+    public Map<Integer, Integer> addToGuestCart(Map<Integer, Integer> lines, Integer productId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        requireProduct(productId);
+        Map<Integer, Integer> updated = new LinkedHashMap<>(lines);
+        updated.merge(productId, quantity, Integer::sum);
+        return updated;
+    }
+
+    // An unsaved cart priced like a stored one, for rendering; products deleted since are left out
+    public Cart guestCart(Map<Integer, Integer> lines) {
+        Cart cart = new Cart();
+        double subtotal = 0;
+        for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+            Optional<Product> product = productRepository.findById(line.getKey());
+            if (product.isEmpty() || line.getValue() <= 0) {
+                continue;
+            }
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setProduct(product.get());
+            item.setQuantity(line.getValue());
+            cart.getItems().add(item);
+            subtotal += product.get().getPrice() * line.getValue();
+        }
+        cart.setSubtotal(Math.round(subtotal * 100) / 100.0);
+        cart.setTotalPrice(cart.getSubtotal());
+        return cart;
+    }
+
+    // Moves a guest cart into the user's stored cart at login, as one batch in one transaction
+    public CartTotals mergeGuestCart(User user, Map<Integer, Integer> lines) {
+        List<CartOperation> operations = lines.entrySet().stream()
+                .filter(line -> line.getValue() > 0 && productRepository.findById(line.getKey()).isPresent())
+                .map(line -> new CartOperation(CartOperationType.ADD, line.getKey(), line.getValue()))
+                .toList();
+        return applyOperations(user, operations);
     }
 
     public void clearCart(User user) {
-        Cart cart = getUserCart(user);
-        cart.getItems().clear();
-        // Also clear any applied discount so it does not persist across orders
-        cart.setAppliedDiscountCode(null);
-        cart.setAppliedDiscountPercent(null);
-        cartRepository.save(cart);
+        cartStore.writeThrough(user, () -> retry.inTransaction(() -> {
+            Cart cart = lockUserCart(user);
+            cartItemRepository.deleteByCartId(cart.getId());
+            // Also clear any applied discount so it does not persist across orders
+            cart.setAppliedDiscountCode(null);
+            cart.setAppliedDiscountPercent(null);
+            cartRepository.save(cart);
+            cartRepository.resetTotals(cart.getId());
+            return null;
+        }));
+    }
+
+    public CartTotals applyDiscountCode(User user, String code) {
+        return cartStore.writeThrough(user, () -> retry.inTransaction(() -> {
+            Cart cart = findUserCart(user);
+            var dc = discountCodeService.requireValidActive(code);
+            cart.setAppliedDiscountCode(dc.getCode());
+            cart.setAppliedDiscountPercent(dc.getPercent());
+            return saveDiscount(cart);
+        }));
     }
 
-    public Cart applyDiscountCode(User user, String code) {
-        Cart cart = getUserCart(user);
-        var dc = discountCodeService.requireValidActive(code);
-        cart.setAppliedDiscountCode(dc.getCode());
-        cart.setAppliedDiscountPercent(dc.getPercent());
-        return cartRepository.save(cart);
+    public CartTotals clearDiscount(User user) {
+        return cartStore.writeThrough(user, () -> retry.inTransaction(() -> {
+            Cart cart = findUserCart(user);
+            cart.setAppliedDiscountCode(null);
+            cart.setAppliedDiscountPercent(null);
+            return saveDiscount(cart);
+        }));
     }
 
-    public Cart clearDiscount(User user) {
-        Cart cart = getUserCart(user);
-        cart.setAppliedDiscountCode(null);
-        cart.setAppliedDiscountPercent(null);
-        return cartRepository.save(cart);
+    // A product's price changed: the carts holding it are repriced by the next repriceChangedProducts run,
+    // outside the product update's transaction
+    public void markPriceChanged(Integer productId) {
+        pendingReprices.add(productId);
+    }
+
+    @Scheduled(fixedDelayString = "${cart.totals.reprice-ms:1000}")
+    public void repriceChangedProducts() {
+        for (Iterator<Integer> it = pendingReprices.iterator(); it.hasNext(); ) {
+            Integer productId = it.next();
+            it.remove();
+            List<Integer> cartIds = cartItemRepository.findCartIdsByProductId(productId);
+            // One short transaction per chunk, so line writers never wait on more than a chunk of cart rows
+            for (int from = 0; from < cartIds.size(); from += RECONCILE_CHUNK_SIZE) {
+                List<Integer> chunk = cartIds.subList(from, Math.min(from + RECONCILE_CHUNK_SIZE, cartIds.size()));
+                retry.inTransaction(() -> cartRepository.repriceTotals(chunk));
+            }
+        }
+    }
+
+    // Catches any other drift, and fills the totals of carts created before they were stored, one id range
+    // per transaction
+    @Scheduled(cron = "${cart.totals.reconcile-cron:0 */15 * * * *}")
+    public void reconcileTotals() {
+        Integer maxId = cartRepository.findMaxId();
+        int repriced = 0;
+        for (int from = 0; maxId != null && from < maxId; from += RECONCILE_CHUNK_SIZE) {
+            int fromId = from;
+            int toId = from + RECONCILE_CHUNK_SIZE;
+            repriced += retry.inTransaction(() -> {
+                int count = cartRepository.repriceSubtotals(fromId, toId);
+                cartRepository.refreshDriftedTotals(fromId, toId);
+                return count;
+            });
+        }
+        if (repriced > 0) {
+            log.info("Reconciled stored totals of {} carts", repriced);
+        }
+    }
+
+    private Cart findUserCart(User user) {
+        return retry.inTransaction(() -> cartRepository.findByUser(user)
+                .orElseGet(() -> {
+                    cartRepository.insertIfAbsent(user.getId());
+                    return cartRepository.findByUser(user).orElseThrow();
+                }));
+    }
+
+    private CartTotals saveDiscount(Cart cart) {
+        cartRepository.saveAndFlush(cart);
+        cartRepository.refreshTotals(cart.getId());
+        return cartRepository.findTotals(cart.getId());
+    }
+
+    // Every line change starts here; see CartRepository.lockByUser for why the cart row comes first
+    private Cart lockUserCart(User user) {
+        return cartRepository.lockOrCreateByUser(user);
+    }
+
+    // Products are second-level cached, so this normally costs no SQL
+    private Product requireProduct(Integer productId) {
+        return productRepository.findById(productId)
+                .orElseThrow(() -> new EntityNotFoundException("Product not found"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,113 @@
+package com.stackpuz.example.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * A guest's cart kept in the browser, so anonymous shoppers cost no database writes.
+ * The value is "productId:quantity" pairs joined by '-', then '.' and an HMAC-SHA256 of those pairs;
+ * a cookie that does not verify reads as an empty cart.
+ */
+@Component
+@Slf4j
+public class GuestCartCookie {
+    public static final String NAME = "guest_cart";
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final int maxLines;
+    private final Duration maxAge;
+
+    public GuestCartCookie(@Value("${cart.guest.secret:}") String secret,
+                           @Value("${cart.guest.max-lines:50}") int maxLines,
+                           @Value("${cart.guest.max-age-days:30}") int maxAgeDays) {
+        byte[] keyBytes;
+        if (secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            log.warn("cart.guest.secret is not set; guest carts will not survive a restart");
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.maxLines = maxLines;
+        this.maxAge = Duration.ofDays(maxAgeDays);
+    }
+
+    // Lines in the order they were added
+    public Map<Integer, Integer> read(String value) {
+        Map<Integer, Integer> lines = new LinkedHashMap<>();
+        if (value == null || value.isEmpty()) {
+            return lines;
+        }
+        int dot = value.lastIndexOf('.');
+        if (dot < 0 || !MessageDigest.isEqual(sign(value.substring(0, dot)).getBytes(StandardCharsets.US_ASCII),
+                value.substring(dot + 1).getBytes(StandardCharsets.US_ASCII))) {
+            return lines;
+        }
+        String payload = value.substring(0, dot);
+        if (payload.isEmpty()) {
+            return lines;
+        }
+        try {
+            for (String pair : payload.split("-")) {
+                int colon = pair.indexOf(':');
+                lines.put(Integer.parseInt(pair.substring(0, colon)), Integer.parseInt(pair.substring(colon + 1)));
+            }
+        } catch (RuntimeException e) {
+            return new LinkedHashMap<>();
+        }
+        return lines;
+    }
+
+    // An empty cart clears the cookie
+    public ResponseCookie write(Map<Integer, Integer> lines) {
+        if (lines.size() > maxLines) {
+            throw new IllegalArgumentException("A guest cart holds at most " + maxLines + " products; log in to add more");
+        }
+        if (lines.isEmpty()) {
+            return clear();
+        }
+        StringJoiner payload = new StringJoiner("-");
+        lines.forEach((productId, quantity) -> payload.add(productId + ":" + quantity));
+        return cookie(payload + "." + sign(payload.toString()), maxAge);
+    }
+
+    public ResponseCookie clear() {
+        return cookie("", Duration.ZERO);
+    }
+
+    private ResponseCookie cookie(String value, Duration age) {
+        return ResponseCookie.from(NAME, value)
+                .path("/")
+                .httpOnly(true)
+                .sameSite("Lax")
+                .maxAge(age)
+                .build();
+    }
+
+    private String sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is unavailable", e);
+        }
+    }
+}
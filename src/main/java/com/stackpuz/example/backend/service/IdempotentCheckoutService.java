@@ -0,0 +1,128 @@
+package com.stackpuz.example.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stackpuz.example.backend.dto.OrderSummary;
+import com.stackpuz.example.backend.entity.IdempotencyRecord;
+import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Checkout that can be retried safely with an Idempotency-Key.
+ * The key is claimed in the same transaction that creates the order, so a retry either replays the
+ * stored response or, if the first attempt failed and rolled back, runs the checkout again.
+ * Recent outcomes are also kept in a bounded in-memory map so double-clicks never reach the database.
+ */
+@Service
+@Slf4j
+public class IdempotentCheckoutService {
+    static final int MAX_KEY_LENGTH = 100;
+
+    private final OrderService orderService;
+    private final IdempotencyRecordRepository repository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int ttlHours;
+    private final Map<String, OrderSummary> recent;
+
+    public IdempotentCheckoutService(OrderService orderService,
+                                     IdempotencyRecordRepository repository,
+                                     ObjectMapper objectMapper,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${orders.idempotency.ttl-hours:24}") int ttlHours,
+                                     @Value("${orders.idempotency.cache-size:10000}") int cacheSize) {
+        this.orderService = orderService;
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlHours = ttlHours;
+        // Access-ordered LinkedHashMap evicting the least recently used entry past cacheSize
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OrderSummary> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Creates an order from the user's cart, or returns the order already created for this key.
+     * Without a key every call checks out again.
+     */
+    public OrderSummary checkout(User user, String idempotencyKey) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return OrderSummary.from(orderService.createOrderFromCart(user));
+        }
+        String key = idempotencyKey.trim();
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key longer than " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String cacheKey = user.getId() + ":" + key;
+        OrderSummary cached = cached(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        OrderSummary summary = transactionTemplate.execute(tx -> {
+            if (repository.claim(user.getId(), key, LocalDateTime.now()) == 0) {
+                return replay(user.getId(), key);
+            }
+            OrderSummary created = OrderSummary.from(orderService.createOrderFromCart(user));
+            repository.complete(user.getId(), key, created.id(), write(created));
+            return created;
+        });
+        // Only committed outcomes are cached; a failed checkout leaves the key free for a retry
+        synchronized (recent) {
+            recent.put(cacheKey, summary);
+        }
+        return summary;
+    }
+
+    @Scheduled(cron = "${orders.idempotency.purge-cron:0 15 * * * *}")
+    public int purgeExpired() {
+        Integer purged = transactionTemplate.execute(tx ->
+                repository.deleteCreatedBefore(LocalDateTime.now().minusHours(ttlHours)));
+        if (purged != null && purged > 0) {
+            log.info("Purged {} idempotency keys older than {} hours", purged, ttlHours);
+        }
+        return purged == null ? 0 : purged;
+    }
+
+    private OrderSummary cached(String cacheKey) {
+        synchronized (recent) {
+            return recent.get(cacheKey);
+        }
+    }
+
+    private OrderSummary replay(Long userId, String key) {
+        IdempotencyRecord record = repository.findById(new IdempotencyRecord.Key(userId, key))
+                .orElseThrow(() -> new IllegalStateException("Idempotency key vanished: " + key));
+        if (record.getResponse() == null) {
+            throw new IllegalStateException("Checkout for idempotency key " + key + " has no stored result");
+        }
+        try {
+            return objectMapper.readValue(record.getResponse(), OrderSummary.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable stored checkout result for key " + key, e);
+        }
+    }
+
+    private String write(OrderSummary summary) {
+        try {
+            return objectMapper.writeValueAsString(summary);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize checkout result", e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.repository.ArchivedOrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves finished orders (DELIVERED, CANCELED) older than the configured age from orders/order_item
+ * into orders_archive/order_item_archive. Each batch is its own short transaction, so rows are
+ * locked only while their batch is copied and deleted.
+ */
+@Service
+@Slf4j
+public class OrderArchiveService {
+    static final List<String> ARCHIVABLE = List.of(OrderStatus.DELIVERED.name(), OrderStatus.CANCELED.name());
+
+    private final ArchivedOrderRepository archiveRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int afterDays;
+    private final int batchSize;
+
+    public OrderArchiveService(ArchivedOrderRepository archiveRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${orders.archive.after-days:90}") int afterDays,
+                               @Value("${orders.archive.batch-size:500}") int batchSize) {
+        this.archiveRepository = archiveRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.afterDays = afterDays;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${orders.archive.cron:0 0 2 * * *}")
+    public int archiveFinishedOrders() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(afterDays);
+        int total = 0;
+        int moved;
+        do {
+            moved = archiveBatch(cutoff);
+            total += moved;
+        } while (moved == batchSize);
+        if (total > 0) {
+            log.info("Archived {} orders finished before {}", total, cutoff);
+        }
+        return total;
+    }
+
+    // Copy then delete; both happen under the row locks taken by lockArchivable
+    int archiveBatch(LocalDateTime cutoff) {
+        Integer moved = transactionTemplate.execute(tx -> {
+            List<Long> ids = archiveRepository.lockArchivable(ARCHIVABLE, cutoff, batchSize);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            archiveRepository.copyOrders(ids);
+            archiveRepository.copyItems(ids);
+            archiveRepository.deleteLiveItems(ids);
+            archiveRepository.deleteLiveOrders(ids);
+            return ids.size();
+        });
+        return moved == null ? 0 : moved;
+    }
+}
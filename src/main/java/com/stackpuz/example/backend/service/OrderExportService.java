@@ -0,0 +1,93 @@
+package com.stackpuz.example.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stackpuz.example.backend.dto.OrderFilter;
+import com.stackpuz.example.backend.dto.OrderLine;
+import com.stackpuz.example.backend.dto.OrderSummary;
+import com.stackpuz.example.backend.enums.ExportFormat;
+import com.stackpuz.example.backend.repository.OrderExportRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes orders for finance as CSV (one row per order line) or NDJSON (one order per line).
+ * Orders are written as the repository reads them, so the export runs in constant memory.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderExportService {
+    static final String CSV_HEADER = "order_id,order_date,user_id,username,status,total_price,discount_code,"
+            + "discount_percent,product_id,product_name,quantity,price_at_order";
+
+    private final OrderExportRepository exportRepository;
+    private final ObjectMapper objectMapper;
+
+    public void export(OrderFilter filter, ExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+        try {
+            exportRepository.forEachOrder(filter, order -> {
+                try {
+                    if (format == ExportFormat.CSV) {
+                        writeCsv(order, writer);
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(order));
+                        writer.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // The client went away; unwrap so the caller sees the I/O failure and the cursor is already closed
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private static void writeCsv(OrderSummary order, Writer writer) throws IOException {
+        if (order.items().isEmpty()) {
+            writeCsvRow(order, null, writer);
+        }
+        for (OrderLine line : order.items()) {
+            writeCsvRow(order, line, writer);
+        }
+    }
+
+    private static void writeCsvRow(OrderSummary order, OrderLine line, Writer writer) throws IOException {
+        writer.write(String.join(",",
+                String.valueOf(order.id()),
+                order.orderDate() == null ? "" : order.orderDate().toString(),
+                String.valueOf(order.userId()),
+                csvText(order.username()),
+                order.status() == null ? "" : order.status().name(),
+                String.valueOf(order.totalPrice()),
+                csvText(order.discountCode()),
+                order.discountPercent() == null ? "" : String.valueOf(order.discountPercent()),
+                line == null || line.productId() == null ? "" : String.valueOf(line.productId()),
+                line == null ? "" : csvText(line.productName()),
+                line == null ? "" : String.valueOf(line.quantity()),
+                line == null ? "" : String.valueOf(line.priceAtOrder())));
+        writer.write('\n');
+    }
+
+    // RFC 4180 quoting; free text starting with a formula character is defused so spreadsheets do not evaluate it
+    static String csvText(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        if ("=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
@@ -0,0 +1,28 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.event.OrderPlaced;
+import com.stackpuz.example.backend.event.OrderStatusChanged;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Customer notifications for order events, delivered by the outbox after the dispatch commits.
+ * Only logs for now; this is where a mail or push sender plugs in. Must not throw: failures after
+ * commit are not retried.
+ */
+@Component
+@Slf4j
+public class OrderNotificationListener {
+
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlaced event) {
+        log.debug("Notify user {}: order {} confirmed, {} units, total {}",
+                event.userId(), event.orderId(), event.units(), event.totalPrice());
+    }
+
+    @TransactionalEventListener
+    public void onStatusChanged(OrderStatusChanged event) {
+        log.debug("Notify user {}: order {} is now {}", event.userId(), event.orderId(), event.to());
+    }
+}
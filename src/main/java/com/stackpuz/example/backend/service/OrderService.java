@@ -1,43 +1,81 @@
 package com.stackpuz.example.backend.service;
 
+import com.stackpuz.example.backend.dto.OrderFilter;
+import com.stackpuz.example.backend.dto.OrderPage;
+import com.stackpuz.example.backend.dto.OrderSummary;
+import com.stackpuz.example.backend.entity.ArchivedOrder;
 import com.stackpuz.example.backend.entity.Cart;
+import com.stackpuz.example.backend.entity.CartItem;
 import com.stackpuz.example.backend.entity.Order;
 import com.stackpuz.example.backend.entity.OrderItem;
 import com.stackpuz.example.backend.entity.User;
 import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.event.OrderPlaced;
+import com.stackpuz.example.backend.event.OrderStatusChanged;
+import com.stackpuz.example.backend.repository.ArchivedOrderRepository;
 import com.stackpuz.example.backend.repository.OrderRepository;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class OrderService {
+    public static final int DEFAULT_PAGE_SIZE = 25;
+    public static final int MAX_PAGE_SIZE = 100;
+
     private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
     private final CartService cartService;
     private final UserService userService;
+    private final SalesRollupService salesRollupService;
+    private final StockService stockService;
+    private final OutboxService outboxService;
 
     public OrderService(OrderRepository orderRepository, 
+                       ArchivedOrderRepository archivedOrderRepository,
                        CartService cartService,
-                       UserService userService) {
+                       UserService userService,
+                       SalesRollupService salesRollupService,
+                       StockService stockService,
+                       OutboxService outboxService) {
         this.orderRepository = orderRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
         this.cartService = cartService;
         this.userService = userService;
+        this.salesRollupService = salesRollupService;
+        this.stockService = stockService;
+        this.outboxService = outboxService;
     }
 
     public Order createOrderFromCart(User user) {
+        // With the write-behind cart store this flushes the cart's pending changes first, and holds new
+        // ones back until the order commits, so the order is made from exactly the lines clearCart removes
         Cart cart = cartService.getUserCart(user);
         if (cart.getItems().isEmpty()) {
             throw new IllegalStateException("Cannot create order from empty cart");
         }
 
+        // Units per product; sold-out products are rejected here, before any row is written
+        Map<Integer, Integer> quantities = cart.getItems().stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), CartItem::getQuantity, Integer::sum));
+        stockService.hold(quantities);
+
         Order order = new Order();
         order.setUser(user);
-        order.setTotalPrice(cart.getTotalPrice());
         // Carry over discount info for record
         order.setDiscountCode(cart.getAppliedDiscountCode());
         order.setDiscountPercent(cart.getAppliedDiscountPercent());
@@ -55,28 +93,160 @@ public class OrderService {
             .collect(Collectors.toList());
 
         order.setItems(orderItems);
+        // Priced from the lines, not the cart's stored totals, which may lag a price change until reconciled
+        double subtotal = orderItems.stream().mapToDouble(item -> item.getPriceAtOrder() * item.getQuantity()).sum();
+        order.setTotalPrice(Math.max(subtotal - Cart.discountOf(subtotal, cart.getAppliedDiscountPercent()), 0.0));
         
-        // Save the order
+        // Save the order; flush so its generated order date is set before the event is built
         Order savedOrder = orderRepository.save(order);
+        orderRepository.flush();
+        // Rollups and other follow-up work happen when the outbox delivers this, not in checkout
+        outboxService.append(OrderPlaced.from(savedOrder), savedOrder.getId());
         
         // Clear the cart
         cartService.clearCart(user);
+
+        // Stock rows are locked last so they stay locked only until commit
+        stockService.deduct(quantities);
         
         return savedOrder;
     }
 
-    public List<Order> getUserOrders(User user) {
-        return orderRepository.findByUserOrderByOrderDateDesc(user);
+    /**
+     * One page of a user's order history, newest first, across live and archived orders.
+     * Both tables are read with the same (orderDate, id) keyset, so each page costs two bounded
+     * index range scans however much history has been archived.
+     */
+    public OrderPage getUserOrderHistory(User user, String after, Integer limit) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        String[] cursor = after == null || after.isBlank() ? null : decodeCursor(after);
+
+        LocalDateTime afterDate;
+        Long afterId;
+        try {
+            afterDate = cursor == null ? null : LocalDateTime.parse(cursor[1]);
+            afterId = cursor == null ? null : Long.valueOf(cursor[0]);
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        // Fetch one extra row from each side to know whether another page exists
+        List<Order> live = orderRepository.findAdminPage(null, user.getId(), null, null,
+                afterDate, afterId, PageRequest.of(0, size + 1));
+        List<ArchivedOrder> archived = archivedOrderRepository.findUserPage(user.getId(),
+                afterDate, afterId, PageRequest.of(0, size + 1));
+
+        List<HistoryRow> merged = new ArrayList<>(live.size() + archived.size());
+        live.forEach(order -> merged.add(new HistoryRow(order.getId(), order.getOrderDate(), order, null)));
+        archived.forEach(order -> merged.add(new HistoryRow(order.getId(), order.getOrderDate(), null, order)));
+        merged.sort(Comparator.comparing(HistoryRow::orderDate).thenComparing(HistoryRow::id).reversed());
+
+        String nextCursor = null;
+        List<HistoryRow> rows = merged;
+        if (merged.size() > size) {
+            rows = merged.subList(0, size);
+            nextCursor = encodeCursor(rows.get(size - 1).id(), rows.get(size - 1).orderDate());
+        }
+
+        // Load lines only for the orders that made it onto the page
+        List<Long> liveIds = rows.stream().filter(row -> row.live() != null).map(HistoryRow::id).toList();
+        List<Long> archivedIds = rows.stream().filter(row -> row.archived() != null).map(HistoryRow::id).toList();
+        if (!liveIds.isEmpty()) {
+            orderRepository.findWithItemsByIdIn(liveIds);
+        }
+        if (!archivedIds.isEmpty()) {
+            archivedOrderRepository.findWithItemsByIdIn(archivedIds);
+        }
+        List<OrderSummary> items = rows.stream()
+                .map(row -> row.live() != null
+                        ? OrderSummary.from(row.live())
+                        : OrderSummary.fromArchived(row.archived(), user.getUsername()))
+                .toList();
+        return new OrderPage(items, size, nextCursor);
+    }
+
+    // Exactly one of live/archived is set
+    private record HistoryRow(Long id, LocalDateTime orderDate, Order live, ArchivedOrder archived) {
+    }
+
+    // Keyset pagination on (orderDate, id), newest first: each page is an index range scan of `limit` rows
+    @PreAuthorize("hasRole('ADMIN')")
+    public OrderPage getOrderPage(OrderFilter filter, String after, Integer limit) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        String[] cursor = after == null || after.isBlank() ? null : decodeCursor(after);
+
+        Long userId = null;
+        if (filter.hasUsername()) {
+            Optional<User> user = userService.findByUsername(filter.username().trim());
+            if (user.isEmpty()) {
+                return new OrderPage(List.of(), size, null);
+            }
+            userId = user.get().getId();
+        }
+
+        List<Order> rows;
+        try {
+            rows = orderRepository.findAdminPage(
+                    filter.status(),
+                    userId,
+                    filter.fromInclusive(),
+                    filter.toExclusive(),
+                    cursor == null ? null : LocalDateTime.parse(cursor[1]),
+                    cursor == null ? null : Long.valueOf(cursor[0]),
+                    // Fetch one extra row to know whether another page exists
+                    PageRequest.of(0, size + 1));
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            Order last = rows.get(size - 1);
+            nextCursor = encodeCursor(last.getId(), last.getOrderDate());
+        }
+        if (!rows.isEmpty()) {
+            // Second bounded query: initializes items and products of the orders already in this session
+            orderRepository.findWithItemsByIdIn(rows.stream().map(Order::getId).toList());
+        }
+        return new OrderPage(rows.stream().map(OrderSummary::from).toList(), size, nextCursor);
+    }
+
+    // Cursor is "id|orderDate", base64url-encoded so it can travel in a query string
+    private static String encodeCursor(Long id, LocalDateTime orderDate) {
+        String raw = id + "|" + orderDate;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
     }
 
-    public List<Order> getAllOrders() {
-        return orderRepository.findAllByOrderByOrderDateDesc();
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return raw.split("\\|", 2);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
     }
 
     @PreAuthorize("hasRole('ADMIN')")
     public Order updateOrderStatus(Long orderId, OrderStatus status) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new EntityNotFoundException("Order not found"));
+        OrderStatus from = order.getStatus();
+        // Same forward-only lifecycle as bulk transitions, so a canceled order cannot be canceled (and restocked) again
+        if (!from.canTransitionTo(status)) {
+            throw new IllegalArgumentException("Cannot move order from " + from + " to " + status);
+        }
+        // Lock the row in the status just read: only the one caller that finds it there moves the rollup,
+        // restocks and writes the event; a racing single or bulk change of the same order finds nothing
+        List<Long> locked = orderRepository.lockIdsInStatus(List.of(orderId), from.name());
+        if (locked.size() != 1) {
+            throw new IllegalStateException("Order status changed concurrently");
+        }
+        salesRollupService.recordMoved(locked, from, status);
+        if (status == OrderStatus.CANCELED) {
+            stockService.restockOrders(locked);
+        }
+        outboxService.append(new OrderStatusChanged(orderId, order.getUser().getId(), from, status), orderId);
         order.setStatus(status);
         return orderRepository.save(order);
     }
@@ -85,6 +255,7 @@ public class OrderService {
     public void deleteOrder(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new EntityNotFoundException("Order not found"));
+        salesRollupService.recordRemoved(List.of(order));
         orderRepository.delete(order);
     }
 
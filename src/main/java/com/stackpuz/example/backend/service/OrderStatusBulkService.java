@@ -0,0 +1,144 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.dto.BulkStatusRequest;
+import com.stackpuz.example.backend.dto.BulkStatusResult;
+import com.stackpuz.example.backend.dto.OrderFilter;
+import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.repository.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Moves many orders to a new status with set-based UPDATEs, one short transaction per chunk,
+ * so a shipping wave never loads order entities or holds row locks for the whole batch.
+ */
+@Service
+@Slf4j
+public class OrderStatusBulkService {
+    public static final int CHUNK_SIZE = 500;
+
+    private final OrderRepository orderRepository;
+    private final UserService userService;
+    private final SalesRollupService salesRollupService;
+    private final StockService stockService;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+
+    public OrderStatusBulkService(OrderRepository orderRepository,
+                                  UserService userService,
+                                  SalesRollupService salesRollupService,
+                                  StockService stockService,
+                                  OutboxService outboxService,
+                                  PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.userService = userService;
+        this.salesRollupService = salesRollupService;
+        this.stockService = stockService;
+        this.outboxService = outboxService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    public BulkStatusResult transition(BulkStatusRequest request) {
+        OrderStatus target = request.target();
+        if (target == null) {
+            throw new IllegalArgumentException("Target status is required");
+        }
+        // An empty filter would match every order that can move to the target
+        if (!request.hasIds() && request.filter().isNone()) {
+            throw new IllegalArgumentException("Order ids or at least one filter field are required");
+        }
+        Set<OrderStatus> sources = OrderStatus.sourcesOf(target);
+        if (request.status() != null) {
+            if (!request.status().canTransitionTo(target)) {
+                throw new IllegalArgumentException("Cannot move orders from " + request.status() + " to " + target);
+            }
+            sources = Set.of(request.status());
+        }
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("No order can move to " + target);
+        }
+
+        return request.hasIds()
+                ? transitionIds(List.copyOf(new LinkedHashSet<>(request.ids())), sources, target)
+                : transitionMatching(request.filter(), sources, target);
+    }
+
+    private BulkStatusResult transitionIds(List<Long> ids, Set<OrderStatus> sources, OrderStatus target) {
+        List<BulkStatusResult.Chunk> chunks = new ArrayList<>();
+        long updated = 0;
+        for (int start = 0; start < ids.size(); start += CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(start, Math.min(start + CHUNK_SIZE, ids.size()));
+            int count = applyChunk(chunk, sources, target);
+            chunks.add(progress(chunks.size(), chunk.size(), count, target));
+            updated += count;
+        }
+        return new BulkStatusResult(target, updated, ids.size() - updated, chunks);
+    }
+
+    private BulkStatusResult transitionMatching(OrderFilter filter, Set<OrderStatus> sources, OrderStatus target) {
+        Long userId = null;
+        if (filter.hasUsername()) {
+            Optional<User> user = userService.findByUsername(filter.username().trim());
+            if (user.isEmpty()) {
+                return new BulkStatusResult(target, 0, 0, List.of());
+            }
+            userId = user.get().getId();
+        }
+
+        List<BulkStatusResult.Chunk> chunks = new ArrayList<>();
+        long updated = 0;
+        long skipped = 0;
+        long afterId = 0;
+        while (true) {
+            // Keyset over ids: each chunk resumes after the last id seen, whatever happened to it
+            List<Long> chunk = orderRepository.findIdsForTransition(sources, userId,
+                    filter.fromInclusive(), filter.toExclusive(), afterId, PageRequest.of(0, CHUNK_SIZE));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            int count = applyChunk(chunk, sources, target);
+            chunks.add(progress(chunks.size(), chunk.size(), count, target));
+            updated += count;
+            skipped += chunk.size() - count;
+            afterId = chunk.get(chunk.size() - 1);
+        }
+        return new BulkStatusResult(target, updated, skipped, chunks);
+    }
+
+    private int applyChunk(List<Long> ids, Set<OrderStatus> sources, OrderStatus target) {
+        Integer count = transactionTemplate.execute(tx -> {
+            int updated = 0;
+            for (OrderStatus source : sources) {
+                // Lock first so the rollup move and the update cover exactly the same orders
+                List<Long> locked = orderRepository.lockIdsInStatus(ids, source.name());
+                if (!locked.isEmpty()) {
+                    salesRollupService.recordMoved(locked, source, target);
+                    updated += orderRepository.updateStatus(locked, Set.of(source), target);
+                    outboxService.appendStatusChanged(locked, source, target);
+                    if (target == OrderStatus.CANCELED) {
+                        stockService.restockOrders(locked);
+                    }
+                }
+            }
+            return updated;
+        });
+        return count == null ? 0 : count;
+    }
+
+    private static BulkStatusResult.Chunk progress(int index, int size, int updated, OrderStatus target) {
+        log.info("Bulk status {} chunk {}: {} of {} orders updated", target, index, updated, size);
+        return new BulkStatusResult.Chunk(index, size, updated);
+    }
+}
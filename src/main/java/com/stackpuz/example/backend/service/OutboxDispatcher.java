@@ -0,0 +1,133 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.entity.OutboxEvent;
+import com.stackpuz.example.backend.enums.OutboxStatus;
+import com.stackpuz.example.backend.repository.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Polls the outbox and publishes its events to in-process listeners.
+ * A batch is delivered in one transaction together with the delete of its still-leased rows, so transactional
+ * listeners (@EventListener + @Transactional) apply each event exactly once and
+ * @TransactionalEventListener methods run only after that commit. If the batch fails, its events
+ * are retried one by one so a single bad event cannot hold back the rest; failures back off
+ * exponentially and end up FAILED after max-attempts.
+ */
+@Component
+@Slf4j
+public class OutboxDispatcher {
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxEventRepository repository;
+    private final OutboxService outboxService;
+    private final ApplicationEventPublisher publisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long backoffMs;
+
+    public OutboxDispatcher(OutboxEventRepository repository,
+                            OutboxService outboxService,
+                            ApplicationEventPublisher publisher,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${outbox.batch-size:100}") int batchSize,
+                            @Value("${outbox.max-attempts:10}") int maxAttempts,
+                            @Value("${outbox.backoff-ms:1000}") long backoffMs) {
+        this.repository = repository;
+        this.outboxService = outboxService;
+        this.publisher = publisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-ms:500}")
+    public int dispatch() {
+        int delivered = 0;
+        List<OutboxEvent> batch;
+        do {
+            batch = claim();
+            if (!batch.isEmpty()) {
+                delivered += deliver(batch);
+            }
+        } while (batch.size() == batchSize);
+        return delivered;
+    }
+
+    // Short transaction of its own so the claim is visible to other dispatchers right away
+    private List<OutboxEvent> claim() {
+        String token = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        // Long enough for a batch to be delivered; an unfinished batch becomes due again after it
+        LocalDateTime leaseUntil = now.plusSeconds(60);
+        List<OutboxEvent> batch = transactionTemplate.execute(tx -> {
+            repository.claim(token, now, leaseUntil, batchSize);
+            return repository.findByLeaseTokenOrderById(token);
+        });
+        return batch == null ? List.of() : batch;
+    }
+
+    private int deliver(List<OutboxEvent> batch) {
+        List<Long> ids = batch.stream().map(OutboxEvent::getId).toList();
+        String token = batch.get(0).getLeaseToken();
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                batch.forEach(row -> publisher.publishEvent(outboxService.read(row)));
+                // If the lease ran out and another dispatcher re-claimed any of the rows, the listeners' work is
+                // rolled back with the delete and the rows are left to that dispatcher
+                if (repository.deleteLeased(ids, token) < ids.size()) {
+                    throw new LeaseLostException();
+                }
+            });
+            return batch.size();
+        } catch (LeaseLostException e) {
+            log.info("Outbox lease {} expired before events {} were delivered; they are redelivered", token, ids);
+            return 0;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                recordFailure(batch.get(0), e);
+                return 0;
+            }
+            int delivered = 0;
+            for (OutboxEvent row : batch) {
+                delivered += deliver(List.of(row));
+            }
+            return delivered;
+        }
+    }
+
+    private void recordFailure(OutboxEvent row, RuntimeException error) {
+        row.setAttempts(row.getAttempts() + 1);
+        row.setLeaseToken(null);
+        String message = String.valueOf(error.getMessage());
+        row.setLastError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+        if (row.getAttempts() >= maxAttempts) {
+            row.setStatus(OutboxStatus.FAILED);
+            log.warn("Outbox event {} ({}) failed {} times, giving up: {}",
+                    row.getId(), row.getType(), row.getAttempts(), message);
+        } else {
+            row.setAvailableAt(LocalDateTime.now().plusNanos(backoff(row.getAttempts()) * 1_000_000));
+            log.info("Outbox event {} ({}) failed, attempt {}: {}", row.getId(), row.getType(), row.getAttempts(), message);
+        }
+        transactionTemplate.executeWithoutResult(tx -> repository.save(row));
+    }
+
+    // backoffMs, doubled per attempt, capped at ten minutes
+    long backoff(int attempts) {
+        return Math.min(backoffMs << Math.min(attempts - 1, 20), 600_000L);
+    }
+
+    private static final class LeaseLostException extends RuntimeException {
+    }
+}
@@ -0,0 +1,84 @@
+package com.stackpuz.example.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stackpuz.example.backend.entity.OutboxEvent;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.event.OrderPlaced;
+import com.stackpuz.example.backend.event.OrderStatusChanged;
+import com.stackpuz.example.backend.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes events to the outbox table inside the caller's transaction, so an event exists
+ * exactly when the change it describes commits. Delivery is OutboxDispatcher's job.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+    // Event types the dispatcher knows how to read back, by OutboxEvent.type
+    static final Map<String, Class<?>> TYPES = Map.of(
+            OrderPlaced.class.getSimpleName(), OrderPlaced.class,
+            OrderStatusChanged.class.getSimpleName(), OrderStatusChanged.class);
+
+    private final OutboxEventRepository repository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(Object event, Long aggregateId) {
+        if (!TYPES.containsKey(event.getClass().getSimpleName())) {
+            throw new IllegalArgumentException("Unknown outbox event type " + event.getClass().getName());
+        }
+        OutboxEvent row = new OutboxEvent();
+        row.setType(event.getClass().getSimpleName());
+        row.setAggregateId(aggregateId);
+        row.setPayload(write(event));
+        LocalDateTime now = LocalDateTime.now();
+        row.setCreatedAt(now);
+        row.setAvailableAt(now);
+        repository.save(row);
+    }
+
+    // Set-based variant for bulk transitions
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int appendStatusChanged(Collection<Long> orderIds, OrderStatus from, OrderStatus to) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        return repository.insertStatusChanged(orderIds, from.name(), to.name(), LocalDateTime.now());
+    }
+
+    public Object read(OutboxEvent row) {
+        Class<?> type = TYPES.get(row.getType());
+        if (type == null) {
+            throw new IllegalStateException("Unknown outbox event type " + row.getType());
+        }
+        try {
+            return objectMapper.readValue(row.getPayload(), type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable outbox event " + row.getId(), e);
+        }
+    }
+
+    // Undelivered events of one type, locked until the caller's transaction ends
+    @Transactional(propagation = Propagation.MANDATORY)
+    public <T> List<T> lockPending(Class<T> type) {
+        return repository.lockPending(type.getSimpleName()).stream().map(row -> type.cast(read(row))).toList();
+    }
+
+    private String write(Object event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + event.getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over product names.
+ * Terms are kept sorted so prefix lookups are a range scan. Typos are matched through a deletion
+ * neighbourhood (SymSpell): every term is also filed under each string left by deleting up to two of its
+ * characters, so a query only looks up its own deletions and checks the few terms found there, however
+ * large the dictionary grows.
+ */
+@Component
+@Slf4j
+public class ProductSearchIndex {
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    // Score per query token: exact term > prefix of a term > typo-tolerant match
+    private static final int EXACT_SCORE = 30;
+    private static final int PREFIX_SCORE = 20;
+    private static final int FUZZY_SCORE = 10;
+    // The most edits any query token is allowed, see maxEdits
+    private static final int MAX_EDITS = 2;
+    // Shortest deletion kept: a four-letter query token, the shortest with typo tolerance, leaves two or more
+    private static final int MIN_DELETION_LENGTH = 2;
+
+    private final ProductRepository repository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Set<Integer>> postings = new TreeMap<>();
+    // Terms by each string left after deleting up to MAX_EDITS of their characters, the term itself included
+    private final Map<String, Set<String>> termsByDeletion = new HashMap<>();
+    private final Map<Integer, List<String>> termsByProduct = new HashMap<>();
+    private final Map<Integer, Integer> nameLengths = new HashMap<>();
+    private volatile boolean ready;
+
+    public ProductSearchIndex(ProductRepository repository) {
+        this.repository = repository;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Integer, String> names = new HashMap<>();
+        // Walk the catalog in keyset batches instead of loading it in one findAll()
+        repository.forEachBatch(REBUILD_BATCH_SIZE, batch -> batch.forEach(p -> names.put(p.getId(), p.getName())));
+
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            termsByDeletion.clear();
+            termsByProduct.clear();
+            nameLengths.clear();
+            names.forEach(this::addUnlocked);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product search index built with {} products and {} terms", names.size(), postings.size());
+    }
+
+    public void index(Product product) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(product.getId());
+            addUnlocked(product.getId(), product.getName());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int productId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of products whose name matches every query token, best match first.
+     */
+    public List<Integer> search(String query, int limit) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> scores = null;
+            for (String term : queryTerms) {
+                Map<Integer, Integer> termScores = scoreTerm(term);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // Every query token must match something in the name
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((id, score) -> score + termScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            Map<Integer, Integer> finalScores = scores;
+            return finalScores.keySet().stream()
+                    .sorted(Comparator.<Integer>comparingInt(finalScores::get).reversed()
+                            .thenComparingInt(id -> nameLengths.getOrDefault(id, 0))
+                            .thenComparingInt(id -> id))
+                    .limit(limit)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Integer, Integer> scoreTerm(String term) {
+        Map<Integer, Integer> scores = new HashMap<>();
+
+        // Exact and prefix matches: a range scan of the sorted dictionary
+        for (Map.Entry<String, Set<Integer>> entry : postings.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            int score = entry.getKey().length() == term.length() ? EXACT_SCORE : PREFIX_SCORE;
+            entry.getValue().forEach(id -> scores.merge(id, score, Math::max));
+        }
+
+        int maxDistance = maxEdits(term);
+        if (maxDistance == 0) {
+            return scores;
+        }
+        // Two terms within k edits share a string left by deleting at most k characters from each
+        Set<String> candidates = new HashSet<>();
+        for (String deletion : deletions(term, maxDistance)) {
+            candidates.addAll(termsByDeletion.getOrDefault(deletion, Set.of()));
+        }
+        for (String candidate : candidates) {
+            if (Math.abs(candidate.length() - term.length()) > maxDistance || candidate.startsWith(term)) {
+                continue;
+            }
+            int distance = boundedDistance(term, candidate, maxDistance);
+            if (distance <= maxDistance) {
+                int score = FUZZY_SCORE - distance;
+                postings.get(candidate).forEach(id -> scores.merge(id, score, Math::max));
+            }
+        }
+        return scores;
+    }
+
+    // The term and every string left by deleting up to maxDeletes of its characters, down to MIN_DELETION_LENGTH
+    static Set<String> deletions(String term, int maxDeletes) {
+        Set<String> result = new HashSet<>();
+        result.add(term);
+        Set<String> frontier = Set.of(term);
+        for (int round = 0; round < maxDeletes; round++) {
+            Set<String> next = new HashSet<>();
+            for (String shorter : frontier) {
+                if (shorter.length() <= MIN_DELETION_LENGTH) {
+                    continue;
+                }
+                for (int i = 0; i < shorter.length(); i++) {
+                    String deletion = shorter.substring(0, i) + shorter.substring(i + 1);
+                    if (result.add(deletion)) {
+                        next.add(deletion);
+                    }
+                }
+            }
+            frontier = next;
+        }
+        return result;
+    }
+
+    // Short tokens get no typo tolerance, medium ones one edit, long ones two
+    private static int maxEdits(String term) {
+        if (term.length() < 4) {
+            return 0;
+        }
+        return term.length() < 8 ? 1 : MAX_EDITS;
+    }
+
+    // Levenshtein distance that gives up as soon as it must exceed max
+    static int boundedDistance(String a, String b, int max) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void addUnlocked(int productId, String name) {
+        List<String> terms = tokenize(name).stream().distinct().toList();
+        if (terms.isEmpty()) {
+            return;
+        }
+        for (String term : terms) {
+            postings.computeIfAbsent(term, t -> {
+                deletions(t, MAX_EDITS).forEach(deletion ->
+                        termsByDeletion.computeIfAbsent(deletion, d -> new HashSet<>()).add(t));
+                return new HashSet<>();
+            }).add(productId);
+        }
+        termsByProduct.put(productId, terms);
+        nameLengths.put(productId, name.length());
+    }
+
+    private void removeUnlocked(int productId) {
+        List<String> terms = termsByProduct.remove(productId);
+        nameLengths.remove(productId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Set<Integer> ids = postings.get(term);
+            if (ids != null) {
+                ids.remove(productId);
+                if (ids.isEmpty()) {
+                    postings.remove(term);
+                    for (String deletion : deletions(term, MAX_EDITS)) {
+                        Set<String> shared = termsByDeletion.get(deletion);
+                        shared.remove(term);
+                        if (shared.isEmpty()) {
+                            termsByDeletion.remove(deletion);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
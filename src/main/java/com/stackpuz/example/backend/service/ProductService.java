@@ -1,34 +1,131 @@
 package com.stackpuz.example.backend.service;
 
+import com.stackpuz.example.backend.dto.ProductPage;
+import com.stackpuz.example.backend.dto.ProductSuggestion;
 import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.enums.ProductSort;
 import com.stackpuz.example.backend.repository.ProductRepository;
 import com.stackpuz.example.backend.repository.ReviewRepository;
 import com.stackpuz.example.backend.repository.CartItemRepository;
 import com.stackpuz.example.backend.repository.WishlistItemRepository;
 import com.stackpuz.example.backend.repository.OrderItemRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import lombok.RequiredArgsConstructor;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
+    public static final int DEFAULT_PAGE_SIZE = 24;
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_SUGGESTIONS = 20;
 
     private final ProductRepository repository;
     private final ReviewRepository reviewRepository;
     private final CartItemRepository cartItemRepository;
     private final WishlistItemRepository wishlistItemRepository;
     private final OrderItemRepository orderItemRepository;
+    private final RatingStatsService ratingStatsService;
+    private final StockService stockService;
+    private final ProductSearchIndex searchIndex;
+    private final ProductSuggester suggester;
+    private final CartService cartService;
 
+    @Transactional
     public Product saveProduct(Product product) {
-        return repository.save(product);
+        Product saved = repository.save(product);
+        afterCommit(() -> {
+            searchIndex.index(saved);
+            suggester.put(saved);
+        });
+        return saved;
+    }
+
+    // Keyset (cursor) pagination: cost depends on the page size, not on how deep the page is
+    public ProductPage getProductPage(ProductSort sort, String after, Integer limit) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // Fetch one extra row to know whether another page exists
+        Pageable window = PageRequest.of(0, size + 1);
+        String[] cursor = after == null || after.isBlank() ? null : decodeCursor(after);
+
+        List<Product> rows;
+        try {
+            rows = switch (sort) {
+                case ID -> cursor == null
+                        ? repository.findAllByOrderByIdAsc(window)
+                        : repository.findByIdGreaterThanOrderByIdAsc(Integer.parseInt(cursor[0]), window);
+                case PRICE -> {
+                    if (cursor == null) {
+                        yield repository.findAllByOrderByPriceAscIdAsc(window);
+                    }
+                    String price = sortValue(cursor);
+                    yield price == null
+                            ? repository.findPricePageAfterNull(Integer.parseInt(cursor[0]), window)
+                            : repository.findPricePageAfter(Double.valueOf(price), Integer.parseInt(cursor[0]), window);
+                }
+                case NAME -> {
+                    if (cursor == null) {
+                        yield repository.findAllByOrderByNameAscIdAsc(window);
+                    }
+                    String name = sortValue(cursor);
+                    yield name == null
+                            ? repository.findNamePageAfterNull(Integer.parseInt(cursor[0]), window)
+                            : repository.findNamePageAfter(name, Integer.parseInt(cursor[0]), window);
+                }
+            };
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            nextCursor = encodeCursor(sort, rows.get(size - 1));
+        }
+        return new ProductPage(List.copyOf(rows), sort.name().toLowerCase(), size, nextCursor);
+    }
+
+    // Cursor is "id|=sortValue", base64url-encoded so it can travel in a query string. A null sort value
+    // is written as a bare "id|", which the leading "=" keeps distinct from an empty name
+    private static String encodeCursor(ProductSort sort, Product last) {
+        String raw = switch (sort) {
+            case ID -> String.valueOf(last.getId());
+            case PRICE -> last.getId() + "|" + (last.getPrice() == null ? "" : "=" + last.getPrice());
+            case NAME -> last.getId() + "|" + (last.getName() == null ? "" : "=" + last.getName());
+        };
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sortValue(String[] cursor) {
+        if (cursor[1].isEmpty()) {
+            return null;
+        }
+        if (!cursor[1].startsWith("=")) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return cursor[1].substring(1);
     }
 
-    public List<Product> getProducts() {
-        return repository.findAll();
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return raw.split("\\|", 2);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
     }
 
     public Product getProductById(int id) {
@@ -36,12 +133,22 @@ public class ProductService {
                 .orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + id));
     }
 
+    @Transactional
     public Product updateProduct(int id, Product product) {
         Product existing = repository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + id));
+        boolean repriced = !Objects.equals(existing.getPrice(), product.getPrice());
         existing.setName(product.getName());
         existing.setPrice(product.getPrice());
-        return repository.save(existing);
+        Product saved = repository.save(existing);
+        afterCommit(() -> {
+            searchIndex.index(saved);
+            suggester.put(saved);
+            if (repriced) {
+                cartService.markPriceChanged(id);
+            }
+        });
+        return saved;
     }
 
     @Transactional
@@ -59,11 +166,48 @@ public class ProductService {
         wishlistItemRepository.deleteByProductId(id);
         // First delete dependent reviews to satisfy FK constraints
         reviewRepository.deleteByProductId(id);
+        ratingStatsService.deleteForProduct(id);
+        stockService.forget(id);
         repository.deleteById(id);
+        afterCommit(() -> {
+            searchIndex.remove(id);
+            suggester.remove(id);
+        });
     }
 
+    // Ranked lookup in the in-memory index, then a single primary-key fetch for the hits
     public List<Product> searchProductsByName(String name) {
-        return repository.findByNameContainingIgnoreCase(name);
+        if (!searchIndex.isReady()) {
+            return repository.findByNameContainingIgnoreCase(name);
+        }
+        List<Integer> ids = searchIndex.search(name, MAX_PAGE_SIZE);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Product> byId = repository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    public List<ProductSuggestion> suggestProducts(String prefix, int limit) {
+        return suggester.suggest(prefix, Math.max(1, Math.min(limit, MAX_SUGGESTIONS)));
+    }
+
+    // Keep the in-memory index in line with what actually got committed
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,382 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.dto.ProductSuggestion;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.repository.OrderItemRepository;
+import com.stackpuz.example.backend.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Autocomplete over product names.
+ * Every word start of every normalized name is stored in one sorted array, so a prefix is a binary search
+ * for its matching range. A range of up to SCAN_LIMIT entries is ranked on the spot; every prefix with a
+ * longer range keeps its top HEAD_SIZE ids precomputed, so no lookup scans more than SCAN_LIMIT entries.
+ * Candidates are ranked by units sold. Writes update the structure in place of a rebuild, so lookups never build anything.
+ */
+@Component
+@Slf4j
+public class ProductSuggester {
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    static final int HEAD_SIZE = ProductService.MAX_SUGGESTIONS;
+    static final int SCAN_LIMIT = 128;
+
+    private final ProductRepository productRepository;
+    private final OrderItemRepository orderItemRepository;
+
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private volatile Map<Integer, Long> weights = Map.of();
+    private volatile Snapshot snapshot = new Snapshot(new String[0], new int[0], new ConcurrentHashMap<>());
+
+    // keys and ids are immutable, sorted by key; ids[i] is the product whose name contains keys[i] at a word start.
+    // heads maps every prefix matching more than SCAN_LIMIT keys to its best HEAD_SIZE ids, best first. Writes
+    // update it in place rather than copy it: a lookup that meets a head a moment ahead of the arrays at worst
+    // ranks one changed product early or late
+    private record Snapshot(String[] keys, int[] ids, Map<String, int[]> heads) {
+    }
+
+    public ProductSuggester(ProductRepository productRepository, OrderItemRepository orderItemRepository) {
+        this.productRepository = productRepository;
+        this.orderItemRepository = orderItemRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Integer, String> loaded = new HashMap<>();
+        productRepository.forEachBatch(REBUILD_BATCH_SIZE, batch -> batch.forEach(p -> loaded.put(p.getId(), p.getName())));
+        Map<Integer, Long> sold = loadWeights();
+        synchronized (this) {
+            names.clear();
+            names.putAll(loaded);
+            weights = sold;
+            List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+            names.forEach((id, name) -> entries.addAll(entries(id, name)));
+            entries.sort(Map.Entry.comparingByKey());
+            String[] keys = new String[entries.size()];
+            int[] ids = new int[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                keys[i] = entries.get(i).getKey();
+                ids[i] = entries.get(i).getValue();
+            }
+            snapshot = withHeads(keys, ids);
+        }
+        log.info("Product suggester loaded {} names", loaded.size());
+    }
+
+    // Popularity changes slowly; refresh the units-sold weights periodically and re-rank the heads with them
+    @Scheduled(fixedDelayString = "${products.suggest.weights-refresh-ms:3600000}",
+            initialDelayString = "${products.suggest.weights-refresh-ms:3600000}")
+    public void refreshWeights() {
+        Map<Integer, Long> sold = loadWeights();
+        synchronized (this) {
+            weights = sold;
+            snapshot = withHeads(snapshot.keys(), snapshot.ids());
+        }
+    }
+
+    private Map<Integer, Long> loadWeights() {
+        Map<Integer, Long> loaded = new HashMap<>();
+        orderItemRepository.sumUnitsByProduct().forEach(row -> loaded.put(row.getProductId(), row.getUnits()));
+        return loaded;
+    }
+
+    private Snapshot withHeads(String[] keys, int[] ids) {
+        Map<String, int[]> heads = new ConcurrentHashMap<>();
+        buildHeads(keys, ids, 0, keys.length, 0, heads);
+        return new Snapshot(keys, ids, heads);
+    }
+
+    public synchronized void put(Product product) {
+        replace(product.getId(), product.getName());
+    }
+
+    public synchronized void remove(int productId) {
+        replace(productId, null);
+    }
+
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        limit = Math.min(limit, HEAD_SIZE);
+        Snapshot current = snapshot;
+        int from = lowerBound(current.keys(), key);
+        int to = upperBound(current.keys(), key, from);
+        int[] head = to - from > SCAN_LIMIT ? current.heads().get(key) : null;
+        List<Integer> ids;
+        if (head == null) {
+            List<Integer> candidates = new ArrayList<>(to - from);
+            addRange(candidates, current.ids(), from, to);
+            ids = top(candidates, limit);
+        } else {
+            ids = new ArrayList<>(limit);
+            for (int i = 0; i < head.length && ids.size() < limit; i++) {
+                ids.add(head[i]);
+            }
+        }
+        List<ProductSuggestion> suggestions = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            String name = names.get(id);
+            if (name != null) {
+                suggestions.add(new ProductSuggestion(id, name));
+            }
+        }
+        return suggestions;
+    }
+
+    // Swaps one product's entries into new copies of the sorted arrays and updates the heads of every prefix of
+    // its old and new keys; callers hold the lock
+    private void replace(int id, String name) {
+        String old = names.get(id);
+        if (Objects.equals(old, name)) {
+            return;
+        }
+        List<Map.Entry<String, Integer>> added = entries(id, name);
+        added.sort(Map.Entry.comparingByKey());
+
+        Snapshot current = snapshot;
+        String[] keys = current.keys();
+        int[] ids = current.ids();
+        // Positions of the old entries and insertion points of the new ones; the runs between them are copied whole
+        List<Integer> removals = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : entries(id, old)) {
+            for (int i = lowerBound(keys, entry.getKey()); i < keys.length && keys[i].equals(entry.getKey()); i++) {
+                if (ids[i] == id && !removals.contains(i)) {
+                    removals.add(i);
+                    break;
+                }
+            }
+        }
+        removals.sort(null);
+        int[] insertAt = new int[added.size()];
+        for (int a = 0; a < added.size(); a++) {
+            insertAt[a] = lowerBound(keys, added.get(a).getKey());
+        }
+
+        String[] mergedKeys = new String[keys.length - removals.size() + added.size()];
+        int[] mergedIds = new int[mergedKeys.length];
+        int src = 0;
+        int dst = 0;
+        int r = 0;
+        int a = 0;
+        while (r < removals.size() || a < added.size()) {
+            int next = Math.min(r < removals.size() ? removals.get(r) : keys.length,
+                    a < added.size() ? insertAt[a] : keys.length);
+            System.arraycopy(keys, src, mergedKeys, dst, next - src);
+            System.arraycopy(ids, src, mergedIds, dst, next - src);
+            dst += next - src;
+            src = next;
+            if (a < added.size() && insertAt[a] == next) {
+                mergedKeys[dst] = added.get(a++).getKey();
+                mergedIds[dst++] = id;
+            } else {
+                src++;
+                r++;
+            }
+        }
+        System.arraycopy(keys, src, mergedKeys, dst, keys.length - src);
+        System.arraycopy(ids, src, mergedIds, dst, keys.length - src);
+
+        if (name == null) {
+            names.remove(id);
+        } else {
+            names.put(id, name);
+        }
+        Set<String> prefixes = new HashSet<>();
+        for (Map.Entry<String, Integer> entry : added) {
+            prefixes.addAll(prefixes(entry.getKey()));
+        }
+        Set<String> matching = new HashSet<>(prefixes);
+        for (Map.Entry<String, Integer> entry : entries(id, old)) {
+            prefixes.addAll(prefixes(entry.getKey()));
+        }
+        // Longest first, so a head merged from its groups below sees them already updated
+        List<String> ordered = new ArrayList<>(prefixes);
+        ordered.sort(Comparator.comparingInt(String::length).reversed());
+        Map<String, int[]> heads = current.heads();
+        for (String prefix : ordered) {
+            int from = lowerBound(mergedKeys, prefix);
+            int to = upperBound(mergedKeys, prefix, from);
+            int[] head = heads.get(prefix);
+            if (to - from <= SCAN_LIMIT) {
+                heads.remove(prefix);
+            } else if (head == null || contains(head, id)) {
+                // A product leaving a head, or moving within it, leaves a gap only the groups below can fill
+                heads.put(prefix, toArray(rank(mergedKeys, mergedIds, from, to, prefix.length(), heads)));
+            } else if (matching.contains(prefix)) {
+                heads.put(prefix, insert(head, id));
+            }
+        }
+        snapshot = new Snapshot(mergedKeys, mergedIds, heads);
+    }
+
+    // keys[from, to) share their first `length` characters; split them on the next one and keep a head for every
+    // group too long to scan, built bottom-up from the groups inside it
+    private void buildHeads(String[] keys, int[] ids, int from, int to, int length, Map<String, int[]> heads) {
+        int i = from;
+        while (i < to) {
+            if (keys[i].length() <= length) {
+                i++;
+                continue;
+            }
+            String prefix = keys[i].substring(0, length + 1);
+            int end = upperBound(keys, prefix, i);
+            if (end - i > SCAN_LIMIT) {
+                buildHeads(keys, ids, i, end, length + 1, heads);
+                heads.put(prefix, toArray(rank(keys, ids, i, end, length + 1, heads)));
+            }
+            i = end;
+        }
+    }
+
+    // Best HEAD_SIZE ids of keys[from, to), which share their first `length` characters. A long range is ranked
+    // from its groups on the next character: the head of a long group holds all of its candidates, and a short
+    // group is read directly
+    private List<Integer> rank(String[] keys, int[] ids, int from, int to, int length, Map<String, int[]> heads) {
+        List<Integer> candidates = new ArrayList<>();
+        if (to - from <= SCAN_LIMIT) {
+            addRange(candidates, ids, from, to);
+            return top(candidates, HEAD_SIZE);
+        }
+        int i = from;
+        while (i < to) {
+            if (keys[i].length() <= length) {
+                candidates.add(ids[i++]);
+                continue;
+            }
+            String prefix = keys[i].substring(0, length + 1);
+            int end = upperBound(keys, prefix, i);
+            int[] head = end - i > SCAN_LIMIT ? heads.get(prefix) : null;
+            if (head == null) {
+                addRange(candidates, ids, i, end);
+            } else {
+                for (int id : head) {
+                    candidates.add(id);
+                }
+            }
+            i = end;
+        }
+        return top(candidates, HEAD_SIZE);
+    }
+
+    private Comparator<Integer> ranking() {
+        Map<Integer, Long> currentWeights = weights;
+        return Comparator
+                .<Integer>comparingLong(id -> currentWeights.getOrDefault(id, 0L))
+                .reversed()
+                .thenComparingInt(id -> names.getOrDefault(id, "").length())
+                .thenComparingInt(id -> id);
+    }
+
+    // Best `limit` distinct candidates, best first
+    private List<Integer> top(List<Integer> candidates, int limit) {
+        Comparator<Integer> ranking = ranking();
+        // Bounded heap holding the best `limit` candidates, worst on top
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, ranking.reversed());
+        Set<Integer> seen = new HashSet<>();
+        for (Integer id : candidates) {
+            if (!seen.add(id) || !names.containsKey(id)) {
+                continue;
+            }
+            best.offer(id);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Integer> ranked = new ArrayList<>(best);
+        ranked.sort(ranking);
+        return ranked;
+    }
+
+    private static void addRange(List<Integer> candidates, int[] ids, int from, int to) {
+        for (int i = from; i < to; i++) {
+            candidates.add(ids[i]);
+        }
+    }
+
+    // A head with a product it did not hold before: it stays exact, since nothing else in the range changed
+    private int[] insert(int[] head, int id) {
+        List<Integer> ranked = new ArrayList<>(head.length + 1);
+        for (int existing : head) {
+            ranked.add(existing);
+        }
+        ranked.add(id);
+        ranked.sort(ranking());
+        return toArray(ranked.subList(0, Math.min(ranked.size(), HEAD_SIZE)));
+    }
+
+    private static List<Map.Entry<String, Integer>> entries(int id, String name) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        String normalized = normalize(name);
+        for (int i = 0; i < normalized.length(); i++) {
+            if (i == 0 || normalized.charAt(i - 1) == ' ') {
+                entries.add(Map.entry(normalized.substring(i), id));
+            }
+        }
+        return entries;
+    }
+
+    private static List<String> prefixes(String key) {
+        List<String> prefixes = new ArrayList<>(key.length());
+        for (int length = 1; length <= key.length(); length++) {
+            prefixes.add(key.substring(0, length));
+        }
+        return prefixes;
+    }
+
+    private static boolean contains(int[] head, int id) {
+        for (int existing : head) {
+            if (existing == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int lowerBound(String[] keys, String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // End of the run of keys starting with prefix, searching from its lower bound or any key inside the run
+    private static int upperBound(String[] keys, String prefix, int from) {
+        int low = from;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].startsWith(prefix)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+}
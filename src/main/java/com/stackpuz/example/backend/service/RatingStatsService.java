@@ -0,0 +1,97 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.dto.RatingSummary;
+import com.stackpuz.example.backend.entity.ProductRatingStats;
+import com.stackpuz.example.backend.repository.ProductRatingStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RatingStatsService {
+    private final ProductRatingStatsRepository repository;
+
+    public RatingSummary getSummary(int productId) {
+        return repository.findById(productId)
+                .map(ProductRatingStats::toSummary)
+                .orElseGet(() -> RatingSummary.empty(productId));
+    }
+
+    // Summaries keyed by product id, in the order requested; products without reviews get a zero summary
+    public Map<Integer, RatingSummary> getSummaries(Collection<Integer> productIds) {
+        Map<Integer, RatingSummary> summaries = new LinkedHashMap<>();
+        if (productIds == null || productIds.isEmpty()) {
+            return summaries;
+        }
+        productIds.forEach(id -> summaries.put(id, RatingSummary.empty(id)));
+        repository.findAllById(summaries.keySet())
+                .forEach(stats -> summaries.put(stats.getProductId(), stats.toSummary()));
+        return summaries;
+    }
+
+    // The record* methods join the caller's transaction so stats and reviews commit together
+    @Transactional
+    public void recordAdded(int productId, int rating) {
+        long[] stars = new long[5];
+        stars[rating - 1] = 1;
+        apply(productId, rating, 1, stars);
+    }
+
+    @Transactional
+    public void recordRemoved(int productId, int rating) {
+        long[] stars = new long[5];
+        stars[rating - 1] = -1;
+        apply(productId, -rating, -1, stars);
+    }
+
+    @Transactional
+    public void recordChanged(int productId, int oldRating, int newRating) {
+        if (oldRating == newRating) {
+            return;
+        }
+        long[] stars = new long[5];
+        stars[oldRating - 1] = -1;
+        stars[newRating - 1] = 1;
+        apply(productId, newRating - oldRating, 0, stars);
+    }
+
+    @Transactional
+    public void deleteForProduct(int productId) {
+        if (repository.existsById(productId)) {
+            repository.deleteById(productId);
+        }
+    }
+
+    // Recompute from scratch nightly to repair any drift
+    @Scheduled(cron = "${ratings.stats.rebuild-cron:0 30 3 * * *}")
+    @Transactional
+    public void rebuild() {
+        repository.deleteAllStats();
+        int rows = repository.insertFromReviews();
+        log.info("Rebuilt rating stats for {} products", rows);
+    }
+
+    // First start after the table is introduced: fill it from existing reviews
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildIfEmpty() {
+        if (repository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    private void apply(int productId, long sumDelta, long countDelta, long[] stars) {
+        repository.applyDelta(productId, sumDelta, countDelta,
+                stars[0], stars[1], stars[2], stars[3], stars[4]);
+    }
+}
@@ -1,5 +1,6 @@
 package com.stackpuz.example.backend.service;
 
+import com.stackpuz.example.backend.dto.RatingSummary;
 import com.stackpuz.example.backend.entity.Product;
 import com.stackpuz.example.backend.entity.Review;
 import com.stackpuz.example.backend.entity.User;
@@ -9,8 +10,13 @@ import com.stackpuz.example.backend.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -18,59 +24,86 @@ public class ReviewService {
     private final ReviewRepository reviewRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final RatingStatsService ratingStatsService;
 
     public List<Review> getReviewsForProduct(int productId) {
         return reviewRepository.findByProductId(productId);
     }
 
+    // Rating reads come from the product_rating_stats read model, not from scanning reviews
+    public RatingSummary getRatingSummary(int productId) {
+        return ratingStatsService.getSummary(productId);
+    }
+
     public Double getAverageRating(int productId) {
-        Double avg = reviewRepository.getAverageRating(productId);
-        return avg == null ? 0.0 : avg;
+        return getRatingSummary(productId).average();
     }
 
     public Long getReviewCount(int productId) {
-        Long count = reviewRepository.getReviewCount(productId);
-        return count == null ? 0L : count;
+        return getRatingSummary(productId).count();
+    }
+
+    // One IN (...) lookup per call, so the number of distinct ids is capped like a product page
+    public Map<Integer, RatingSummary> getRatingSummaries(Collection<Integer> productIds) {
+        Set<Integer> distinct = new LinkedHashSet<>(productIds);
+        if (distinct.size() > ProductService.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("At most " + ProductService.MAX_PAGE_SIZE + " product ids per request");
+        }
+        return ratingStatsService.getSummaries(distinct);
     }
 
-    public Review addOrUpdateReview(int productId, String username, int rating, String comment) {
+    @Transactional
+    public Review addOrUpdateReview(int productId, Long userId, int rating, String comment) {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + productId));
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new EntityNotFoundException("User not found: " + username));
+        // The caller is the authenticated user, so a reference is enough; it costs no query
+        User user = userRepository.getReferenceById(userId);
 
         if (rating < 1 || rating > 5) {
             throw new IllegalArgumentException("Rating must be between 1 and 5");
         }
 
-        Review review = reviewRepository.findByProductAndUser(product, user).orElseGet(Review::new);
+        Review review = reviewRepository.findByProductAndUserForUpdate(product, user).orElseGet(Review::new);
+        Integer previousRating = review.getId() == null ? null : review.getRating();
         review.setProduct(product);
         review.setUser(user);
         review.setRating(rating);
         review.setComment(comment);
-        return reviewRepository.save(review);
+        Review saved = reviewRepository.save(review);
+        if (previousRating == null) {
+            ratingStatsService.recordAdded(productId, rating);
+        } else {
+            ratingStatsService.recordChanged(productId, previousRating, rating);
+        }
+        return saved;
     }
 
-    public Review updateReview(Long reviewId, String username, int rating, String comment) {
-        Review review = reviewRepository.findById(reviewId)
+    @Transactional
+    public Review updateReview(Long reviewId, Long userId, int rating, String comment) {
+        Review review = reviewRepository.findByIdForUpdate(reviewId)
                 .orElseThrow(() -> new EntityNotFoundException("Review not found"));
-        if (!review.getUser().getUsername().equals(username)) {
+        if (!review.getUser().getId().equals(userId)) {
             throw new SecurityException("You can only edit your own review");
         }
         if (rating < 1 || rating > 5) {
             throw new IllegalArgumentException("Rating must be between 1 and 5");
         }
+        int previousRating = review.getRating();
         review.setRating(rating);
         review.setComment(comment);
-        return reviewRepository.save(review);
+        Review saved = reviewRepository.save(review);
+        ratingStatsService.recordChanged(review.getProduct().getId(), previousRating, rating);
+        return saved;
     }
 
-    public void deleteReview(Long reviewId, String username) {
-        Review review = reviewRepository.findById(reviewId)
+    @Transactional
+    public void deleteReview(Long reviewId, Long userId) {
+        Review review = reviewRepository.findByIdForUpdate(reviewId)
                 .orElseThrow(() -> new EntityNotFoundException("Review not found"));
-        if (!review.getUser().getUsername().equals(username)) {
+        if (!review.getUser().getId().equals(userId)) {
             throw new SecurityException("You can only delete your own review");
         }
         reviewRepository.delete(review);
+        ratingStatsService.recordRemoved(review.getProduct().getId(), review.getRating());
     }
 }
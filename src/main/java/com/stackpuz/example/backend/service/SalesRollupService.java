@@ -0,0 +1,153 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.dto.SalesDashboard;
+import com.stackpuz.example.backend.entity.Order;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.event.OrderPlaced;
+import com.stackpuz.example.backend.repository.ProductRepository;
+import com.stackpuz.example.backend.repository.ProductSalesDailyRepository;
+import com.stackpuz.example.backend.repository.SalesDailyRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Revenue and units per day, product and status, kept in rollup tables so dashboards read
+ * O(days) rows instead of scanning orders. New orders are added from their outbox event; every other
+ * write is a set-based upsert keyed by order ids, so callers must flush those orders before recording them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SalesRollupService {
+    public static final int DEFAULT_DAYS = 30;
+    public static final int MAX_DAYS = 366;
+    public static final int TOP_PRODUCTS = 10;
+
+    private final SalesDailyRepository dailyRepository;
+    private final ProductSalesDailyRepository productDailyRepository;
+    private final ProductRepository productRepository;
+    private final OutboxService outboxService;
+
+    // New orders arrive through the outbox, off the checkout path. Built from the event rather than the
+    // order rows, so it adds the same totals even if the order was moved or deleted in the meantime.
+    @EventListener
+    @Transactional
+    public void onOrderPlaced(OrderPlaced event) {
+        addPlaced(event, 1);
+    }
+
+    // The record* methods join the caller's transaction so rollups and orders commit together
+
+    @Transactional
+    public void recordMoved(Collection<Long> orderIds, OrderStatus from, OrderStatus to) {
+        if (orderIds.isEmpty() || from == to) {
+            return;
+        }
+        apply(orderIds, from, -1);
+        apply(orderIds, to, 1);
+    }
+
+    // Must run before the orders are deleted, while their rows can still be read
+    @Transactional
+    public void recordRemoved(Collection<Order> orders) {
+        orders.stream()
+                .collect(Collectors.groupingBy(Order::getStatus, Collectors.mapping(Order::getId, Collectors.toList())))
+                .forEach((status, ids) -> apply(ids, status, -1));
+    }
+
+    // Archived orders stay in the rollups; only deleting them (with their user) takes them out
+    @Transactional
+    public void recordArchivedRemovedForUser(Long userId) {
+        dailyRepository.removeArchivedForUser(userId);
+        productDailyRepository.removeArchivedForUser(userId);
+    }
+
+    // Recompute from scratch nightly to repair any drift
+    @Scheduled(cron = "${sales.rollup.rebuild-cron:0 0 4 * * *}")
+    @Transactional
+    public void rebuild() {
+        dailyRepository.deleteAllRows();
+        productDailyRepository.deleteAllRows();
+        int days = dailyRepository.insertFromOrders();
+        int lines = productDailyRepository.insertFromOrders();
+        // Orders whose OrderPlaced is still in the outbox are now counted twice: here and on delivery
+        List<OrderPlaced> pending = outboxService.lockPending(OrderPlaced.class);
+        pending.forEach(event -> addPlaced(event, -1));
+        log.info("Rebuilt sales rollups: {} day/status rows, {} day/product/status rows", days, lines);
+    }
+
+    // First start after the tables are introduced: backfill them from order history
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildIfEmpty() {
+        if (dailyRepository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    // Statuses default to everything except CANCELED; the range defaults to the last DEFAULT_DAYS days
+    @Transactional(readOnly = true)
+    public SalesDashboard getDashboard(LocalDate from, LocalDate to, Set<OrderStatus> statuses) {
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? end.minusDays(DEFAULT_DAYS - 1) : from;
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= MAX_DAYS) {
+            throw new IllegalArgumentException("Range is limited to " + MAX_DAYS + " days");
+        }
+        Set<OrderStatus> included = statuses == null || statuses.isEmpty()
+                ? EnumSet.complementOf(EnumSet.of(OrderStatus.CANCELED))
+                : EnumSet.copyOf(statuses);
+
+        List<SalesDashboard.Day> days = dailyRepository.sumByDay(start, end, included).stream()
+                .map(d -> new SalesDashboard.Day(d.getSalesDay(), d.getOrderCount(), d.getUnits(), d.getRevenue()))
+                .toList();
+        SalesDashboard.Totals total = new SalesDashboard.Totals(
+                days.stream().mapToLong(SalesDashboard.Day::orders).sum(),
+                days.stream().mapToLong(SalesDashboard.Day::units).sum(),
+                days.stream().mapToDouble(SalesDashboard.Day::revenue).sum());
+
+        Map<OrderStatus, SalesDashboard.Totals> byStatus = new EnumMap<>(OrderStatus.class);
+        dailyRepository.sumByStatus(start, end).forEach(s -> byStatus.put(s.getStatus(),
+                new SalesDashboard.Totals(s.getOrderCount(), s.getUnits(), s.getRevenue())));
+
+        List<ProductSalesDailyRepository.ProductTotals> top =
+                productDailyRepository.topProducts(start, end, included, PageRequest.of(0, TOP_PRODUCTS));
+        Map<Integer, String> names = new HashMap<>();
+        productRepository.findAllById(top.stream().map(ProductSalesDailyRepository.ProductTotals::getProductId).toList())
+                .forEach(p -> names.put(p.getId(), p.getName()));
+        List<SalesDashboard.ProductLine> topProducts = top.stream()
+                .map(t -> new SalesDashboard.ProductLine(t.getProductId(), names.get(t.getProductId()), t.getUnits(), t.getRevenue()))
+                .toList();
+
+        return new SalesDashboard(start, end, included, total, days, byStatus, topProducts);
+    }
+
+    private void addPlaced(OrderPlaced event, int sign) {
+        LocalDate day = event.orderDate().toLocalDate();
+        String status = OrderStatus.PLACED.name();
+        dailyRepository.add(day, status, sign, (long) sign * event.units(), sign * event.totalPrice());
+        Map<Integer, List<OrderPlaced.Line>> byProduct = event.lines().stream()
+                .collect(Collectors.groupingBy(OrderPlaced.Line::productId));
+        byProduct.forEach((productId, lines) -> productDailyRepository.add(day, productId, status,
+                (long) sign * lines.stream().mapToInt(OrderPlaced.Line::quantity).sum(),
+                sign * lines.stream().mapToDouble(line -> line.quantity() * line.priceAtOrder()).sum()));
+    }
+
+    private void apply(Collection<Long> orderIds, OrderStatus status, int sign) {
+        dailyRepository.apply(orderIds, status.name(), sign);
+        productDailyRepository.apply(orderIds, status.name(), sign);
+    }
+}
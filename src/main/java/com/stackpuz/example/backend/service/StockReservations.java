@@ -0,0 +1,98 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.repository.ProductStockRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory mirror of available stock that checkout consults before touching the database.
+ * During a flash sale most requests for a sold-out product are turned away here, so only
+ * buyers who can actually get a unit queue on the product_stock row lock.
+ * Each product is guarded by one of a fixed set of lock stripes; the database stays authoritative.
+ */
+@Component
+public class StockReservations {
+    static final int STRIPES = 64;
+    private static final int UNTRACKED = -1;
+
+    private final ProductStockRepository stockRepository;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Map<Integer, Integer> available = new ConcurrentHashMap<>();
+
+    public StockReservations(ProductStockRepository stockRepository) {
+        this.stockRepository = stockRepository;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Takes {@code quantity} units from the mirror, loading it from the database on first use.
+     * Returns false without changing anything when not enough units are left.
+     */
+    public boolean tryHold(int productId, int quantity) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            // Loaded under the stripe lock rather than in computeIfAbsent, which would hold a map bin during the query
+            Integer left = available.get(productId);
+            if (left == null) {
+                left = stockRepository.findQuantity(productId).orElse(UNTRACKED);
+                available.put(productId, left);
+            }
+            if (left == UNTRACKED) {
+                return true;
+            }
+            if (left < quantity) {
+                return false;
+            }
+            available.put(productId, left - quantity);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // False only when the mirror knows the product has no stock row, so checkout can skip its UPDATE
+    public boolean isTracked(int productId) {
+        Integer left = available.get(productId);
+        return left == null || left != UNTRACKED;
+    }
+
+    // Gives back units of a hold whose checkout did not commit
+    public void release(int productId, int quantity) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            available.computeIfPresent(productId, (id, left) -> left == UNTRACKED ? left : left + quantity);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Drops the mirrored value so the next hold reloads it, e.g. after a restock or a failed deduction
+    public void invalidate(int productId) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            available.remove(productId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Other instances may change stock too; start from the database again periodically
+    @Scheduled(fixedDelayString = "${stock.reservations.resync-ms:60000}",
+            initialDelayString = "${stock.reservations.resync-ms:60000}")
+    public void clear() {
+        available.keySet().forEach(this::invalidate);
+    }
+
+    private ReentrantLock stripe(int productId) {
+        return stripes[Math.floorMod(productId, STRIPES)];
+    }
+}
@@ -0,0 +1,122 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.entity.ProductStock;
+import com.stackpuz.example.backend.repository.ProductRepository;
+import com.stackpuz.example.backend.repository.ProductStockRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Stock reservation for checkout, in two steps inside the checkout transaction:
+ * {@link #hold} takes units from the in-memory mirror up front and fails fast when they are gone,
+ * {@link #deduct} runs the conditional UPDATEs last so the row locks are held only until commit.
+ */
+@Service
+@RequiredArgsConstructor
+public class StockService {
+    private final ProductStockRepository stockRepository;
+    private final ProductRepository productRepository;
+    private final StockReservations reservations;
+
+    // quantities: product id -> units; throws IllegalStateException if any product is short
+    public void hold(Map<Integer, Integer> quantities) {
+        List<Map.Entry<Integer, Integer>> held = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> line : new TreeMap<>(quantities).entrySet()) {
+            if (!reservations.tryHold(line.getKey(), line.getValue())) {
+                held.forEach(h -> reservations.release(h.getKey(), h.getValue()));
+                throw new IllegalStateException("Not enough stock for product " + line.getKey());
+            }
+            held.add(line);
+        }
+        afterRollback(() -> held.forEach(h -> reservations.release(h.getKey(), h.getValue())));
+    }
+
+    // Product id order, so two checkouts sharing products always lock rows in the same order
+    public void deduct(Map<Integer, Integer> quantities) {
+        for (Map.Entry<Integer, Integer> line : new TreeMap<>(quantities).entrySet()) {
+            int productId = line.getKey();
+            if (!reservations.isTracked(productId)) {
+                continue;
+            }
+            if (stockRepository.deduct(productId, line.getValue()) == 0
+                    && stockRepository.findQuantity(productId).isPresent()) {
+                // The mirror let this through but the row did not: resync it from the database
+                reservations.invalidate(productId);
+                throw new IllegalStateException("Not enough stock for product " + productId);
+            }
+        }
+    }
+
+    public Optional<Integer> getStock(int productId) {
+        return stockRepository.findQuantity(productId);
+    }
+
+    @Transactional
+    public ProductStock setStock(int productId, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Stock cannot be negative");
+        }
+        if (!productRepository.existsById(productId)) {
+            throw new EntityNotFoundException("Product not found with id: " + productId);
+        }
+        ProductStock saved = stockRepository.save(new ProductStock(productId, quantity));
+        afterCommit(() -> reservations.invalidate(productId));
+        return saved;
+    }
+
+    // Stops tracking the product, e.g. when it is deleted
+    @Transactional
+    public void forget(int productId) {
+        stockRepository.findById(productId).ifPresent(stockRepository::delete);
+        afterCommit(() -> reservations.invalidate(productId));
+    }
+
+    // Canceled orders give their units back
+    @Transactional
+    public void restockOrders(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        List<Integer> productIds = stockRepository.findProductIdsOfOrders(orderIds);
+        stockRepository.restockOrders(orderIds);
+        afterCommit(() -> productIds.forEach(reservations::invalidate));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
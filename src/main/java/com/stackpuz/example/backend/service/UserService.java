@@ -4,17 +4,24 @@ import com.stackpuz.example.backend.entity.Cart;
 import com.stackpuz.example.backend.entity.Order;
 import com.stackpuz.example.backend.entity.User;
 import com.stackpuz.example.backend.entity.Wishlist;
+import com.stackpuz.example.backend.repository.ArchivedOrderRepository;
 import com.stackpuz.example.backend.repository.CartRepository;
 import com.stackpuz.example.backend.repository.OrderRepository;
 import com.stackpuz.example.backend.repository.UserRepository;
 import com.stackpuz.example.backend.repository.WishlistRepository;
+import com.stackpuz.example.backend.security.AuthenticatedUser;
+import com.stackpuz.example.backend.security.UserDetailsCache;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
@@ -24,23 +31,35 @@ import java.util.Optional;
 
 @Service
 @Slf4j
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final OrderRepository orderRepository;
+    private final ArchivedOrderRepository archivedOrderRepository;
     private final CartRepository cartRepository; // Add this
     private final WishlistRepository wishlistRepository;
+    private final SalesRollupService salesRollupService;
+    private final UserDetailsCache userDetailsCache;
+    private final WriteBehindCartStore cartStore;
 
     public UserService(UserRepository userRepository, 
                       PasswordEncoder passwordEncoder,
                       OrderRepository orderRepository,
+                      ArchivedOrderRepository archivedOrderRepository,
                       CartRepository cartRepository,
-                      WishlistRepository wishlistRepository) { // Add parameter
+                      WishlistRepository wishlistRepository,
+                      SalesRollupService salesRollupService,
+                      UserDetailsCache userDetailsCache,
+                      WriteBehindCartStore cartStore) { // Add parameter
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.orderRepository = orderRepository;
+        this.archivedOrderRepository = archivedOrderRepository;
         this.cartRepository = cartRepository; // Add assignment
         this.wishlistRepository = wishlistRepository;
+        this.salesRollupService = salesRollupService;
+        this.userDetailsCache = userDetailsCache;
+        this.cartStore = cartStore;
         createAdminIfNotExists();
     }
 
@@ -66,6 +85,7 @@ public class UserService implements UserDetailsService {
         user.setPassword(passwordEncoder.encode(password));
         user.setRole("ROLE_USER");
         User savedUser = userRepository.save(user);
+        evictCachedUser(username);
         log.debug("User registered with role: {}", savedUser.getRole());
         return savedUser;
     }
@@ -85,13 +105,20 @@ public class UserService implements UserDetailsService {
             });
         
         log.debug("User found: {} with role: {}", username, user.getRole());
-        String role = user.getRole().replace("ROLE_", "");
-        log.debug("Mapped role for Spring Security: {}", role);
-        return org.springframework.security.core.userdetails.User
-                .withUsername(user.getUsername())
-                .password(user.getPassword())
-                .roles(role)
-                .build();
+        // Id and role ride along in the session, so later requests need not look the user up again
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getPassword(), user.getRole());
+    }
+
+    // Called by the authentication provider after a login whose stored hash is below the current encoder settings
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User stored = userRepository.findByUsername(user.getUsername())
+            .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        stored.setPassword(newPassword);
+        evictCachedUser(stored.getUsername());
+        log.debug("Password hash of {} upgraded", stored.getUsername());
+        return new AuthenticatedUser(stored.getId(), stored.getUsername(), newPassword, stored.getRole());
     }
 
     public List<User> getAllUsers() {
@@ -109,19 +136,26 @@ public void updateProfile(Long userId, User updatedUser) {
     existingUser.setBio(updatedUser.getBio());
     
     userRepository.save(existingUser);
+    evictCachedUser(existingUser.getUsername());
 }
 
+// A lazy reference: the user row is only read if a field other than the id is used
 public User getCurrentUser() {
     Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-    if (auth == null || !auth.isAuthenticated()) {
+    if (auth == null || !(auth.getPrincipal() instanceof AuthenticatedUser principal)) {
         return null;
     }
-    return findByUsername(auth.getName()).orElse(null);
+    return getReference(principal);
+}
+
+public User getReference(AuthenticatedUser principal) {
+    return userRepository.getReferenceById(principal.getId());
 }
 
 public long getUserOrderCount(Long userId) {
-    return orderRepository.countByUserId(userId);
+    return orderRepository.countByUserId(userId) + archivedOrderRepository.countByUserId(userId);
 }
+    @Transactional
     public void deleteUser(Long id) {
         User user = userRepository.findById(id)
             .orElseThrow(() -> new EntityNotFoundException("User not found"));
@@ -132,13 +166,19 @@ public long getUserOrderCount(Long userId) {
 
         // Delete related orders first (if they exist)
         List<Order> userOrders = orderRepository.findByUserOrderByOrderDateDesc(user);
+        salesRollupService.recordRemoved(userOrders);
         orderRepository.deleteAll(userOrders);
 
-        // Delete user's cart if it exists
-        Cart userCart = cartRepository.findByUser(user).orElse(null);
-        if (userCart != null) {
-            cartRepository.delete(userCart);
-        }
+        // Archived orders too; the rollups still count them, so take them out before the rows go
+        salesRollupService.recordArchivedRemovedForUser(id);
+        archivedOrderRepository.deleteItemsByUserId(id);
+        archivedOrderRepository.deleteByUserId(id);
+
+        // Delete user's cart if it exists; through the cart store, so pending write-behind lines go with it on commit
+        cartStore.writeThrough(user, () -> {
+            cartRepository.findByUser(user).ifPresent(cartRepository::delete);
+            return null;
+        });
 
         // Delete user's wishlist if it exists
         Wishlist wishlist = wishlistRepository.findByUser(user).orElse(null);
@@ -147,6 +187,20 @@ public long getUserOrderCount(Long userId) {
         }
 
         userRepository.deleteById(id);
+        evictCachedUser(user.getUsername());
         log.info("User deleted with ID: {}", id);
     }
+
+    // After commit as well, so a login racing the change cannot put the old account back for the cache's TTL
+    private void evictCachedUser(String username) {
+        userDetailsCache.removeUserFromCache(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userDetailsCache.removeUserFromCache(username);
+                }
+            });
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,542 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.dto.CartOperation;
+import com.stackpuz.example.backend.dto.CartTotals;
+import com.stackpuz.example.backend.entity.Cart;
+import com.stackpuz.example.backend.entity.CartItem;
+import com.stackpuz.example.backend.entity.IdGenerators;
+import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.CartOperationType;
+import com.stackpuz.example.backend.enums.CartStoreMode;
+import com.stackpuz.example.backend.repository.CartLineRepository;
+import com.stackpuz.example.backend.repository.CartRepository;
+import com.stackpuz.example.backend.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Optional write-behind storage for cart lines, on when cart.store.mode=WRITE_BEHIND.
+ * Line changes go to an in-memory copy of the user's cart; a scheduled flush writes the final lines of every
+ * changed cart, a batch of carts per transaction, so many changes between flushes cost one write.
+ * Anything that reads or rewrites a cart in the database flushes that cart first.
+ * Each user is guarded by one of a fixed set of lock stripes, and clean carts are evicted least recently used
+ * first. Carts live in this instance's memory, so the mode is for a single application instance.
+ */
+@Component
+@Slf4j
+public class WriteBehindCartStore {
+    static final int STRIPES = 64;
+
+    private final CartRepository cartRepository;
+    private final CartLineRepository cartLineRepository;
+    private final ProductRepository productRepository;
+    private final EntityManagerFactory entityManagerFactory;
+    private final OptimisticRetry retry;
+    private final boolean enabled;
+    private final int maxCarts;
+    private final int batchSize;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Condition[] released = new Condition[STRIPES];
+    // Bumped when a cart is rewritten in the database behind the store, so a load that raced it is redone
+    private final long[] epochs = new long[STRIPES];
+    // Access-ordered, so eviction starts from the least recently used cart
+    private final LinkedHashMap<Long, CartEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Users whose cart is being read or rewritten in the database; their line changes wait until that completes
+    private final Map<Long, Pin> pins = new ConcurrentHashMap<>();
+
+    public WriteBehindCartStore(CartRepository cartRepository,
+                                CartLineRepository cartLineRepository,
+                                ProductRepository productRepository,
+                                EntityManagerFactory entityManagerFactory,
+                                OptimisticRetry retry,
+                                @Value("${cart.store.mode:WRITE_THROUGH}") CartStoreMode mode,
+                                @Value("${cart.store.max-carts:10000}") int maxCarts,
+                                @Value("${cart.store.flush-batch-size:200}") int batchSize) {
+        this.cartRepository = cartRepository;
+        this.cartLineRepository = cartLineRepository;
+        this.productRepository = productRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.retry = retry;
+        this.enabled = mode == CartStoreMode.WRITE_BEHIND;
+        this.maxCarts = maxCarts;
+        this.batchSize = batchSize;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+            released[i] = stripes[i].newCondition();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Applies validated line changes to the user's cart in memory, loading it on first use, and returns
+     * its totals at current prices. Nothing is written until the cart is flushed.
+     */
+    public CartTotals apply(User user, List<CartOperation> operations) {
+        // Ids for lines that may be new are drawn here, before any lock or transaction: a flush can run inside
+        // a caller's transaction, where refilling the pooled generator would need a second connection. Ids of
+        // lines that turn out to exist already are simply skipped
+        Map<Integer, Integer> drawn = new HashMap<>();
+        for (CartOperation operation : operations) {
+            if (operation.op() == CartOperationType.ADD) {
+                drawn.computeIfAbsent(operation.productId(),
+                        productId -> (Integer) IdGenerators.next(entityManagerFactory, CartItem.class));
+            }
+        }
+        ReentrantLock lock = stripe(user.getId());
+        CartTotals totals;
+        lock.lock();
+        try {
+            CartEntry entry = entry(user);
+            for (CartOperation operation : operations) {
+                int current = entry.lines.getOrDefault(operation.productId(), 0);
+                switch (operation.op()) {
+                    case ADD -> {
+                        entry.lines.put(operation.productId(), current + operation.quantity());
+                        entry.newIds.putIfAbsent(operation.productId(), drawn.get(operation.productId()));
+                    }
+                    // Same rule as the database path: SET only changes a line that exists at that point
+                    case SET -> {
+                        if (current > 0 && operation.quantity() > 0) {
+                            entry.lines.put(operation.productId(), operation.quantity());
+                        } else if (current > 0) {
+                            entry.lines.remove(operation.productId());
+                        }
+                    }
+                    case REMOVE -> entry.lines.remove(operation.productId());
+                }
+            }
+            entry.dirty = true;
+            totals = totals(entry);
+        } finally {
+            lock.unlock();
+        }
+        evictOverflow();
+        return totals;
+    }
+
+    /**
+     * Runs a database read of the user's cart, such as rendering it or checking it out, after flushing its
+     * pending changes. Line changes wait until the work, or the caller's transaction, completes.
+     */
+    public <T> T readThrough(User user, Supplier<T> work) {
+        return pinned(user, false, work);
+    }
+
+    /**
+     * Runs a change that rewrites the user's cart in the database, such as clearing it or changing its
+     * discount, like {@link #readThrough}; once it commits the in-memory copy is dropped and reloaded on next use.
+     */
+    public <T> T writeThrough(User user, Supplier<T> work) {
+        return pinned(user, true, work);
+    }
+
+    // The pin is taken before the work locks any row, so a thread waiting for a pin never holds one of this cart's locks
+    private <T> T pinned(User user, boolean rewrites, Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+        Long userId = user.getId();
+        Pin held = pins.get(userId);
+        if (held != null && held.owner == Thread.currentThread()) {
+            held.rewrites |= rewrites;
+            return work.get();
+        }
+        Pin pin = pin(userId, rewrites);
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    unpin(userId, pin, status == STATUS_COMMITTED);
+                }
+            });
+            flush(userId);
+            return work.get();
+        }
+        boolean completed = false;
+        try {
+            flush(userId);
+            T result = work.get();
+            completed = true;
+            return result;
+        } finally {
+            unpin(userId, pin, completed);
+        }
+    }
+
+    // Inside a caller's transaction the lines commit or roll back with it
+    private void flush(Long userId) {
+        CartEntry entry;
+        synchronized (entries) {
+            entry = entries.get(userId);
+        }
+        Pending pending = entry == null ? null : prepare(userId, entry, true);
+        if (pending != null) {
+            write(List.of(pending));
+        }
+    }
+
+    // Changes made between flushes are written as one state per cart
+    @Scheduled(fixedDelayString = "${cart.store.flush-ms:5000}", initialDelayString = "${cart.store.flush-ms:5000}")
+    public int flushDirty() {
+        if (!enabled) {
+            return 0;
+        }
+        List<Map.Entry<Long, CartEntry>> candidates = new ArrayList<>();
+        synchronized (entries) {
+            entries.forEach((userId, entry) -> candidates.add(Map.entry(userId, entry)));
+        }
+        int flushed = 0;
+        List<Pending> batch = new ArrayList<>();
+        for (Map.Entry<Long, CartEntry> candidate : candidates) {
+            Pending pending = prepare(candidate.getKey(), candidate.getValue(), false);
+            if (pending != null) {
+                batch.add(pending);
+            }
+            if (batch.size() == batchSize) {
+                flushed += writeBatch(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flushed += writeBatch(batch);
+        }
+        if (flushed > 0) {
+            log.debug("Flushed {} carts", flushed);
+        }
+        return flushed;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        int flushed = flushDirty();
+        if (flushed > 0) {
+            log.info("Flushed {} carts on shutdown", flushed);
+        }
+    }
+
+    // A failed batch is retried cart by cart, so one cart that cannot be written does not hold back the others
+    private int writeBatch(List<Pending> batch) {
+        try {
+            write(batch);
+            return batch.size();
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                return writeFailed(batch.get(0), e);
+            }
+            log.debug("Could not flush {} carts together, retrying one by one", batch.size(), e);
+        }
+        int flushed = 0;
+        for (Pending failed : batch) {
+            Pending pending = prepare(failed.userId(), failed.entry(), false);
+            if (pending == null) {
+                continue;
+            }
+            try {
+                write(List.of(pending));
+                flushed++;
+            } catch (RuntimeException e) {
+                writeFailed(pending, e);
+            }
+        }
+        return flushed;
+    }
+
+    // A cart the database rejects, such as one deleted behind the store, is dropped: its lines can never be
+    // written. Any other failure leaves it dirty for the next flush
+    private int writeFailed(Pending pending, RuntimeException e) {
+        if (!(e instanceof DataIntegrityViolationException)) {
+            log.warn("Could not flush cart of user {}", pending.userId(), e);
+            return 0;
+        }
+        log.error("Dropping unwritable cart of user {} with lines {}", pending.userId(), pending.lines(), e);
+        ReentrantLock lock = stripe(pending.userId());
+        lock.lock();
+        try {
+            synchronized (entries) {
+                entries.remove(pending.userId(), pending.entry());
+            }
+            epochs[index(pending.userId())]++;
+        } finally {
+            lock.unlock();
+        }
+        return 0;
+    }
+
+    // Called with the user's stripe held; a load runs without it and is redone if the cart was rewritten meanwhile
+    private CartEntry entry(User user) {
+        Long userId = user.getId();
+        int index = index(userId);
+        while (true) {
+            while (isPinnedByOther(userId)) {
+                released[index].awaitUninterruptibly();
+            }
+            synchronized (entries) {
+                CartEntry entry = entries.get(userId);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            long epoch = epochs[index];
+            stripes[index].unlock();
+            CartEntry loaded;
+            try {
+                // Locking read: waits for any uncommitted write to this cart rather than reading around it
+                loaded = retry.inTransaction(() -> {
+                    Cart cart = cartRepository.lockOrCreateByUser(user);
+                    return new CartEntry(cart.getId(), cart.getAppliedDiscountPercent(),
+                            cartLineRepository.findQuantities(cart.getId()));
+                });
+            } finally {
+                stripes[index].lock();
+            }
+            if (epochs[index] == epoch && !isPinnedByOther(userId)) {
+                synchronized (entries) {
+                    return entries.computeIfAbsent(userId, id -> loaded);
+                }
+            }
+        }
+    }
+
+    // Takes a copy of a dirty cart to write. A cart is written by one flush at a time, so a newer copy never lands first
+    private Pending prepare(Long userId, CartEntry entry, boolean wait) {
+        int index = index(userId);
+        Thread current = Thread.currentThread();
+        stripes[index].lock();
+        try {
+            while (wait && entry.flushing != null && entry.flushing != current) {
+                released[index].awaitUninterruptibly();
+            }
+            if (!entry.dirty || (entry.flushing != null && entry.flushing != current) || isPinnedByOther(userId)) {
+                return null;
+            }
+            entry.dirty = false;
+            entry.flushing = current;
+            return new Pending(userId, entry, new LinkedHashMap<>(entry.lines), entry.stored, new HashMap<>(entry.newIds));
+        } finally {
+            stripes[index].unlock();
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        Set<Integer> cartIds = new TreeSet<>();
+        List<CartLineRepository.LineWrite> upserts = new ArrayList<>();
+        List<CartLineRepository.LineWrite> updates = new ArrayList<>();
+        List<CartLineRepository.LineWrite> deletes = new ArrayList<>();
+        for (Pending pending : batch) {
+            Integer cartId = pending.entry().cartId;
+            cartIds.add(cartId);
+            Iterator<Map.Entry<Integer, Integer>> lines = pending.lines().entrySet().iterator();
+            while (lines.hasNext()) {
+                Map.Entry<Integer, Integer> line = lines.next();
+                Integer before = pending.stored().get(line.getKey());
+                if (before == null) {
+                    // A product deleted since it was added is left out, as the delete already took it out of the cart
+                    if (productRepository.findById(line.getKey()).isEmpty()) {
+                        lines.remove();
+                        continue;
+                    }
+                    upserts.add(new CartLineRepository.LineWrite(
+                            pending.ids().get(line.getKey()), cartId, line.getKey(), line.getValue()));
+                } else if (!before.equals(line.getValue())) {
+                    updates.add(new CartLineRepository.LineWrite(null, cartId, line.getKey(), line.getValue()));
+                }
+            }
+            pending.stored().keySet().stream()
+                    .filter(productId -> !pending.lines().containsKey(productId))
+                    .forEach(productId -> deletes.add(new CartLineRepository.LineWrite(null, cartId, productId, 0)));
+        }
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    complete(batch, status == STATUS_COMMITTED);
+                }
+            });
+            writeLines(cartIds, upserts, updates, deletes);
+            return;
+        }
+        boolean committed = false;
+        try {
+            retry.inTransaction(() -> writeLines(cartIds, upserts, updates, deletes));
+            committed = true;
+        } finally {
+            complete(batch, committed);
+        }
+    }
+
+    private void writeLines(Set<Integer> cartIds, List<CartLineRepository.LineWrite> upserts,
+                            List<CartLineRepository.LineWrite> updates, List<CartLineRepository.LineWrite> deletes) {
+        cartLineRepository.lockCarts(cartIds);
+        cartLineRepository.upsertLines(upserts);
+        cartLineRepository.updateLines(updates);
+        cartLineRepository.deleteLines(deletes);
+        cartRepository.repriceTotals(cartIds);
+    }
+
+    private void complete(List<Pending> batch, boolean committed) {
+        for (Pending pending : batch) {
+            int index = index(pending.userId());
+            stripes[index].lock();
+            try {
+                CartEntry entry = pending.entry();
+                if (entry.flushing == Thread.currentThread()) {
+                    entry.flushing = null;
+                }
+                if (committed) {
+                    entry.stored = pending.lines();
+                    // A stored line's id is used up; adding the product again after a removal draws a new one
+                    entry.newIds.keySet().removeAll(entry.stored.keySet());
+                } else {
+                    entry.dirty = true;
+                }
+                released[index].signalAll();
+            } finally {
+                stripes[index].unlock();
+            }
+        }
+    }
+
+    private Pin pin(Long userId, boolean rewrites) {
+        int index = index(userId);
+        stripes[index].lock();
+        try {
+            while (isPinnedByOther(userId)) {
+                released[index].awaitUninterruptibly();
+            }
+            Pin pin = new Pin(rewrites);
+            pins.put(userId, pin);
+            return pin;
+        } finally {
+            stripes[index].unlock();
+        }
+    }
+
+    private void unpin(Long userId, Pin pin, boolean committed) {
+        int index = index(userId);
+        stripes[index].lock();
+        try {
+            pins.remove(userId, pin);
+            if (committed && pin.rewrites) {
+                synchronized (entries) {
+                    entries.remove(userId);
+                }
+                epochs[index]++;
+            }
+            released[index].signalAll();
+        } finally {
+            stripes[index].unlock();
+        }
+    }
+
+    // Keeps the store at max-carts: clean carts are dropped, a dirty one is flushed first
+    private void evictOverflow() {
+        List<Map.Entry<Long, CartEntry>> eldest = new ArrayList<>();
+        synchronized (entries) {
+            Iterator<Map.Entry<Long, CartEntry>> iterator = entries.entrySet().iterator();
+            for (int excess = entries.size() - maxCarts; excess > 0 && iterator.hasNext(); excess--) {
+                Map.Entry<Long, CartEntry> candidate = iterator.next();
+                eldest.add(Map.entry(candidate.getKey(), candidate.getValue()));
+            }
+        }
+        for (Map.Entry<Long, CartEntry> candidate : eldest) {
+            if (evict(candidate.getKey(), candidate.getValue())) {
+                continue;
+            }
+            Pending pending = prepare(candidate.getKey(), candidate.getValue(), false);
+            if (pending != null && writeBatch(List.of(pending)) > 0) {
+                evict(candidate.getKey(), candidate.getValue());
+            }
+        }
+    }
+
+    private boolean evict(Long userId, CartEntry entry) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            if (entry.dirty || entry.flushing != null || pins.containsKey(userId)) {
+                return false;
+            }
+            synchronized (entries) {
+                entries.remove(userId, entry);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Priced like the stored totals; products are second-level cached, so this normally costs no SQL
+    private CartTotals totals(CartEntry entry) {
+        double sum = 0;
+        for (Map.Entry<Integer, Integer> line : entry.lines.entrySet()) {
+            sum += productRepository.findById(line.getKey()).map(product -> product.getPrice() * line.getValue()).orElse(0.0);
+        }
+        double subtotal = Math.round(sum * 100) / 100.0;
+        double discount = Cart.discountOf(subtotal, entry.discountPercent);
+        return new CartTotals(subtotal, discount, Math.round((subtotal - discount) * 100) / 100.0);
+    }
+
+    private boolean isPinnedByOther(Long userId) {
+        Pin pin = pins.get(userId);
+        return pin != null && pin.owner != Thread.currentThread();
+    }
+
+    private ReentrantLock stripe(Long userId) {
+        return stripes[index(userId)];
+    }
+
+    private int index(Long userId) {
+        return (int) Math.floorMod(userId, (long) STRIPES);
+    }
+
+    // Guarded by the user's stripe
+    private static final class CartEntry {
+        final Integer cartId;
+        final Double discountPercent;
+        final Map<Integer, Integer> lines;
+        // The lines as the database holds them after the last flush or load
+        Map<Integer, Integer> stored;
+        // Ids drawn for added lines not yet stored, by product
+        final Map<Integer, Integer> newIds = new HashMap<>();
+        boolean dirty;
+        Thread flushing;
+
+        CartEntry(Integer cartId, Double discountPercent, Map<Integer, Integer> lines) {
+            this.cartId = cartId;
+            this.discountPercent = discountPercent;
+            this.lines = lines;
+            this.stored = new LinkedHashMap<>(lines);
+        }
+    }
+
+    private static final class Pin {
+        final Thread owner = Thread.currentThread();
+        boolean rewrites;
+
+        Pin(boolean rewrites) {
+            this.rewrites = rewrites;
+        }
+    }
+
+    private record Pending(Long userId, CartEntry entry, Map<Integer, Integer> lines, Map<Integer, Integer> stored,
+                           Map<Integer, Integer> ids) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.stackpuz.example.config;
+
+import com.stackpuz.example.backend.repository.UserRepository;
+import com.stackpuz.example.backend.security.AuthenticatedUser;
+import com.stackpuz.example.backend.service.CartService;
+import com.stackpuz.example.backend.service.GuestCartCookie;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.SavedRequestAwareAuthenticationSuccessHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Moves a guest's cookie cart into their stored cart when they log in, then sends them on to /products.
+ * A merge that fails keeps the cookie, so the next login tries again rather than losing the cart.
+ */
+@Component
+@Slf4j
+public class GuestCartLoginHandler extends SavedRequestAwareAuthenticationSuccessHandler {
+    private final CartService cartService;
+    private final UserRepository userRepository;
+    private final GuestCartCookie guestCartCookie;
+
+    public GuestCartLoginHandler(CartService cartService, UserRepository userRepository, GuestCartCookie guestCartCookie) {
+        this.cartService = cartService;
+        this.userRepository = userRepository;
+        this.guestCartCookie = guestCartCookie;
+        setDefaultTargetUrl("/products");
+        setAlwaysUseDefaultTargetUrl(true);
+    }
+
+    @Override
+    public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
+                                        Authentication authentication) throws ServletException, IOException {
+        Cookie cookie = WebUtils.getCookie(request, GuestCartCookie.NAME);
+        if (cookie != null) {
+            Map<Integer, Integer> lines = guestCartCookie.read(cookie.getValue());
+            try {
+                if (authentication.getPrincipal() instanceof AuthenticatedUser user && !user.isAdmin()) {
+                    cartService.mergeGuestCart(userRepository.getReferenceById(user.getId()), lines);
+                }
+                response.addHeader(HttpHeaders.SET_COOKIE, guestCartCookie.clear().toString());
+            } catch (RuntimeException e) {
+                log.warn("Could not merge the guest cart of {}", authentication.getName(), e);
+            }
+        }
+        super.onAuthenticationSuccess(request, response, authentication);
+    }
+}
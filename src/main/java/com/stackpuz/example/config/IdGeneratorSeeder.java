@@ -0,0 +1,43 @@
+package com.stackpuz.example.config;
+
+import com.stackpuz.example.backend.entity.IdGenerators;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Moves each pooled id generator past the ids already present in its table.
+ * Rows created under the old IDENTITY mapping would otherwise collide with the first block
+ * the generator hands out. Runs once the schema is up to date and before any request is served.
+ */
+@Component
+@Slf4j
+public class IdGeneratorSeeder {
+    // Generator segment name == table name for every entity on the pooled generator
+    private static final List<String> TABLES = List.of("orders", "order_item", "cart_item", "wishlist_item", "review");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // The EntityManagerFactory dependency makes sure the schema update has created the tables
+    public IdGeneratorSeeder(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void seed() {
+        for (String table : TABLES) {
+            // The pooled optimizer hands out (value - allocation, value], so stay a full block ahead of max(id)
+            jdbcTemplate.update("insert into " + IdGenerators.TABLE
+                            + " (" + IdGenerators.NAME_COLUMN + ", " + IdGenerators.VALUE_COLUMN + ")"
+                            + " select ?, coalesce(max(id), 0) + ? from " + table
+                            + " on duplicate key update " + IdGenerators.VALUE_COLUMN
+                            + " = greatest(" + IdGenerators.VALUE_COLUMN + ", values(" + IdGenerators.VALUE_COLUMN + "))",
+                    table, IdGenerators.ALLOCATION_SIZE + 1);
+        }
+        log.info("Id generators seeded for {}", TABLES);
+    }
+}
@@ -1,23 +1,68 @@
 package com.stackpuz.example.config;
 
+import com.stackpuz.example.backend.security.BoundedPasswordEncoder;
+import com.stackpuz.example.backend.security.PasswordHashingBusyException;
+import com.stackpuz.example.backend.security.UserDetailsCache;
+import com.stackpuz.example.backend.service.UserService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.DelegatingAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
 import org.thymeleaf.extras.springsecurity6.dialect.SpringSecurityDialect;
 import org.thymeleaf.spring6.SpringTemplateEngine;
 import org.thymeleaf.templateresolver.ITemplateResolver;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Configuration
 @EnableWebSecurity
 public class SecurityConfiguration {
+    private final GuestCartLoginHandler guestCartLoginHandler;
+
+    public SecurityConfiguration(GuestCartLoginHandler guestCartLoginHandler) {
+        this.guestCartLoginHandler = guestCartLoginHandler;
+    }
+
+    /**
+     * BCrypt at auth.password.bcrypt-strength, run on a bounded hashing pool. New hashes are stored as
+     * {bcrypt}...; hashes without an id predate that and are checked as BCrypt. A successful login whose
+     * hash is weaker than the current strength, or has no id, is rehashed (see UserService.updatePassword).
+     */
+    @Bean
+    public BoundedPasswordEncoder passwordEncoder(@Value("${auth.password.bcrypt-strength:10}") int strength,
+                                                  @Value("${auth.password.hashing-threads:0}") int threads,
+                                                  @Value("${auth.password.queue-per-thread:8}") int queuePerThread,
+                                                  @Value("${auth.password.timeout-ms:5000}") long timeoutMillis) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(encoder, poolSize, poolSize * queuePerThread, timeoutMillis);
+    }
 
+    // Logins within auth.user-cache.ttl-seconds of the user's last one are checked against the cached user
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public DaoAuthenticationProvider authenticationProvider(UserService userService, PasswordEncoder passwordEncoder,
+                                                            UserDetailsCache userDetailsCache) {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userService);
+        provider.setPasswordEncoder(passwordEncoder);
+        provider.setUserCache(userDetailsCache);
+        provider.setUserDetailsPasswordService(userService);
+        return provider;
     }
 
     @Bean
@@ -39,12 +84,15 @@ public class SecurityConfiguration {
         http
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/register", "/login", "/css/**", "/js/**").permitAll()
+                        // Guests may view and fill a cookie-held cart; everything else on the cart needs an account
+                        .requestMatchers("/cart", "/cart/add/**", "/cart/remove/**").permitAll()
                         .requestMatchers("/cart/**").authenticated()
                         .anyRequest().permitAll()
                 )
                 .formLogin(form -> form
                         .loginPage("/login")
-                        .defaultSuccessUrl("/products", true)
+                        .successHandler(guestCartLoginHandler)
+                        .failureHandler(loginFailureHandler())
                         .permitAll()
                 )
                 .logout(logout -> logout
@@ -57,5 +105,15 @@ public class SecurityConfiguration {
         return http.build();
     }
 
+    // A full hashing pool answers 503 at once; sending it to /login?error would read as a wrong password
+    private AuthenticationFailureHandler loginFailureHandler() {
+        LinkedHashMap<Class<? extends AuthenticationException>, AuthenticationFailureHandler> handlers = new LinkedHashMap<>();
+        handlers.put(PasswordHashingBusyException.class, (request, response, exception) -> {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), exception.getMessage());
+        });
+        return new DelegatingAuthenticationFailureHandler(handlers, new SimpleUrlAuthenticationFailureHandler("/login?error"));
+    }
+
 
 }
\ No newline at end of file
@@ -1,23 +1,26 @@
 package com.stackpuz.example.backend.controller;
 
+import com.stackpuz.example.backend.dto.CartOperation;
+import com.stackpuz.example.backend.dto.CartTotals;
 import com.stackpuz.example.backend.entity.Cart;
 import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.CartOperationType;
 import com.stackpuz.example.backend.service.CartService;
+import com.stackpuz.example.backend.service.GuestCartCookie;
 import com.stackpuz.example.backend.repository.UserRepository;
+import com.stackpuz.example.backend.security.AuthenticatedUser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContext;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.ui.Model;
 
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -34,64 +37,59 @@ class CartControllerTest {
     @Mock
     private Model model;
 
-    @Mock
-    private Authentication authentication;
-
-    @Mock
-    private SecurityContext securityContext;
-
-    @InjectMocks
+    private GuestCartCookie guestCartCookie;
     private CartController cartController;
 
+    private AuthenticatedUser user;
+    private AuthenticatedUser admin;
     private User testUser;
-    private User adminUser;
     private Cart testCart;
 
     @BeforeEach
     void setUp() {
+        guestCartCookie = new GuestCartCookie("test-secret", 2, 30);
+        cartController = new CartController(cartService, userRepository, guestCartCookie);
+
+        user = new AuthenticatedUser(1L, "testUser", "secret", "ROLE_USER");
+        admin = new AuthenticatedUser(2L, "admin", "secret", "ROLE_ADMIN");
+
         testUser = new User();
+        testUser.setId(1L);
         testUser.setUsername("testUser");
         testUser.setRole("ROLE_USER");
 
-        adminUser = new User();
-        adminUser.setUsername("admin");
-        adminUser.setRole("ROLE_ADMIN");
-
         testCart = new Cart();
         testCart.setUser(testUser);
     }
 
     @Test
-    void viewCart_WhenUserNotLoggedIn_RedirectsToLogin() {
-        when(securityContext.getAuthentication()).thenReturn(null);
-        SecurityContextHolder.setContext(securityContext);
+    void viewCart_WhenUserNotLoggedIn_RendersGuestCartFromCookie() {
+        when(cartService.guestCart(Map.of(1, 2))).thenReturn(testCart);
+        String cookie = guestCartCookie.write(Map.of(1, 2)).getValue();
 
-        String result = cartController.viewCart(model);
+        String result = cartController.viewCart(null, cookie, model);
 
-        assertEquals("redirect:/login", result);
+        assertEquals("cart", result);
+        verify(model).addAttribute("cart", testCart);
+        verify(model).addAttribute("guest", true);
+        verify(cartService, never()).getUserCart(any());
     }
 
     @Test
     void viewCart_WhenUserIsAdmin_RedirectsToProducts() {
-        when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn("admin");
-        when(userRepository.findByUsername("admin")).thenReturn(Optional.of(adminUser));
-        SecurityContextHolder.setContext(securityContext);
-
-        String result = cartController.viewCart(model);
+        String result = cartController.viewCart(admin, null, model);
 
         assertEquals("redirect:/products", result);
+        // The principal carries the role, so nothing is looked up
+        verifyNoInteractions(cartService, userRepository);
     }
 
     @Test
     void viewCart_WhenValidUser_ReturnsCartView() {
-        when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn("testUser");
-        when(userRepository.findByUsername("testUser")).thenReturn(Optional.of(testUser));
+        when(userRepository.getReferenceById(1L)).thenReturn(testUser);
         when(cartService.getUserCart(testUser)).thenReturn(testCart);
-        SecurityContextHolder.setContext(securityContext);
 
-        String result = cartController.viewCart(model);
+        String result = cartController.viewCart(user, null, model);
 
         assertEquals("cart", result);
         verify(model).addAttribute("cart", testCart);
@@ -99,24 +97,31 @@ class CartControllerTest {
     }
 
     @Test
-    void addToCart_WhenUserNotLoggedIn_ReturnsUnauthorized() {
-        when(securityContext.getAuthentication()).thenReturn(null);
-        SecurityContextHolder.setContext(securityContext);
+    void addToCart_WhenUserNotLoggedIn_KeepsTheLineInTheGuestCookie() {
+        when(cartService.addToGuestCart(Map.of(), 1, 1)).thenReturn(Map.of(1, 1));
 
-        ResponseEntity<String> response = cartController.addToCart(1, 1);
+        ResponseEntity<String> response = cartController.addToCart(null, 1, 1, null);
 
-        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
-        assertEquals("Please log in to add items to cart", response.getBody());
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("Product added to cart", response.getBody());
+        assertEquals(guestCartCookie.write(Map.of(1, 1)).toString(), response.getHeaders().getFirst(HttpHeaders.SET_COOKIE));
+        verify(cartService, never()).addToCart(any(), any(), anyInt());
     }
 
     @Test
-    void addToCart_WhenUserIsAdmin_ReturnsForbidden() {
-        when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn("admin");
-        when(userRepository.findByUsername("admin")).thenReturn(Optional.of(adminUser));
-        SecurityContextHolder.setContext(securityContext);
+    void addToCart_WhenGuestCartIsFull_ReturnsBadRequest() {
+        String cookie = guestCartCookie.write(Map.of(1, 1, 2, 1)).getValue();
+        when(cartService.addToGuestCart(Map.of(1, 1, 2, 1), 3, 1)).thenReturn(Map.of(1, 1, 2, 1, 3, 1));
 
-        ResponseEntity<String> response = cartController.addToCart(1, 1);
+        ResponseEntity<String> response = cartController.addToCart(null, 3, 1, cookie);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertNull(response.getHeaders().getFirst(HttpHeaders.SET_COOKIE));
+    }
+
+    @Test
+    void addToCart_WhenUserIsAdmin_ReturnsForbidden() {
+        ResponseEntity<String> response = cartController.addToCart(admin, 1, 1, null);
 
         assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
         assertEquals("Admins cannot use cart functionality", response.getBody());
@@ -124,12 +129,9 @@ class CartControllerTest {
 
     @Test
     void addToCart_WhenValidUser_AddsProductToCart() {
-        when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn("testUser");
-        when(userRepository.findByUsername("testUser")).thenReturn(Optional.of(testUser));
-        SecurityContextHolder.setContext(securityContext);
+        when(userRepository.getReferenceById(1L)).thenReturn(testUser);
 
-        ResponseEntity<String> response = cartController.addToCart(1, 2);
+        ResponseEntity<String> response = cartController.addToCart(user, 1, 2, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals("Product added to cart", response.getBody());
@@ -137,24 +139,30 @@ class CartControllerTest {
     }
 
     @Test
-    void removeFromCart_WhenUserNotLoggedIn_ReturnsUnauthorized() {
-        when(securityContext.getAuthentication()).thenReturn(null);
-        SecurityContextHolder.setContext(securityContext);
+    void addToCart_WhenQuantityNotPositive_ReturnsBadRequest() {
+        when(userRepository.getReferenceById(1L)).thenReturn(testUser);
+        doThrow(new IllegalArgumentException("Quantity must be positive")).when(cartService).addToCart(testUser, 1, 0);
 
-        ResponseEntity<String> response = cartController.removeFromCart(1);
+        ResponseEntity<String> response = cartController.addToCart(user, 1, 0, null);
 
-        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
-        assertEquals("Please log in to remove items from cart", response.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Quantity must be positive", response.getBody());
     }
 
     @Test
-    void removeFromCart_WhenUserIsAdmin_ReturnsForbidden() {
-        when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn("admin");
-        when(userRepository.findByUsername("admin")).thenReturn(Optional.of(adminUser));
-        SecurityContextHolder.setContext(securityContext);
+    void removeFromCart_WhenUserNotLoggedIn_RewritesTheGuestCookie() {
+        String cookie = guestCartCookie.write(Map.of(1, 1, 2, 3)).getValue();
 
-        ResponseEntity<String> response = cartController.removeFromCart(1);
+        ResponseEntity<String> response = cartController.removeFromCart(null, 1, cookie);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(guestCartCookie.write(Map.of(2, 3)).toString(), response.getHeaders().getFirst(HttpHeaders.SET_COOKIE));
+        verifyNoInteractions(cartService);
+    }
+
+    @Test
+    void removeFromCart_WhenUserIsAdmin_ReturnsForbidden() {
+        ResponseEntity<String> response = cartController.removeFromCart(admin, 1, null);
 
         assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
         assertEquals("Admins cannot use cart functionality", response.getBody());
@@ -162,15 +170,45 @@ class CartControllerTest {
 
     @Test
     void removeFromCart_WhenValidUser_RemovesProductFromCart() {
-        when(securityContext.getAuthentication()).thenReturn(authentication);
-        when(authentication.getName()).thenReturn("testUser");
-        when(userRepository.findByUsername("testUser")).thenReturn(Optional.of(testUser));
-        SecurityContextHolder.setContext(securityContext);
+        when(userRepository.getReferenceById(1L)).thenReturn(testUser);
 
-        ResponseEntity<String> response = cartController.removeFromCart(1);
+        ResponseEntity<String> response = cartController.removeFromCart(user, 1, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals("Product removed from cart", response.getBody());
         verify(cartService).removeFromCart(testUser, 1);
     }
-}
\ No newline at end of file
+
+    @Test
+    void applyOperations_WhenUserNotLoggedIn_ReturnsUnauthorized() {
+        ResponseEntity<CartTotals> response = cartController.applyOperations(null, List.of());
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verifyNoInteractions(cartService);
+    }
+
+    @Test
+    void applyOperations_WhenValidUser_ReturnsNewTotals() {
+        when(userRepository.getReferenceById(1L)).thenReturn(testUser);
+        List<CartOperation> operations = List.of(new CartOperation(CartOperationType.ADD, 1, 2),
+                new CartOperation(CartOperationType.REMOVE, 2, null));
+        CartTotals totals = new CartTotals(20.0, 2.0, 18.0);
+        when(cartService.applyOperations(testUser, operations)).thenReturn(totals);
+
+        ResponseEntity<CartTotals> response = cartController.applyOperations(user, operations);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(totals, response.getBody());
+    }
+
+    @Test
+    void applyOperations_WhenOperationInvalid_ReturnsBadRequest() {
+        when(userRepository.getReferenceById(1L)).thenReturn(testUser);
+        List<CartOperation> operations = List.of(new CartOperation(CartOperationType.ADD, 1, 0));
+        when(cartService.applyOperations(testUser, operations)).thenThrow(new IllegalArgumentException("Quantity must be positive"));
+
+        ResponseEntity<CartTotals> response = cartController.applyOperations(user, operations);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+}
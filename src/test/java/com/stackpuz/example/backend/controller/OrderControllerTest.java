@@ -1,9 +1,19 @@
 package com.stackpuz.example.backend.controller;
 
+import com.stackpuz.example.backend.dto.BulkStatusRequest;
+import com.stackpuz.example.backend.dto.BulkStatusResult;
+import com.stackpuz.example.backend.dto.OrderFilter;
+import com.stackpuz.example.backend.dto.OrderPage;
+import com.stackpuz.example.backend.dto.OrderStatusView;
+import com.stackpuz.example.backend.dto.OrderSummary;
 import com.stackpuz.example.backend.entity.Order;
 import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.ExportFormat;
 import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.service.IdempotentCheckoutService;
+import com.stackpuz.example.backend.service.OrderExportService;
 import com.stackpuz.example.backend.service.OrderService;
+import com.stackpuz.example.backend.service.OrderStatusBulkService;
 import com.stackpuz.example.backend.service.UserService;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,9 +22,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -29,6 +44,15 @@ class OrderControllerTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private OrderStatusBulkService bulkService;
+
+    @Mock
+    private OrderExportService exportService;
+
+    @Mock
+    private IdempotentCheckoutService checkoutService;
+
     @Mock
     private UserDetails userDetails;
 
@@ -54,16 +78,18 @@ class OrderControllerTest {
         // Arrange
         when(userDetails.getUsername()).thenReturn("testUser");
         when(userService.findByUsername("testUser")).thenReturn(Optional.of(testUser));
-        when(orderService.createOrderFromCart(testUser)).thenReturn(testOrder);
+        when(checkoutService.checkout(testUser, "key-1")).thenReturn(OrderSummary.from(testOrder));
 
         // Act
-        ResponseEntity<Order> response = orderController.createOrder(userDetails);
+        ResponseEntity<OrderSummary> response = orderController.createOrder(userDetails, "key-1");
 
         // Assert
         assertEquals(200, response.getStatusCodeValue());
         assertNotNull(response.getBody());
-        assertEquals(testOrder, response.getBody());
-        verify(orderService).createOrderFromCart(testUser);
+        assertEquals(1L, response.getBody().id());
+        assertEquals("testUser", response.getBody().username());
+        assertEquals(OrderStatus.PLACED, response.getBody().status());
+        verify(checkoutService).checkout(testUser, "key-1");
     }
 
     @Test
@@ -73,7 +99,7 @@ class OrderControllerTest {
         when(userService.findByUsername("unknownUser")).thenReturn(Optional.empty());
 
         // Act
-        ResponseEntity<Order> response = orderController.createOrder(userDetails);
+        ResponseEntity<OrderSummary> response = orderController.createOrder(userDetails, null);
 
         // Assert
         assertEquals(400, response.getStatusCodeValue());
@@ -85,10 +111,10 @@ class OrderControllerTest {
         // Arrange
         when(userDetails.getUsername()).thenReturn("testUser");
         when(userService.findByUsername("testUser")).thenReturn(Optional.of(testUser));
-        when(orderService.createOrderFromCart(testUser)).thenThrow(new IllegalStateException("Empty cart"));
+        when(checkoutService.checkout(testUser, null)).thenThrow(new IllegalStateException("Empty cart"));
 
         // Act
-        ResponseEntity<Order> response = orderController.createOrder(userDetails);
+        ResponseEntity<OrderSummary> response = orderController.createOrder(userDetails, null);
 
         // Assert
         assertEquals(400, response.getStatusCodeValue());
@@ -105,12 +131,12 @@ class OrderControllerTest {
         when(orderService.updateOrderStatus(1L, OrderStatus.SHIPPED)).thenReturn(updatedOrder);
 
         // Act
-        ResponseEntity<Order> response = orderController.updateOrderStatus(1L, OrderStatus.SHIPPED);
+        ResponseEntity<OrderStatusView> response = orderController.updateOrderStatus(1L, OrderStatus.SHIPPED);
 
         // Assert
         assertEquals(200, response.getStatusCodeValue());
         assertNotNull(response.getBody());
-        assertEquals(OrderStatus.SHIPPED, response.getBody().getStatus());
+        assertEquals(new OrderStatusView(1L, OrderStatus.SHIPPED), response.getBody());
     }
 
     @Test
@@ -120,7 +146,7 @@ class OrderControllerTest {
                 .thenThrow(new EntityNotFoundException("Order not found"));
 
         // Act
-        ResponseEntity<Order> response = orderController.updateOrderStatus(1L, OrderStatus.SHIPPED);
+        ResponseEntity<OrderStatusView> response = orderController.updateOrderStatus(1L, OrderStatus.SHIPPED);
 
         // Assert
         assertEquals(400, response.getStatusCodeValue());
@@ -151,4 +177,120 @@ class OrderControllerTest {
         // Assert
         assertEquals(400, response.getStatusCodeValue());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getOrderHistory_ReturnsPageForCurrentUser() {
+        // Arrange
+        OrderPage page = new OrderPage(List.of(OrderSummary.from(testOrder)), 25, null);
+        when(userDetails.getUsername()).thenReturn("testUser");
+        when(userService.findByUsername("testUser")).thenReturn(Optional.of(testUser));
+        when(orderService.getUserOrderHistory(testUser, "cursor", null)).thenReturn(page);
+
+        // Act
+        ResponseEntity<OrderPage> response = orderController.getOrderHistory(userDetails, "cursor", null);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(page, response.getBody());
+    }
+
+    @Test
+    void getOrderHistory_BadCursor_ReturnsBadRequest() {
+        // Arrange
+        when(userDetails.getUsername()).thenReturn("testUser");
+        when(userService.findByUsername("testUser")).thenReturn(Optional.of(testUser));
+        when(orderService.getUserOrderHistory(testUser, "bad", null))
+                .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        // Act
+        ResponseEntity<OrderPage> response = orderController.getOrderHistory(userDetails, "bad", null);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void getOrderPage_PassesFiltersToService() {
+        // Arrange
+        OrderFilter filter = new OrderFilter(OrderStatus.PLACED, "testUser", LocalDate.of(2024, 1, 1), null);
+        OrderPage page = new OrderPage(List.of(), 10, null);
+        when(orderService.getOrderPage(filter, "cursor", 10)).thenReturn(page);
+
+        // Act
+        ResponseEntity<OrderPage> response = orderController.getOrderPage(
+                OrderStatus.PLACED, "testUser", LocalDate.of(2024, 1, 1), null, "cursor", 10);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(page, response.getBody());
+    }
+
+    @Test
+    void getOrderPage_WhenCursorInvalid_ReturnsBadRequest() {
+        // Arrange
+        when(orderService.getOrderPage(OrderFilter.none(), "bad", null))
+                .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        // Act
+        ResponseEntity<OrderPage> response = orderController.getOrderPage(null, null, null, null, "bad", null);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void exportOrders_StreamsFilteredOrdersAsAttachment() throws Exception {
+        // Arrange
+        OrderFilter filter = new OrderFilter(OrderStatus.DELIVERED, null, LocalDate.of(2024, 1, 1), null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = orderController.exportOrders(
+                "ndjson", OrderStatus.DELIVERED, LocalDate.of(2024, 1, 1), null);
+        response.getBody().writeTo(out);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("application/x-ndjson;charset=UTF-8", response.getHeaders().getContentType().toString());
+        assertTrue(response.getHeaders().getContentDisposition().isAttachment());
+        verify(exportService).export(filter, ExportFormat.NDJSON, out);
+    }
+
+    @Test
+    void exportOrders_WhenFormatUnknown_ReturnsBadRequest() {
+        // Act
+        ResponseEntity<StreamingResponseBody> response = orderController.exportOrders("xlsx", null, null, null);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(exportService);
+    }
+
+    @Test
+    void bulkUpdateStatus_ReturnsProgress() {
+        // Arrange
+        BulkStatusRequest request = new BulkStatusRequest(OrderStatus.SHIPPED, List.of(1L, 2L), null, null, null, null);
+        BulkStatusResult result = new BulkStatusResult(OrderStatus.SHIPPED, 2, 0, List.of(new BulkStatusResult.Chunk(0, 2, 2)));
+        when(bulkService.transition(request)).thenReturn(result);
+
+        // Act
+        ResponseEntity<BulkStatusResult> response = orderController.bulkUpdateStatus(request);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(result, response.getBody());
+    }
+
+    @Test
+    void bulkUpdateStatus_WhenTransitionInvalid_ReturnsBadRequest() {
+        // Arrange
+        BulkStatusRequest request = new BulkStatusRequest(OrderStatus.PLACED, List.of(1L), null, null, null, null);
+        when(bulkService.transition(request)).thenThrow(new IllegalArgumentException("No order can move to PLACED"));
+
+        // Act
+        ResponseEntity<BulkStatusResult> response = orderController.bulkUpdateStatus(request);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+}
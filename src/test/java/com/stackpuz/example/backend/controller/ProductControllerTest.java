@@ -1,7 +1,13 @@
 package com.stackpuz.example.backend.controller;
 
+import com.stackpuz.example.backend.dto.ProductPage;
+import com.stackpuz.example.backend.dto.RatingSummary;
 import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.enums.ProductSort;
+import com.stackpuz.example.backend.service.DiscountCodeService;
 import com.stackpuz.example.backend.service.ProductService;
+import com.stackpuz.example.backend.service.ReviewService;
+import com.stackpuz.example.backend.service.StockService;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,11 +15,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.ui.Model;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -24,6 +33,15 @@ class ProductControllerTest {
     @Mock
     private ProductService productService;
 
+    @Mock
+    private DiscountCodeService discountCodeService;
+
+    @Mock
+    private ReviewService reviewService;
+
+    @Mock
+    private StockService stockService;
+
     @Mock
     private Model model;
 
@@ -47,18 +65,64 @@ class ProductControllerTest {
     }
 
     @Test
-    void getProducts_ShouldReturnProductsViewWithAllProducts() {
+    void getProducts_ShouldReturnProductsViewWithFirstPage() {
         // Arrange
         List<Product> products = Arrays.asList(product1, product2);
-        when(productService.getProducts()).thenReturn(products);
+        ProductPage page = new ProductPage(products, "id", 24, "Mg");
+        when(productService.getProductPage(ProductSort.ID, null, null)).thenReturn(page);
 
         // Act
-        String viewName = productController.getProducts(model);
+        String viewName = productController.getProducts(null, null, null, model);
 
         // Assert
         assertEquals("products", viewName);
         verify(model).addAttribute("products", products);
-        verify(productService).getProducts();
+        verify(model).addAttribute("page", page);
+        verify(productService).getProductPage(ProductSort.ID, null, null);
+    }
+
+    @Test
+    void getProducts_ShouldAddRatingSummariesFromSingleBatchLookup() {
+        // Arrange
+        List<Product> products = Arrays.asList(product1, product2);
+        Map<Integer, RatingSummary> summaries = Map.of(
+                1, new RatingSummary(1, 4.5, 2L),
+                2, RatingSummary.empty(2));
+        when(productService.getProductPage(ProductSort.PRICE, "abc", 2))
+                .thenReturn(new ProductPage(products, "price", 2, null));
+        when(reviewService.getRatingSummaries(List.of(1, 2))).thenReturn(summaries);
+
+        // Act
+        productController.getProducts("price", "abc", 2, model);
+
+        // Assert
+        verify(reviewService).getRatingSummaries(List.of(1, 2));
+        verify(model).addAttribute("ratingSummaries", summaries);
+        verifyNoMoreInteractions(reviewService);
+    }
+
+    @Test
+    void getProducts_WithInvalidCursor_ShouldRedirectToFirstPage() {
+        // Arrange
+        when(productService.getProductPage(ProductSort.ID, "bogus", null))
+                .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        // Act
+        String viewName = productController.getProducts(null, "bogus", null, model);
+
+        // Assert
+        assertEquals("redirect:/products", viewName);
+        verifyNoInteractions(model);
+    }
+
+    @Test
+    void getProductPageApi_WithUnknownSort_ShouldReturnBadRequest() {
+        // Act
+        ResponseEntity<?> response = productController.getProductPageApi("rating", null, null);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(productService);
     }
 
     @Test
@@ -0,0 +1,177 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.dto.CartOperation;
+import com.stackpuz.example.backend.entity.Cart;
+import com.stackpuz.example.backend.entity.CartItem;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.CartOperationType;
+import com.stackpuz.example.backend.enums.CartStoreMode;
+import com.stackpuz.example.backend.service.CartService;
+import com.stackpuz.example.backend.service.DiscountCodeService;
+import com.stackpuz.example.backend.service.OptimisticRetry;
+import com.stackpuz.example.backend.service.WriteBehindCartStore;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Stress test: tabs racing on one cart must neither lose quantities nor create a second cart.
+// H2 fails racing writes to one row where InnoDB would wait, which exercises the retry path; Hikari would
+// evict the connection on that error, so this test uses unpooled connections
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:carts;MODE=MySQL;NON_KEYWORDS=USER,VALUE;LOCK_TIMEOUT=30000;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.type=org.springframework.jdbc.datasource.SimpleDriverDataSource"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CartLineRepository.class)
+// Each request commits its own transaction, so the test itself must not run in one
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CartConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int ADDS_PER_THREAD = 25;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartLineRepository cartLineRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DiscountCodeRepository discountCodeRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CartService cartService;
+    private User user;
+    private List<Integer> productIds;
+
+    @BeforeEach
+    void setUp() {
+        DiscountCodeService discountCodeService = new DiscountCodeService(discountCodeRepository);
+        discountCodeService.create("SAVE10", 10, LocalDateTime.now().plusDays(1));
+        OptimisticRetry retry = new OptimisticRetry(transactionManager, 50, 1);
+        WriteBehindCartStore cartStore = new WriteBehindCartStore(cartRepository, cartLineRepository, productRepository,
+                entityManagerFactory, retry, CartStoreMode.WRITE_THROUGH, 100, 100);
+        cartService = new CartService(cartRepository, cartItemRepository, cartLineRepository, productRepository,
+                discountCodeService, entityManagerFactory, retry, cartStore);
+
+        User created = new User();
+        created.setUsername("tabs");
+        created.setPassword("secret");
+        created.setRole("ROLE_USER");
+        user = userRepository.save(created);
+        productIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setPrice(5.0);
+            productIds.add(productRepository.save(product).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        cartRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+        discountCodeRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentCartWrites_KeepEveryQuantityInOneCart() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    // The first adds also race to create the cart
+                    for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                        Integer productId = productIds.get((thread + i) % productIds.size());
+                        if (thread % 4 == 1) {
+                            cartService.applyOperations(user, List.of(new CartOperation(CartOperationType.ADD, productId, 1)));
+                        } else {
+                            cartService.addToCart(user, productId, 1);
+                        }
+                        // Some tabs also rewrite the cart row itself
+                        if (thread % 4 == 0) {
+                            if (i % 2 == 0) {
+                                cartService.applyDiscountCode(user, "SAVE10");
+                            } else {
+                                cartService.clearDiscount(user);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        List<Cart> carts = cartRepository.findAll();
+        assertEquals(1, carts.size());
+        assertTrue(carts.get(0).getVersion() > 0);
+        Map<Integer, Integer> quantities = new TransactionTemplate(transactionManager).execute(tx ->
+                cartItemRepository.findAll().stream()
+                        .collect(Collectors.toMap(item -> item.getProduct().getId(), CartItem::getQuantity)));
+        assertEquals(THREADS * ADDS_PER_THREAD, quantities.values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(3, quantities.size());
+        // Every delta landed on the stored subtotal; products cost 5.0 each
+        assertEquals(THREADS * ADDS_PER_THREAD * 5.0, cartService.getTotals(user).subtotal(), 0.001);
+    }
+
+    @Test
+    void staleCartWrite_FailsVersionCheck() {
+        Cart stale = cartService.getUserCart(user);
+        cartService.applyDiscountCode(user, "SAVE10");
+
+        stale.setAppliedDiscountCode(null);
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> cartRepository.save(stale));
+        assertEquals("SAVE10", cartRepository.findByUser(user).orElseThrow().getAppliedDiscountCode());
+    }
+}
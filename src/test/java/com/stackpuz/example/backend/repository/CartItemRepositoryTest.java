@@ -0,0 +1,93 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.entity.Cart;
+import com.stackpuz.example.backend.entity.CartItem;
+import com.stackpuz.example.backend.entity.IdGenerators;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Cart line mutations must be one statement each, however many lines the cart already has
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cart;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class CartItemRepositoryTest {
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Cart cart;
+    private Product product;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("alice");
+        user.setPassword("secret");
+        user.setRole("ROLE_USER");
+        entityManager.persist(user);
+        cart = new Cart();
+        cart.setUser(user);
+        entityManager.persist(cart);
+        for (int i = 0; i < 20; i++) {
+            Product filler = new Product();
+            filler.setName("Filler " + i);
+            filler.setPrice(1.0);
+            entityManager.persist(filler);
+            addLine(filler.getId(), 1);
+        }
+        product = new Product();
+        product.setName("Mug");
+        product.setPrice(8.0);
+        entityManager.persist(product);
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void addQuantity_insertsThenBumpsTheSameLine() {
+        addLine(product.getId(), 2);
+        addLine(product.getId(), 3);
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        List<CartItem> lines = linesOf(product.getId());
+        assertEquals(1, lines.size());
+        assertEquals(5, lines.get(0).getQuantity());
+    }
+
+    private void addLine(Integer productId, int quantity) {
+        Integer id = (Integer) IdGenerators.next(entityManagerFactory, CartItem.class);
+        cartItemRepository.addQuantity(id, cart.getId(), productId, quantity);
+    }
+
+    private List<CartItem> linesOf(Integer productId) {
+        entityManager.clear();
+        return cartItemRepository.findAll().stream()
+                .filter(item -> item.getProduct().getId() == productId)
+                .toList();
+    }
+}
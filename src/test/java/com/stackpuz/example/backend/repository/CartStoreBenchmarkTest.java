@@ -0,0 +1,160 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.dto.CartOperation;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.CartOperationType;
+import com.stackpuz.example.backend.enums.CartStoreMode;
+import com.stackpuz.example.backend.service.CartService;
+import com.stackpuz.example.backend.service.DiscountCodeService;
+import com.stackpuz.example.backend.service.OptimisticRetry;
+import com.stackpuz.example.backend.service.WriteBehindCartStore;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cart-operation throughput, write-through against write-behind, over the same workload: each of USERS
+ * threads changes its own cart OPS times, and write-behind's closing flush is part of its time.
+ * Run with: mvn test -Dtest=CartStoreBenchmarkTest -Dcart.benchmark=true
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cartbench;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CartLineRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "cart.benchmark", matches = "true")
+class CartStoreBenchmarkTest {
+    private static final int USERS = 16;
+    private static final int OPS = 500;
+    private static final int PRODUCTS = 20;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartLineRepository cartLineRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DiscountCodeRepository discountCodeRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<User> users = new ArrayList<>();
+    private final List<Integer> productIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUsername("bench" + i);
+            user.setPassword("secret");
+            user.setRole("ROLE_USER");
+            users.add(userRepository.save(user));
+        }
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setPrice(1.0 + i);
+            productIds.add(productRepository.save(product).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        cartRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void compareWriteThroughAndWriteBehind() throws Exception {
+        // A warm-up round per mode loads classes, the second-level cache and the id generator
+        run(CartStoreMode.WRITE_THROUGH);
+        run(CartStoreMode.WRITE_BEHIND);
+
+        double writeThrough = run(CartStoreMode.WRITE_THROUGH);
+        double writeBehind = run(CartStoreMode.WRITE_BEHIND);
+
+        System.out.printf("Cart operations per second, %d users x %d ops: WRITE_THROUGH %.0f, WRITE_BEHIND %.0f (%.1fx)%n",
+                USERS, OPS, writeThrough, writeBehind, writeBehind / writeThrough);
+        assertEquals(USERS, cartRepository.count());
+    }
+
+    private double run(CartStoreMode mode) throws Exception {
+        cartItemRepository.deleteAllInBatch();
+        OptimisticRetry retry = new OptimisticRetry(transactionManager, 50, 1);
+        WriteBehindCartStore cartStore = new WriteBehindCartStore(cartRepository, cartLineRepository, productRepository,
+                entityManagerFactory, retry, mode, USERS, 200);
+        CartService cartService = new CartService(cartRepository, cartItemRepository, cartLineRepository,
+                productRepository, new DiscountCodeService(discountCodeRepository), entityManagerFactory, retry, cartStore);
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(USERS);
+        long started;
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (User user : users) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    // Mostly adds, with the quantity changes and removals a shopper makes along the way
+                    for (int i = 0; i < OPS; i++) {
+                        Integer productId = productIds.get(i % PRODUCTS);
+                        switch (i % 5) {
+                            case 3 -> cartService.updateCartItemQuantity(user, productId, 2);
+                            case 4 -> cartService.applyOperations(user,
+                                    List.of(new CartOperation(CartOperationType.REMOVE, productId, null)));
+                            default -> cartService.addToCart(user, productId, 1);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            started = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        cartStore.flushDirty();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        return USERS * OPS / seconds;
+    }
+}
@@ -0,0 +1,203 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.dto.CartOperation;
+import com.stackpuz.example.backend.dto.CartTotals;
+import com.stackpuz.example.backend.entity.CartItem;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.CartOperationType;
+import com.stackpuz.example.backend.enums.CartStoreMode;
+import com.stackpuz.example.backend.service.CartService;
+import com.stackpuz.example.backend.service.DiscountCodeService;
+import com.stackpuz.example.backend.service.OptimisticRetry;
+import com.stackpuz.example.backend.service.WriteBehindCartStore;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Stored cart totals must always equal what summing the lines at current prices would give
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:totals;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CartLineRepository.class)
+// Each call commits on its own, as it does behind the controller
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CartTotalsTest {
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartLineRepository cartLineRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DiscountCodeRepository discountCodeRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CartService cartService;
+    private User user;
+    private Product mug;
+    private Product pen;
+
+    @BeforeEach
+    void setUp() {
+        DiscountCodeService discountCodeService = new DiscountCodeService(discountCodeRepository);
+        discountCodeService.create("SAVE10", 10, LocalDateTime.now().plusDays(1));
+        OptimisticRetry retry = new OptimisticRetry(transactionManager, 5, 1);
+        WriteBehindCartStore cartStore = new WriteBehindCartStore(cartRepository, cartLineRepository, productRepository,
+                entityManagerFactory, retry, CartStoreMode.WRITE_THROUGH, 100, 100);
+        cartService = new CartService(cartRepository, cartItemRepository, cartLineRepository, productRepository,
+                discountCodeService, entityManagerFactory, retry, cartStore);
+
+        User created = new User();
+        created.setUsername("totals");
+        created.setPassword("secret");
+        created.setRole("ROLE_USER");
+        user = userRepository.save(created);
+        mug = product("Mug", 8.5);
+        pen = product("Pen", 1.25);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        cartRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+        discountCodeRepository.deleteAll();
+    }
+
+    @Test
+    void lineChanges_moveStoredTotalsByTheirDelta() {
+        cartService.addToCart(user, mug.getId(), 2);
+        cartService.addToCart(user, mug.getId(), 1);
+        cartService.addToCart(user, pen.getId(), 4);
+        assertEquals(new CartTotals(30.5, 0, 30.5), cartService.getTotals(user));
+
+        assertEquals(new CartTotals(30.5, 3.05, 27.45), cartService.applyDiscountCode(user, "SAVE10"));
+        cartService.updateCartItemQuantity(user, mug.getId(), 1);
+        cartService.removeFromCart(user, pen.getId());
+        assertEquals(new CartTotals(8.5, 0.85, 7.65), cartService.getTotals(user));
+
+        cartService.clearCart(user);
+        assertEquals(new CartTotals(0, 0, 0), cartService.getTotals(user));
+    }
+
+    @Test
+    void applyOperations_appliesTheBatchInOrderAsOneChange() {
+        cartService.addToCart(user, pen.getId(), 2);
+
+        CartTotals totals = cartService.applyOperations(user, List.of(
+                new CartOperation(CartOperationType.ADD, mug.getId(), 1),
+                new CartOperation(CartOperationType.SET, mug.getId(), 3),
+                new CartOperation(CartOperationType.REMOVE, pen.getId(), null),
+                new CartOperation(CartOperationType.ADD, pen.getId(), 5)));
+
+        assertEquals(Map.of(mug.getId(), 3, pen.getId(), 5), quantities());
+        assertEquals(new CartTotals(31.75, 0, 31.75), totals);
+    }
+
+    @Test
+    void applyOperations_rejectsTheWholeBatchOnABadOperation() {
+        cartService.addToCart(user, pen.getId(), 2);
+
+        assertThrows(IllegalArgumentException.class, () -> cartService.applyOperations(user, List.of(
+                new CartOperation(CartOperationType.REMOVE, pen.getId(), null),
+                new CartOperation(CartOperationType.ADD, mug.getId(), 0))));
+        assertThrows(EntityNotFoundException.class, () -> cartService.applyOperations(user, List.of(
+                new CartOperation(CartOperationType.REMOVE, pen.getId(), null),
+                new CartOperation(CartOperationType.ADD, -1, 1))));
+        // SET never creates a line
+        cartService.applyOperations(user, List.of(new CartOperation(CartOperationType.SET, mug.getId(), 4)));
+
+        assertEquals(Map.of(pen.getId(), 2), quantities());
+        assertEquals(new CartTotals(2.5, 0, 2.5), cartService.getTotals(user));
+    }
+
+    @Test
+    void mergeGuestCart_addsGuestLinesToTheStoredCartAndSkipsMissingProducts() {
+        cartService.addToCart(user, pen.getId(), 2);
+        Map<Integer, Integer> guest = cartService.addToGuestCart(Map.of(), mug.getId(), 1);
+        guest = cartService.addToGuestCart(guest, pen.getId(), 3);
+        guest.put(-1, 5);
+
+        CartTotals totals = cartService.mergeGuestCart(user, guest);
+
+        assertEquals(Map.of(mug.getId(), 1, pen.getId(), 5), quantities());
+        assertEquals(new CartTotals(14.75, 0, 14.75), totals);
+        assertEquals(14.75, cartService.guestCart(Map.of(mug.getId(), 1, pen.getId(), 5)).getTotalPrice());
+    }
+
+    @Test
+    void reconcileTotals_repricesCartsAfterAPriceChange() {
+        cartService.addToCart(user, mug.getId(), 2);
+        cartService.applyDiscountCode(user, "SAVE10");
+        mug.setPrice(10.0);
+        productRepository.save(mug);
+        assertEquals(17.0, cartService.getTotals(user).subtotal());
+
+        cartService.reconcileTotals();
+
+        assertEquals(new CartTotals(20.0, 2.0, 18.0), cartService.getTotals(user));
+    }
+
+    @Test
+    void repriceChangedProducts_repricesOnlyTheCartsHoldingTheProduct() {
+        cartService.addToCart(user, mug.getId(), 2);
+        cartService.applyDiscountCode(user, "SAVE10");
+        mug.setPrice(10.0);
+        productRepository.save(mug);
+        cartService.repriceChangedProducts();
+        assertEquals(17.0, cartService.getTotals(user).subtotal());
+
+        cartService.markPriceChanged(mug.getId());
+        cartService.repriceChangedProducts();
+
+        assertEquals(new CartTotals(20.0, 2.0, 18.0), cartService.getTotals(user));
+    }
+
+    private Product product(String name, double price) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(price);
+        return productRepository.save(product);
+    }
+
+    private Map<Integer, Integer> quantities() {
+        return new TransactionTemplate(transactionManager).execute(tx -> cartItemRepository.findAll().stream()
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), CartItem::getQuantity)));
+    }
+}
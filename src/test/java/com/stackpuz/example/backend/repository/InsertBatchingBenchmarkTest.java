@@ -0,0 +1,202 @@
+package com.stackpuz.example.backend.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stackpuz.example.backend.dto.CartOperation;
+import com.stackpuz.example.backend.entity.Order;
+import com.stackpuz.example.backend.entity.OrderItem;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.CartOperationType;
+import com.stackpuz.example.backend.enums.CartStoreMode;
+import com.stackpuz.example.backend.service.CartService;
+import com.stackpuz.example.backend.service.DiscountCodeService;
+import com.stackpuz.example.backend.service.OptimisticRetry;
+import com.stackpuz.example.backend.service.OrderService;
+import com.stackpuz.example.backend.service.OutboxService;
+import com.stackpuz.example.backend.service.SalesRollupService;
+import com.stackpuz.example.backend.service.StockService;
+import com.stackpuz.example.backend.service.UserService;
+import com.stackpuz.example.backend.service.WriteBehindCartStore;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Statements Hibernate prepares for a 30-line checkout and for a bulk order insert, with JDBC batching off
+ * (batch size 0) and at the configured hibernate.jdbc.batch_size, counted by Hibernate's statistics.
+ * Run with: mvn test -Dtest=InsertBatchingBenchmarkTest -Dbatching.benchmark=true
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:batchbench;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CartLineRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "batching.benchmark", matches = "true")
+class InsertBatchingBenchmarkTest {
+    private static final int CART_LINES = 30;
+    private static final int BULK_ORDERS = 100;
+    private static final int ITEMS_PER_ORDER = 3;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartLineRepository cartLineRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DiscountCodeRepository discountCodeRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+    private CartService cartService;
+    private OrderService orderService;
+    private User user;
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        OptimisticRetry retry = new OptimisticRetry(transactionManager, 5, 1);
+        WriteBehindCartStore cartStore = new WriteBehindCartStore(cartRepository, cartLineRepository, productRepository,
+                entityManagerFactory, retry, CartStoreMode.WRITE_THROUGH, 100, 100);
+        cartService = new CartService(cartRepository, cartItemRepository, cartLineRepository, productRepository,
+                new DiscountCodeService(discountCodeRepository), entityManagerFactory, retry, cartStore);
+        // Stock, rollups and user lookups are left out so only the order and cart statements are counted
+        orderService = new OrderService(orderRepository, null, cartService, mock(UserService.class),
+                mock(SalesRollupService.class), mock(StockService.class),
+                new OutboxService(outboxEventRepository, new ObjectMapper().findAndRegisterModules()));
+
+        User created = new User();
+        created.setUsername("batching");
+        created.setPassword("secret");
+        created.setRole("ROLE_USER");
+        user = userRepository.save(created);
+        for (int i = 0; i < CART_LINES; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setPrice(1.0 + i);
+            products.add(productRepository.save(product));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboxEventRepository.deleteAll();
+        orderRepository.deleteAll();
+        cartItemRepository.deleteAll();
+        cartRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void compareStatementsWithAndWithoutBatching() {
+        int configured = entityManagerFactory.unwrap(SessionFactory.class).getSessionFactoryOptions().getJdbcBatchSize();
+        // A warm-up round per size fills the id generator blocks and the second-level cache
+        checkout(0);
+        checkout(configured);
+        bulkInsert(0);
+        bulkInsert(configured);
+
+        long checkoutUnbatched = checkout(0);
+        long checkoutBatched = checkout(configured);
+        long bulkUnbatched = bulkInsert(0);
+        long bulkBatched = bulkInsert(configured);
+
+        System.out.printf("Prepared statements, %d-line checkout: batch size 0 %d, batch size %d %d%n",
+                CART_LINES, checkoutUnbatched, configured, checkoutBatched);
+        System.out.printf("Prepared statements, %d orders x %d items: batch size 0 %d, batch size %d %d%n",
+                BULK_ORDERS, ITEMS_PER_ORDER, bulkUnbatched, configured, bulkBatched);
+        assertTrue(checkoutBatched < checkoutUnbatched);
+        assertTrue(bulkBatched < bulkUnbatched);
+    }
+
+    // Statements of one checkout, the cart being filled beforehand and not counted
+    private long checkout(int batchSize) {
+        List<CartOperation> operations = products.stream()
+                .map(product -> new CartOperation(CartOperationType.ADD, product.getId(), 1))
+                .toList();
+        cartService.applyOperations(user, operations);
+        long statements = countStatements(batchSize, () -> orderService.createOrderFromCart(user));
+        assertEquals(0, cartItemRepository.count());
+        return statements;
+    }
+
+    private long bulkInsert(int batchSize) {
+        return countStatements(batchSize, () -> {
+            List<Order> orders = new ArrayList<>();
+            for (int i = 0; i < BULK_ORDERS; i++) {
+                Order order = new Order();
+                order.setUser(user);
+                for (int j = 0; j < ITEMS_PER_ORDER; j++) {
+                    Product product = products.get((i + j) % products.size());
+                    OrderItem item = new OrderItem();
+                    item.setOrder(order);
+                    item.setProduct(product);
+                    item.setQuantity(1);
+                    item.setPriceAtOrder(product.getPrice());
+                    order.getItems().add(item);
+                }
+                order.setTotalPrice(order.getItems().stream().mapToDouble(OrderItem::getPriceAtOrder).sum());
+                orders.add(order);
+            }
+            orderRepository.saveAll(orders);
+        });
+    }
+
+    // Runs the work in one transaction whose session batches up to batchSize statements
+    private long countStatements(int batchSize, Runnable work) {
+        statistics.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory)
+                    .unwrap(Session.class)
+                    .setJdbcBatchSize(batchSize);
+            work.run();
+        });
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,123 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.dto.OrderFilter;
+import com.stackpuz.example.backend.dto.OrderSummary;
+import com.stackpuz.example.backend.entity.*;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// H2 has no streaming mode, so the driver-specific fetch size is swapped for a plain one
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:export;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "orders.export.fetch-size=100"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(OrderExportRepository.class)
+class OrderExportRepositoryTest {
+
+    @Autowired
+    private OrderExportRepository exportRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User alice;
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        alice = new User();
+        alice.setUsername("alice");
+        alice.setPassword("secret");
+        alice.setRole("ROLE_USER");
+        entityManager.persist(alice);
+        products = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setPrice(10.0 + i);
+            products.add(entityManager.persist(product));
+        }
+
+        persistOrder(3);
+        persistOrder(0);
+        persistArchived(1001L, LocalDateTime.of(2024, 1, 10, 12, 0), OrderStatus.DELIVERED, 2);
+        persistArchived(1000L, LocalDateTime.of(2024, 1, 5, 12, 0), OrderStatus.CANCELED, 1);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void forEachOrder_foldsLinesIntoOrdersArchivedFirstOldestFirst() {
+        List<OrderSummary> exported = export(OrderFilter.none());
+
+        assertEquals(4, exported.size());
+        assertEquals(List.of(1000L, 1001L), exported.subList(0, 2).stream().map(OrderSummary::id).toList());
+        assertEquals(List.of(1, 2, 3, 0), exported.stream().map(order -> order.items().size()).toList());
+        assertEquals("archived 0", exported.get(1).items().get(0).productName());
+        assertEquals("Product 2", exported.get(2).items().get(2).productName());
+        assertTrue(exported.stream().allMatch(order -> "alice".equals(order.username())));
+    }
+
+    @Test
+    void forEachOrder_appliesStatusAndDateFilters() {
+        assertEquals(List.of(1001L), export(new OrderFilter(OrderStatus.DELIVERED, null, null, null))
+                .stream().map(OrderSummary::id).toList());
+        assertEquals(List.of(1000L), export(new OrderFilter(null, null, LocalDate.of(2024, 1, 5), LocalDate.of(2024, 1, 9)))
+                .stream().map(OrderSummary::id).toList());
+        assertEquals(2, export(new OrderFilter(OrderStatus.PLACED, null, null, null)).size());
+    }
+
+    private List<OrderSummary> export(OrderFilter filter) {
+        List<OrderSummary> exported = new ArrayList<>();
+        exportRepository.forEachOrder(filter, exported::add);
+        return exported;
+    }
+
+    private void persistOrder(int lines) {
+        Order order = new Order();
+        order.setUser(alice);
+        for (int i = 0; i < lines; i++) {
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(products.get(i));
+            item.setQuantity(1);
+            item.setPriceAtOrder(products.get(i).getPrice());
+            order.getItems().add(item);
+        }
+        entityManager.persist(order);
+    }
+
+    private void persistArchived(Long id, LocalDateTime orderDate, OrderStatus status, int lines) {
+        ArchivedOrder order = new ArchivedOrder();
+        order.setId(id);
+        order.setUserId(alice.getId());
+        order.setOrderDate(orderDate);
+        order.setStatus(status);
+        entityManager.persist(order);
+        for (int i = 0; i < lines; i++) {
+            ArchivedOrderItem item = new ArchivedOrderItem();
+            item.setId(id * 10 + i);
+            item.setOrder(order);
+            item.setProductId(products.get(i).getId());
+            item.setProductName("archived " + i);
+            item.setQuantity(2);
+            item.setPriceAtOrder(5.0);
+            entityManager.persist(item);
+        }
+    }
+}
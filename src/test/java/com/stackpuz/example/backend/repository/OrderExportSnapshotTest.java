@@ -0,0 +1,142 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.dto.OrderFilter;
+import com.stackpuz.example.backend.dto.OrderSummary;
+import com.stackpuz.example.backend.entity.Order;
+import com.stackpuz.example.backend.entity.OrderItem;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// An order archived while the export runs is exported once, from whichever side the export's snapshot saw it on
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:exportsnapshot;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "orders.export.fetch-size=100"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(OrderExportRepository.class)
+// The archival must commit from another connection in the middle of the export
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderExportSnapshotTest {
+
+    @Autowired
+    private OrderExportRepository exportRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ArchivedOrderRepository archiveRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Long archived;
+    private Long live;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        User user = new User();
+        user.setUsername("snapshot");
+        user.setPassword("secret");
+        user.setRole("ROLE_USER");
+        user = userRepository.save(user);
+        Product product = new Product();
+        product.setName("Mug");
+        product.setPrice(8.0);
+        product = productRepository.save(product);
+
+        archived = orderRepository.save(order(user, product)).getId();
+        live = orderRepository.save(order(user, product)).getId();
+        archive(archived);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionTemplate.executeWithoutResult(status -> {
+            archiveRepository.findAll().forEach(order -> {
+                order.getItems().forEach(entityManager::remove);
+                entityManager.remove(order);
+            });
+            orderRepository.deleteAll();
+        });
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void forEachOrder_keepsOrdersArchivedBetweenTheTwoParts() {
+        List<Long> exported = new ArrayList<>();
+        exportRepository.forEachOrder(OrderFilter.none(), order -> {
+            if (exported.isEmpty()) {
+                // Archive the live order while the archived part is still being read
+                CompletableFuture.runAsync(() -> archive(live)).orTimeout(30, TimeUnit.SECONDS).join();
+            }
+            exported.add(order.id());
+        });
+
+        assertEquals(List.of(archived, live), exported);
+        assertTrue(orderRepository.findById(live).isEmpty());
+        assertEquals(List.of(archived, live), export());
+    }
+
+    private List<Long> export() {
+        List<Long> exported = new ArrayList<>();
+        exportRepository.forEachOrder(OrderFilter.none(), order -> exported.add(order.id()));
+        return exported;
+    }
+
+    // The same steps as OrderArchiveService.archiveBatch
+    private void archive(Long id) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> ids = List.of(id);
+            archiveRepository.copyOrders(ids);
+            archiveRepository.copyItems(ids);
+            archiveRepository.deleteLiveItems(ids);
+            archiveRepository.deleteLiveOrders(ids);
+        });
+    }
+
+    private static Order order(User user, Product product) {
+        Order order = new Order();
+        order.setUser(user);
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(product);
+        item.setQuantity(1);
+        item.setPriceAtOrder(product.getPrice());
+        order.getItems().add(item);
+        order.setTotalPrice(product.getPrice());
+        return order;
+    }
+}
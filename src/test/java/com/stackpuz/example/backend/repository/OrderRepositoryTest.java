@@ -0,0 +1,156 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.entity.Order;
+import com.stackpuz.example.backend.entity.OrderItem;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Guards the orders page fetch plan: statement counts must not grow with the number of orders or items
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:orders;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class OrderRepositoryTest {
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User alice;
+
+    @BeforeEach
+    void setUp() {
+        alice = persistUser("alice");
+        User bob = persistUser("bob");
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setPrice(10.0 + i);
+            products.add(entityManager.persist(product));
+        }
+        for (int i = 0; i < 4; i++) {
+            persistOrder(i % 2 == 0 ? alice : bob, products);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        entityManagerFactory.getCache().evictAll();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findByUserOrderByOrderDateDesc_loadsItemsAndProductsInOneStatement() {
+        List<Order> orders = orderRepository.findByUserOrderByOrderDateDesc(alice);
+        int lines = renderLikeOrdersPage(orders);
+
+        assertEquals(2, orders.size());
+        assertEquals(10, lines);
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findAdminPage_walksNewestFirstWithoutGapsOrRepeats() {
+        List<Order> first = orderRepository.findAdminPage(null, null, null, null, null, null, PageRequest.of(0, 3));
+        Order last = first.get(2);
+        List<Order> second = orderRepository.findAdminPage(null, null, null, null,
+                last.getOrderDate(), last.getId(), PageRequest.of(0, 3));
+
+        assertEquals(3, first.size());
+        assertEquals(1, second.size());
+        List<Long> ids = new ArrayList<>(first.stream().map(Order::getId).toList());
+        ids.add(second.get(0).getId());
+        assertEquals(4, ids.stream().distinct().count());
+        for (int i = 1; i < first.size(); i++) {
+            assertFalse(first.get(i).getOrderDate().isAfter(first.get(i - 1).getOrderDate()));
+        }
+    }
+
+    @Test
+    void findAdminPage_appliesStatusAndUserFilters() {
+        Order shipped = orderRepository.findByUserOrderByOrderDateDesc(alice).get(0);
+        shipped.setStatus(OrderStatus.SHIPPED);
+        entityManager.flush();
+
+        assertEquals(2, orderRepository.findAdminPage(null, alice.getId(), null, null, null, null, PageRequest.of(0, 10)).size());
+        List<Order> filtered = orderRepository.findAdminPage(OrderStatus.SHIPPED, alice.getId(), null, null, null, null, PageRequest.of(0, 10));
+        assertEquals(List.of(shipped.getId()), filtered.stream().map(Order::getId).toList());
+        assertTrue(orderRepository.findAdminPage(OrderStatus.CANCELED, null, null, null, null, null, PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void updateStatus_onlyMovesOrdersInAllowedSourceStatuses() {
+        List<Long> ids = orderRepository.findIdsForTransition(Set.of(OrderStatus.PLACED), alice.getId(),
+                null, null, 0L, PageRequest.of(0, 10));
+        assertEquals(2, ids.size());
+        Long shipped = ids.get(0);
+        orderRepository.updateStatus(List.of(shipped), Set.of(OrderStatus.PLACED), OrderStatus.SHIPPED);
+
+        int updated = orderRepository.updateStatus(ids, Set.of(OrderStatus.PLACED), OrderStatus.CANCELED);
+        entityManager.clear();
+
+        assertEquals(1, updated);
+        assertEquals(OrderStatus.SHIPPED, orderRepository.findById(shipped).orElseThrow().getStatus());
+        assertEquals(OrderStatus.CANCELED, orderRepository.findById(ids.get(1)).orElseThrow().getStatus());
+    }
+
+    // Touches everything orders.html renders for each order
+    private int renderLikeOrdersPage(List<Order> orders) {
+        int lines = 0;
+        for (Order order : orders) {
+            assertNotNull(order.getUser().getUsername());
+            for (OrderItem item : order.getItems()) {
+                assertNotNull(item.getProduct().getName());
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private User persistUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("secret");
+        user.setRole("ROLE_USER");
+        return entityManager.persist(user);
+    }
+
+    private void persistOrder(User user, List<Product> products) {
+        Order order = new Order();
+        order.setUser(user);
+        for (Product product : products) {
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(product);
+            item.setQuantity(1);
+            item.setPriceAtOrder(product.getPrice());
+            order.getItems().add(item);
+        }
+        entityManager.persist(order);
+    }
+}
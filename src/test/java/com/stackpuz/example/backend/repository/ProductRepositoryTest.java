@@ -0,0 +1,75 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.entity.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Keyset pages must walk past rows whose sort value is null, which sort first
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:products;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ProductRepositoryTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Product unpricedA;
+    private Product unpricedB;
+    private Product cheap;
+    private Product dear;
+
+    @BeforeEach
+    void setUp() {
+        unpricedA = product(null, null);
+        unpricedB = product("Blank", null);
+        cheap = product("Cheap", 5.0);
+        dear = product(null, 50.0);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void pricePages_putNullsFirstAndContinuePastThem() {
+        assertEquals(ids(unpricedA, unpricedB, cheap, dear), ids(productRepository.findAllByOrderByPriceAscIdAsc(PageRequest.of(0, 10))));
+        assertEquals(ids(unpricedB, cheap, dear), ids(productRepository.findPricePageAfterNull(unpricedA.getId(), PageRequest.of(0, 10))));
+        assertEquals(ids(cheap, dear), ids(productRepository.findPricePageAfterNull(unpricedB.getId(), PageRequest.of(0, 10))));
+        assertEquals(ids(dear), ids(productRepository.findPricePageAfter(5.0, cheap.getId(), PageRequest.of(0, 10))));
+    }
+
+    @Test
+    void namePages_putNullsFirstAndContinuePastThem() {
+        assertEquals(ids(unpricedA, dear, unpricedB, cheap), ids(productRepository.findAllByOrderByNameAscIdAsc(PageRequest.of(0, 10))));
+        assertEquals(ids(dear, unpricedB, cheap), ids(productRepository.findNamePageAfterNull(unpricedA.getId(), PageRequest.of(0, 10))));
+        assertEquals(ids(unpricedB, cheap), ids(productRepository.findNamePageAfterNull(dear.getId(), PageRequest.of(0, 10))));
+        assertEquals(ids(cheap), ids(productRepository.findNamePageAfter("Blank", unpricedB.getId(), PageRequest.of(0, 10))));
+    }
+
+    private Product product(String name, Double price) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(price);
+        return entityManager.persist(product);
+    }
+
+    private static List<Integer> ids(Product... products) {
+        return List.of(products).stream().map(Product::getId).toList();
+    }
+
+    private static List<Integer> ids(List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+}
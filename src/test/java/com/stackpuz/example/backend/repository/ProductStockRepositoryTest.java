@@ -0,0 +1,144 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.entity.ProductStock;
+import com.stackpuz.example.backend.service.StockReservations;
+import com.stackpuz.example.backend.service.StockService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Stress test: many concurrent checkouts against a few units of stock must never oversell
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stock;MODE=MySQL;NON_KEYWORDS=USER,VALUE;LOCK_TIMEOUT=30000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.hikari.maximum-pool-size=32"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// Each worker commits its own transaction, so the test itself must not run in one
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductStockRepositoryTest {
+    private static final int THREADS = 32;
+    private static final int ATTEMPTS_PER_THREAD = 20;
+
+    @Autowired
+    private ProductStockRepository stockRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private int hot;
+    private int other;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        hot = productRepository.save(product("Flash sale")).getId();
+        other = productRepository.save(product("Regular")).getId();
+        stockRepository.save(new ProductStock(hot, 50));
+        stockRepository.save(new ProductStock(other, 1000));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stockRepository.deleteAll();
+        productRepository.deleteAll();
+    }
+
+    @Test
+    void deduct_ShouldNeverOversellUnderContention() throws Exception {
+        int sold = runConcurrently(() -> transactionTemplate.execute(tx -> stockRepository.deduct(hot, 1)) == 1);
+
+        assertEquals(50, sold);
+        assertEquals(0, stockRepository.findQuantity(hot).orElseThrow());
+    }
+
+    @Test
+    void holdThenDeduct_ShouldSellExactlyTheStockAndRestoreHoldsOfFailedCheckouts() throws Exception {
+        StockService stockService = new StockService(stockRepository, productRepository, new StockReservations(stockRepository));
+        AtomicInteger rolledBack = new AtomicInteger();
+
+        int sold = runConcurrently(() -> {
+            try {
+                transactionTemplate.executeWithoutResult(tx -> {
+                    Map<Integer, Integer> cart = Map.of(hot, 2, other, 1);
+                    stockService.hold(cart);
+                    stockService.deduct(cart);
+                    // Some checkouts fail after holding stock; their units must come back
+                    if (rolledBack.get() < 10 && rolledBack.incrementAndGet() <= 10) {
+                        throw new IllegalStateException("payment declined");
+                    }
+                });
+                return true;
+            } catch (IllegalStateException e) {
+                return false;
+            }
+        });
+
+        assertEquals(25, sold);
+        assertEquals(0, stockRepository.findQuantity(hot).orElseThrow());
+        assertEquals(1000 - 25, stockRepository.findQuantity(other).orElseThrow());
+    }
+
+    // Runs ATTEMPTS_PER_THREAD attempts on each of THREADS threads released together; returns the successes
+    private int runConcurrently(Attempt attempt) throws Exception {
+        AtomicInteger successes = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                        if (attempt.run()) {
+                            successes.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return successes.get();
+    }
+
+    private interface Attempt {
+        boolean run();
+    }
+
+    private static Product product(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(10.0);
+        return product;
+    }
+}
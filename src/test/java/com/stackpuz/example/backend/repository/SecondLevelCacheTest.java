@@ -0,0 +1,192 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.entity.DiscountCode;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.security.UserDetailsCache;
+import com.stackpuz.example.backend.service.CacheStatsService;
+import com.stackpuz.example.backend.service.CartService;
+import com.stackpuz.example.backend.service.DiscountCodeService;
+import com.stackpuz.example.backend.service.ProductSearchIndex;
+import com.stackpuz.example.backend.service.ProductService;
+import com.stackpuz.example.backend.service.ProductSuggester;
+import com.stackpuz.example.backend.service.RatingStatsService;
+import com.stackpuz.example.backend.service.StockService;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Products and discount codes are read from the second-level cache, and no write path leaves a stale copy behind
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:l2cache;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// The services run behind their transactional proxies, as they do in the application
+@Import({ProductService.class, DiscountCodeService.class, CacheStatsService.class, UserDetailsCache.class})
+// Each lookup runs in a session of its own, so only the second-level cache can spare the SQL
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private DiscountCodeRepository discountCodeRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private DiscountCodeService discountCodeService;
+
+    @Autowired
+    private CacheStatsService cacheStatsService;
+
+    @MockBean
+    private RatingStatsService ratingStatsService;
+
+    @MockBean
+    private StockService stockService;
+
+    @MockBean
+    private ProductSearchIndex searchIndex;
+
+    @MockBean
+    private ProductSuggester suggester;
+
+    @MockBean
+    private CartService cartService;
+
+    private Statistics statistics;
+    private Cache cache;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        cache = entityManagerFactory.getCache();
+        cache.evictAll();
+        cacheStatsService.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        discountCodeRepository.deleteAll();
+    }
+
+    @Test
+    void repeatedFindById_isServedFromTheCache() {
+        int id = productRepository.save(product("Mug", 12.0)).getId();
+        cache.evictAll();
+        cacheStatsService.reset();
+
+        assertEquals("Mug", productRepository.findById(id).orElseThrow().getName());
+        assertEquals("Mug", productRepository.findById(id).orElseThrow().getName());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(1, statistics.getSecondLevelCacheMissCount());
+        assertTrue(cache.contains(Product.class, id));
+    }
+
+    @Test
+    void productWrites_neverLeaveAStaleEntry() {
+        int id = productService.saveProduct(product("Mug", 12.0)).getId();
+        productRepository.findById(id);
+
+        productService.updateProduct(id, product("Travel mug", 15.0));
+        statistics.clear();
+        Product updated = productRepository.findById(id).orElseThrow();
+        assertEquals("Travel mug", updated.getName());
+        assertEquals(15.0, updated.getPrice());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        productService.deleteProduct(id);
+        statistics.clear();
+        assertTrue(productRepository.findById(id).isEmpty());
+        assertEquals(0, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    void discountCodeDeletes_evictTheEntryAndTheCachedQueries() {
+        DiscountCode code = discountCodeService.create("SAVE10", 10, LocalDateTime.now().plusDays(1));
+        DiscountCode expired = discountCodeService.create("OLD5", 5, LocalDateTime.now().minusDays(1));
+        discountCodeRepository.findById(code.getId());
+        discountCodeRepository.findById(expired.getId());
+        assertTrue(cache.contains(DiscountCode.class, code.getId()));
+        assertTrue(cache.contains(DiscountCode.class, expired.getId()));
+
+        discountCodeService.deleteExpiredCodes();
+        statistics.clear();
+        assertTrue(discountCodeRepository.findById(expired.getId()).isEmpty());
+        assertTrue(discountCodeRepository.findById(code.getId()).isPresent());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+
+        // A query-cache hit on the code, then none once the row is gone
+        assertEquals(code.getId(), discountCodeService.requireValidActive("SAVE10").getId());
+        assertEquals(code.getId(), discountCodeService.requireValidActive("SAVE10").getId());
+        assertTrue(statistics.getQueryCacheHitCount() > 0);
+
+        discountCodeService.deleteById(code.getId());
+        statistics.clear();
+        assertTrue(discountCodeRepository.findById(code.getId()).isEmpty());
+        assertTrue(discountCodeService.findByCode("SAVE10").isEmpty());
+        assertEquals(0, statistics.getSecondLevelCacheHitCount());
+        assertEquals(0, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void cacheStats_reportTheRegionCounters() {
+        int id = productRepository.save(product("Mug", 12.0)).getId();
+        cache.evictAll();
+        cacheStatsService.reset();
+        productRepository.findById(id);
+        productRepository.findById(id);
+        productRepository.findById(id);
+
+        Map<String, Object> stats = cacheStatsService.getSecondLevelCacheStats();
+
+        assertEquals(true, stats.get("enabled"));
+        Map<String, Object> secondLevel = (Map<String, Object>) stats.get("secondLevel");
+        assertEquals(2L, secondLevel.get("hits"));
+        assertEquals(1L, secondLevel.get("misses"));
+        assertEquals(1L, secondLevel.get("puts"));
+        assertEquals(2.0 / 3, (double) secondLevel.get("hitRatio"), 1e-9);
+
+        Map<String, Object> regions = (Map<String, Object>) stats.get("regions");
+        Map<String, Object> products = (Map<String, Object>) regions.get(Product.class.getName());
+        assertEquals(2L, products.get("hits"));
+        assertEquals(1L, products.get("misses"));
+        assertTrue(regions.containsKey(DiscountCode.class.getName()));
+
+        cacheStatsService.reset();
+        assertEquals(0L, ((Map<String, Object>) cacheStatsService.getSecondLevelCacheStats().get("secondLevel")).get("hits"));
+    }
+
+    private static Product product(String name, double price) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(price);
+        return product;
+    }
+}
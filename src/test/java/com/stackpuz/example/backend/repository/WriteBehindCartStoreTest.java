@@ -0,0 +1,248 @@
+package com.stackpuz.example.backend.repository;
+
+import com.stackpuz.example.backend.dto.CartOperation;
+import com.stackpuz.example.backend.dto.CartTotals;
+import com.stackpuz.example.backend.entity.CartItem;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.CartOperationType;
+import com.stackpuz.example.backend.enums.CartStoreMode;
+import com.stackpuz.example.backend.service.CartService;
+import com.stackpuz.example.backend.service.DiscountCodeService;
+import com.stackpuz.example.backend.service.OptimisticRetry;
+import com.stackpuz.example.backend.service.WriteBehindCartStore;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// In write-behind mode line changes reach the database only when flushed, and reads and rewrites flush first
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:writebehind;MODE=MySQL;NON_KEYWORDS=USER,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CartLineRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WriteBehindCartStoreTest {
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 25;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private CartLineRepository cartLineRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DiscountCodeRepository discountCodeRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private WriteBehindCartStore cartStore;
+    private CartService cartService;
+    private User user;
+    private Product mug;
+    private Product pen;
+
+    @BeforeEach
+    void setUp() {
+        DiscountCodeService discountCodeService = new DiscountCodeService(discountCodeRepository);
+        discountCodeService.create("SAVE10", 10, LocalDateTime.now().plusDays(1));
+        OptimisticRetry retry = new OptimisticRetry(transactionManager, 50, 1);
+        cartStore = new WriteBehindCartStore(cartRepository, cartLineRepository, productRepository,
+                entityManagerFactory, retry, CartStoreMode.WRITE_BEHIND, 1, 100);
+        cartService = new CartService(cartRepository, cartItemRepository, cartLineRepository, productRepository,
+                discountCodeService, entityManagerFactory, retry, cartStore);
+
+        user = user("behind");
+        mug = product("Mug", 8.5);
+        pen = product("Pen", 1.25);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        cartRepository.deleteAll();
+        productRepository.deleteAll();
+        userRepository.deleteAll();
+        discountCodeRepository.deleteAll();
+    }
+
+    @Test
+    void lineChanges_reachTheDatabaseAsOneFlushedState() {
+        cartService.addToCart(user, mug.getId(), 2);
+        cartService.addToCart(user, pen.getId(), 4);
+        CartTotals totals = cartService.applyOperations(user, List.of(
+                new CartOperation(CartOperationType.SET, mug.getId(), 1),
+                new CartOperation(CartOperationType.REMOVE, pen.getId(), null),
+                new CartOperation(CartOperationType.ADD, pen.getId(), 2)));
+
+        assertEquals(new CartTotals(11.0, 0, 11.0), totals);
+        assertTrue(quantities().isEmpty());
+
+        assertEquals(1, cartStore.flushDirty());
+        assertEquals(Map.of(mug.getId(), 1, pen.getId(), 2), quantities());
+        assertEquals(new CartTotals(11.0, 0, 11.0), totalsInDatabase());
+        assertEquals(0, cartStore.flushDirty());
+    }
+
+    @Test
+    void readsAndRewrites_flushTheCartFirst() {
+        cartService.addToCart(user, mug.getId(), 2);
+        assertEquals(new CartTotals(17.0, 0, 17.0), cartService.getTotals(user));
+        assertEquals(Map.of(mug.getId(), 2), quantities());
+
+        cartService.addToCart(user, pen.getId(), 4);
+        assertEquals(new CartTotals(22.0, 2.2, 19.8), cartService.applyDiscountCode(user, "SAVE10"));
+        // The discount reloaded the cart, so in-memory totals now include it
+        assertEquals(new CartTotals(23.25, 2.33, 20.92), cartService.applyOperations(user,
+                List.of(new CartOperation(CartOperationType.ADD, pen.getId(), 1))));
+
+        cartService.clearCart(user);
+        assertTrue(quantities().isEmpty());
+        cartService.addToCart(user, pen.getId(), 1);
+        cartStore.flushDirty();
+        assertEquals(Map.of(pen.getId(), 1), quantities());
+    }
+
+    @Test
+    void flushInARolledBackTransaction_leavesTheChangesPending() {
+        cartService.addToCart(user, mug.getId(), 3);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(tx -> {
+            assertEquals(1, cartService.getUserCart(user).getItems().size());
+            tx.setRollbackOnly();
+        });
+        assertTrue(quantities().isEmpty());
+
+        assertEquals(1, cartStore.flushDirty());
+        assertEquals(Map.of(mug.getId(), 3), quantities());
+    }
+
+    @Test
+    void evictingADirtyCart_flushesItFirst() {
+        cartService.addToCart(user, mug.getId(), 1);
+        // The store holds one cart; the second user's pushes the first out
+        cartService.addToCart(user("other"), pen.getId(), 1);
+
+        assertEquals(Map.of(mug.getId(), 1), quantities());
+        cartService.addToCart(user, mug.getId(), 1);
+        cartStore.flushDirty();
+        assertEquals(2, quantities().get(mug.getId()));
+    }
+
+    @Test
+    void cartDeletedBehindTheStore_isDroppedWithoutHoldingBackTheBatch() {
+        WriteBehindCartStore store = new WriteBehindCartStore(cartRepository, cartLineRepository, productRepository,
+                entityManagerFactory, new OptimisticRetry(transactionManager, 5, 1), CartStoreMode.WRITE_BEHIND, 10, 100);
+        User deleted = user("deleted");
+        store.apply(user, List.of(new CartOperation(CartOperationType.ADD, mug.getId(), 2)));
+        store.apply(deleted, List.of(new CartOperation(CartOperationType.ADD, pen.getId(), 1)));
+        cartRepository.delete(cartRepository.findByUser(deleted).orElseThrow());
+
+        assertEquals(1, store.flushDirty());
+        assertEquals(Map.of(mug.getId(), 2), quantities());
+        assertEquals(0, store.flushDirty());
+    }
+
+    @Test
+    void concurrentTabs_keepEveryQuantity() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                        cartService.addToCart(user, (thread + i) % 2 == 0 ? mug.getId() : pen.getId(), 1);
+                        // Some tabs rewrite the cart row, which flushes and reloads it, while the flusher runs
+                        if (thread % 4 == 0) {
+                            if (i % 2 == 0) {
+                                cartService.applyDiscountCode(user, "SAVE10");
+                            } else {
+                                cartService.clearDiscount(user);
+                            }
+                        } else if (thread % 4 == 1) {
+                            cartStore.flushDirty();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        cartStore.flushDirty();
+
+        Map<Integer, Integer> quantities = quantities();
+        assertEquals(THREADS * ADDS_PER_THREAD, quantities.values().stream().mapToInt(Integer::intValue).sum());
+        double subtotal = quantities.get(mug.getId()) * 8.5 + quantities.get(pen.getId()) * 1.25;
+        assertEquals(subtotal, totalsInDatabase().subtotal(), 0.001);
+    }
+
+    private User user(String username) {
+        User created = new User();
+        created.setUsername(username);
+        created.setPassword("secret");
+        created.setRole("ROLE_USER");
+        return userRepository.save(created);
+    }
+
+    private Product product(String name, double price) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(price);
+        return productRepository.save(product);
+    }
+
+    private CartTotals totalsInDatabase() {
+        return cartRepository.findTotals(cartRepository.findByUser(user).orElseThrow().getId());
+    }
+
+    private Map<Integer, Integer> quantities() {
+        return new TransactionTemplate(transactionManager).execute(tx -> cartItemRepository.findAll().stream()
+                .filter(item -> item.getCart().getUser().getId().equals(user.getId()))
+                .collect(Collectors.toMap(item -> item.getProduct().getId(), CartItem::getQuantity)));
+    }
+}
@@ -0,0 +1,127 @@
+package com.stackpuz.example.backend.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+    private final List<BoundedPasswordEncoder> encoders = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        encoders.forEach(BoundedPasswordEncoder::close);
+    }
+
+    @Test
+    void legacyAndWeakerHashes_stillMatchAndAskForAnUpgrade() {
+        PasswordEncoder encoder = bounded(delegating(5), 2, 4);
+        String legacy = new BCryptPasswordEncoder(4).encode("pw");
+
+        assertTrue(encoder.matches("pw", legacy));
+        assertFalse(encoder.matches("nope", legacy));
+        assertTrue(encoder.upgradeEncoding(legacy));
+        assertTrue(encoder.upgradeEncoding("{bcrypt}" + legacy));
+
+        String current = encoder.encode("pw");
+        assertTrue(current.startsWith("{bcrypt}$2a$05$"));
+        assertTrue(encoder.matches("pw", current));
+        assertFalse(encoder.upgradeEncoding(current));
+    }
+
+    @Test
+    void aFullPool_turnsCallersAwayAtOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blocking = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                try {
+                    return release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        BoundedPasswordEncoder encoder = bounded(blocking, 1, 1);
+
+        // One check running, one queued
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Boolean>> waiting = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                waiting.add(callers.submit(() -> encoder.matches("pw", "pw")));
+            }
+            while (encoder.getQueueDepth() < 1) {
+                Thread.sleep(5);
+            }
+
+            long started = System.nanoTime();
+            assertThrows(PasswordHashingBusyException.class, () -> encoder.matches("pw", "pw"));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 1000);
+
+            release.countDown();
+            for (Future<Boolean> future : waiting) {
+                assertTrue(future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void successfulLogin_rehashesAWeakerStoredPassword() {
+        PasswordEncoder encoder = bounded(delegating(5), 2, 4);
+        AtomicReference<String> stored = new AtomicReference<>(new BCryptPasswordEncoder(4).encode("pw"));
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setPasswordEncoder(encoder);
+        provider.setUserDetailsService(username -> new AuthenticatedUser(2L, username, stored.get(), "ROLE_USER"));
+        provider.setUserDetailsPasswordService((UserDetails user, String newPassword) -> {
+            stored.set(newPassword);
+            return new AuthenticatedUser(2L, user.getUsername(), newPassword, "ROLE_USER");
+        });
+        ProviderManager manager = new ProviderManager(provider);
+
+        manager.authenticate(new UsernamePasswordAuthenticationToken("alice", "pw"));
+        String upgraded = stored.get();
+        assertTrue(upgraded.startsWith("{bcrypt}$2a$05$"));
+
+        manager.authenticate(new UsernamePasswordAuthenticationToken("alice", "pw"));
+        assertEquals(upgraded, stored.get());
+    }
+
+    private BoundedPasswordEncoder bounded(PasswordEncoder delegate, int threads, int queueSize) {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(delegate, threads, queueSize, 5000);
+        encoders.add(encoder);
+        return encoder;
+    }
+
+    // As SecurityConfiguration builds it
+    private static PasswordEncoder delegating(int strength) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+}
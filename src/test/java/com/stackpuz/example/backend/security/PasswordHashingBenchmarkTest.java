@@ -0,0 +1,110 @@
+package com.stackpuz.example.backend.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Password checks per second at several BCrypt strengths, CALLERS concurrent logins on a pool of one thread
+ * per core, followed by a storm at the default strength against the default queue of 8 per thread.
+ * Run with: mvn test -Dtest=PasswordHashingBenchmarkTest -Dauth.benchmark=true
+ */
+@EnabledIfSystemProperty(named = "auth.benchmark", matches = "true")
+class PasswordHashingBenchmarkTest {
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int CALLERS = THREADS * 4;
+    private static final int[] STRENGTHS = {8, 10, 12};
+
+    @Test
+    void throughputPerStrength() throws Exception {
+        for (int strength : STRENGTHS) {
+            String hash = new BCryptPasswordEncoder(strength).encode("pw");
+            // Enough checks for about two seconds of work at this strength, at least one per caller
+            int checks = Math.max(CALLERS, (int) (2000 / millisPerCheck(strength, hash) * THREADS));
+            try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength),
+                    THREADS, checks, 60_000)) {
+                AtomicInteger left = new AtomicInteger(checks);
+                long started = System.nanoTime();
+                run(CALLERS, () -> {
+                    while (left.getAndDecrement() > 0) {
+                        assertTrue(encoder.matches("pw", hash));
+                    }
+                });
+                double seconds = (System.nanoTime() - started) / 1e9;
+                System.out.printf("BCrypt strength %d: %.0f checks/s on %d threads, %.1f ms per check%n",
+                        strength, checks / seconds, THREADS, seconds * 1000 * THREADS / checks);
+            }
+        }
+    }
+
+    @Test
+    void stormAgainstTheQueueLimit() throws Exception {
+        String hash = new BCryptPasswordEncoder(10).encode("pw");
+        int callers = 256;
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger timedOut = new AtomicInteger();
+        AtomicLong slowestCheck = new AtomicLong();
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(10),
+                THREADS, THREADS * 8, 5000)) {
+            run(callers, () -> {
+                long started = System.nanoTime();
+                try {
+                    encoder.matches("pw", hash);
+                    accepted.incrementAndGet();
+                    slowestCheck.accumulateAndGet(System.nanoTime() - started, Math::max);
+                } catch (PasswordHashingBusyException e) {
+                    // Turned away at submit costs microseconds; anything slower waited in the queue until timeout-ms
+                    if (System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(100)) {
+                        rejected.incrementAndGet();
+                    } else {
+                        timedOut.incrementAndGet();
+                    }
+                }
+            });
+        }
+        System.out.printf("Storm of %d logins on %d threads, queue %d: %d checked (slowest %.0f ms), %d rejected at once, %d timed out%n",
+                callers, THREADS, THREADS * 8, accepted.get(), slowestCheck.get() / 1e6, rejected.get(), timedOut.get());
+        assertEquals(callers, accepted.get() + rejected.get() + timedOut.get());
+    }
+
+    private static double millisPerCheck(int strength, String hash) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        long started = System.nanoTime();
+        bcrypt.matches("pw", hash);
+        return Math.max(0.1, (System.nanoTime() - started) / 1e6);
+    }
+
+    private static void run(int callers, Runnable work) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    work.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.stackpuz.example.backend.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserDetailsCacheTest {
+    // Lowest BCrypt strength, so the stored passwords are real hashes without slowing the tests down
+    private static final PasswordEncoder ENCODER = new BCryptPasswordEncoder(4);
+
+    @Mock
+    private UserDetailsService userDetailsService;
+
+    @Test
+    void repeatedLogins_skipTheLookupAndSurviveCredentialErasure() {
+        UserDetailsCache cache = new UserDetailsCache(10, 300);
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(alice("pw"));
+        ProviderManager manager = manager(cache);
+
+        for (int i = 0; i < 3; i++) {
+            manager.authenticate(new UsernamePasswordAuthenticationToken("alice", "pw"));
+        }
+
+        // The provider erases the returned principal's password; the cached copy keeps it
+        verify(userDetailsService, times(1)).loadUserByUsername("alice");
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertTrue(ENCODER.matches("pw", cache.getUserFromCache("alice").getPassword()));
+    }
+
+    @Test
+    void aChangedPassword_fallsBackToTheDatabase() {
+        UserDetailsCache cache = new UserDetailsCache(10, 300);
+        cache.putUserInCache(alice("old"));
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(alice("new"));
+        ProviderManager manager = manager(cache);
+
+        manager.authenticate(new UsernamePasswordAuthenticationToken("alice", "new"));
+        assertThrows(BadCredentialsException.class,
+                () -> manager.authenticate(new UsernamePasswordAuthenticationToken("alice", "old")));
+    }
+
+    @Test
+    void entriesExpireAndAreEvictedLeastRecentlyUsedFirst() {
+        UserDetailsCache expired = new UserDetailsCache(10, 0);
+        expired.putUserInCache(alice("pw"));
+        assertNull(expired.getUserFromCache("alice"));
+
+        UserDetailsCache cache = new UserDetailsCache(2, 300);
+        cache.putUserInCache(alice("pw"));
+        cache.putUserInCache(new AuthenticatedUser(3L, "bob", "pw", "ROLE_USER"));
+        cache.getUserFromCache("alice");
+        cache.putUserInCache(new AuthenticatedUser(4L, "carol", "pw", "ROLE_USER"));
+
+        assertNull(cache.getUserFromCache("bob"));
+        AuthenticatedUser cached = (AuthenticatedUser) cache.getUserFromCache("alice");
+        assertEquals(2L, cached.getId());
+        assertEquals("ROLE_USER", cached.getRole());
+
+        cache.removeUserFromCache("alice");
+        assertNull(cache.getUserFromCache("alice"));
+        assertEquals(1, cache.size());
+    }
+
+    private ProviderManager manager(UserDetailsCache cache) {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsService);
+        provider.setPasswordEncoder(ENCODER);
+        provider.setUserCache(cache);
+        return new ProviderManager(provider);
+    }
+
+    private static AuthenticatedUser alice(String password) {
+        return new AuthenticatedUser(2L, "alice", ENCODER.encode(password), "ROLE_USER");
+    }
+}
@@ -0,0 +1,50 @@
+package com.stackpuz.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseCookie;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GuestCartCookieTest {
+
+    private final GuestCartCookie cookie = new GuestCartCookie("test-secret", 3, 30);
+
+    @Test
+    void write_thenRead_keepsLinesInOrder() {
+        Map<Integer, Integer> lines = new LinkedHashMap<>();
+        lines.put(7, 2);
+        lines.put(3, 1);
+
+        ResponseCookie written = cookie.write(lines);
+
+        assertEquals(GuestCartCookie.NAME, written.getName());
+        assertTrue(written.isHttpOnly());
+        assertEquals(Duration.ofDays(30), written.getMaxAge());
+        assertEquals(List.of(7, 3), List.copyOf(cookie.read(written.getValue()).keySet()));
+        assertEquals(lines, cookie.read(written.getValue()));
+    }
+
+    @Test
+    void read_rejectsTamperedOrForeignCookies() {
+        String value = cookie.write(Map.of(7, 2)).getValue();
+
+        assertTrue(cookie.read(value.replace("7:2", "7:200")).isEmpty());
+        assertTrue(cookie.read(new GuestCartCookie("other-secret", 3, 30).write(Map.of(7, 2)).getValue()).isEmpty());
+        assertTrue(cookie.read("7:2").isEmpty());
+        assertTrue(cookie.read(null).isEmpty());
+    }
+
+    @Test
+    void write_limitsLinesAndClearsWhenEmpty() {
+        assertThrows(IllegalArgumentException.class, () -> cookie.write(Map.of(1, 1, 2, 1, 3, 1, 4, 1)));
+
+        ResponseCookie cleared = cookie.write(Map.of());
+        assertEquals("", cleared.getValue());
+        assertEquals(Duration.ZERO, cleared.getMaxAge());
+    }
+}
@@ -0,0 +1,122 @@
+package com.stackpuz.example.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.stackpuz.example.backend.dto.OrderSummary;
+import com.stackpuz.example.backend.entity.IdempotencyRecord;
+import com.stackpuz.example.backend.entity.Order;
+import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotentCheckoutServiceTest {
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private IdempotencyRecordRepository repository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private IdempotentCheckoutService checkoutService;
+    private User user;
+    private Order order;
+
+    @BeforeEach
+    void setUp() {
+        checkoutService = new IdempotentCheckoutService(orderService, repository, objectMapper, transactionManager, 24, 2);
+        user = new User();
+        user.setId(2L);
+        user.setUsername("alice");
+        order = new Order();
+        order.setId(42L);
+        order.setUser(user);
+        order.setTotalPrice(30.0);
+        order.setOrderDate(LocalDateTime.of(2024, 5, 1, 10, 0));
+        order.setStatus(OrderStatus.PLACED);
+    }
+
+    @Test
+    void checkout_WithoutKey_AlwaysCreatesOrder() {
+        when(orderService.createOrderFromCart(user)).thenReturn(order);
+
+        checkoutService.checkout(user, null);
+        checkoutService.checkout(user, " ");
+
+        verify(orderService, times(2)).createOrderFromCart(user);
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void checkout_RepeatedKey_ReturnsFirstOrderFromMemory() {
+        when(repository.claim(eq(2L), eq("k1"), any())).thenReturn(1);
+        when(orderService.createOrderFromCart(user)).thenReturn(order);
+
+        OrderSummary first = checkoutService.checkout(user, "k1");
+        OrderSummary second = checkoutService.checkout(user, "k1");
+
+        assertEquals(42L, first.id());
+        assertSame(first, second);
+        verify(orderService, times(1)).createOrderFromCart(user);
+        verify(repository, times(1)).claim(eq(2L), eq("k1"), any());
+        verify(repository).complete(eq(2L), eq("k1"), eq(42L), contains("\"id\":42"));
+    }
+
+    @Test
+    void checkout_KeyAlreadyClaimed_ReplaysStoredResponseWithoutCheckingOut() throws Exception {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setOrderId(42L);
+        record.setResponse(objectMapper.writeValueAsString(OrderSummary.from(order)));
+        when(repository.claim(eq(2L), eq("k1"), any())).thenReturn(0);
+        when(repository.findById(new IdempotencyRecord.Key(2L, "k1"))).thenReturn(Optional.of(record));
+
+        OrderSummary replayed = checkoutService.checkout(user, "k1");
+
+        assertEquals(OrderSummary.from(order), replayed);
+        verifyNoInteractions(orderService);
+        verify(repository, never()).complete(any(), any(), any(), any());
+    }
+
+    @Test
+    void checkout_WhenCheckoutFails_KeyCanBeRetried() {
+        when(repository.claim(eq(2L), eq("k1"), any())).thenReturn(1);
+        when(orderService.createOrderFromCart(user))
+                .thenThrow(new IllegalStateException("Cart is empty"))
+                .thenReturn(order);
+
+        assertThrows(IllegalStateException.class, () -> checkoutService.checkout(user, "k1"));
+        OrderSummary retried = checkoutService.checkout(user, "k1");
+
+        assertEquals(42L, retried.id());
+        verify(transactionManager).rollback(any());
+        verify(repository, times(2)).claim(eq(2L), eq("k1"), any());
+    }
+
+    @Test
+    void checkout_KeyTooLong_Throws() {
+        String key = "k".repeat(IdempotentCheckoutService.MAX_KEY_LENGTH + 1);
+
+        assertThrows(IllegalArgumentException.class, () -> checkoutService.checkout(user, key));
+        verifyNoInteractions(orderService, repository);
+    }
+}
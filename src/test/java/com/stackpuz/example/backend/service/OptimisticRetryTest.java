@@ -0,0 +1,82 @@
+package com.stackpuz.example.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OptimisticRetryTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OptimisticRetry retry;
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        retry = new OptimisticRetry(transactionManager, 3, 0);
+    }
+
+    @Test
+    void inTransaction_RerunsWorkAfterVersionConflict() {
+        String result = retry.inTransaction(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Cart", 1);
+            }
+            return "done";
+        });
+
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void inTransaction_GivesUpAfterMaxAttempts() {
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> retry.inTransaction(() -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Cart", 1);
+        }));
+
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void inTransaction_DoesNotRetryOtherFailures() {
+        assertThrows(IllegalArgumentException.class, () -> retry.inTransaction(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalArgumentException("Invalid discount code");
+        }));
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void inTransaction_InsideCallerTransaction_RunsOnceWithoutOwnTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThrows(ObjectOptimisticLockingFailureException.class, () -> retry.inTransaction(() -> {
+                attempts.incrementAndGet();
+                throw new ObjectOptimisticLockingFailureException("Cart", 1);
+            }));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        assertEquals(1, attempts.get());
+        verifyNoInteractions(transactionManager);
+    }
+}
@@ -0,0 +1,59 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.repository.ArchivedOrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderArchiveServiceTest {
+
+    @Mock
+    private ArchivedOrderRepository archiveRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OrderArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() {
+        archiveService = new OrderArchiveService(archiveRepository, transactionManager, 90, 2);
+    }
+
+    @Test
+    void archiveFinishedOrders_ShouldMoveBatchesUntilOneComesBackShort() {
+        when(archiveRepository.lockArchivable(eq(OrderArchiveService.ARCHIVABLE), any(), eq(2)))
+                .thenReturn(List.of(1L, 2L), List.of(3L));
+
+        int archived = archiveService.archiveFinishedOrders();
+
+        assertEquals(3, archived);
+        InOrder inOrder = inOrder(archiveRepository);
+        inOrder.verify(archiveRepository).copyOrders(List.of(1L, 2L));
+        inOrder.verify(archiveRepository).copyItems(List.of(1L, 2L));
+        inOrder.verify(archiveRepository).deleteLiveItems(List.of(1L, 2L));
+        inOrder.verify(archiveRepository).deleteLiveOrders(List.of(1L, 2L));
+        inOrder.verify(archiveRepository).copyOrders(List.of(3L));
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void archiveFinishedOrders_ShouldDoNothingWhenNothingIsDue() {
+        when(archiveRepository.lockArchivable(any(), any(), anyInt())).thenReturn(List.of());
+
+        assertEquals(0, archiveService.archiveFinishedOrders());
+        verify(archiveRepository, never()).copyOrders(any());
+        verify(archiveRepository, never()).deleteLiveOrders(any());
+    }
+}
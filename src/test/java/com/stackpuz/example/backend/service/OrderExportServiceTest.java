@@ -0,0 +1,92 @@
+package com.stackpuz.example.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.stackpuz.example.backend.dto.OrderFilter;
+import com.stackpuz.example.backend.dto.OrderLine;
+import com.stackpuz.example.backend.dto.OrderSummary;
+import com.stackpuz.example.backend.enums.ExportFormat;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.repository.OrderExportRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class OrderExportServiceTest {
+
+    @Mock
+    private OrderExportRepository exportRepository;
+
+    private OrderExportService exportService;
+
+    private final OrderSummary withLines = new OrderSummary(7L, 2L, "alice", LocalDateTime.of(2024, 3, 1, 9, 30),
+            25.0, "=SUM(A1)", 10.0, OrderStatus.DELIVERED, List.of(
+                    new OrderLine(1, "Mug, \"large\"", 2, 5.0),
+                    new OrderLine(2, "Tea", 3, 5.0)));
+    private final OrderSummary empty = new OrderSummary(8L, 2L, "alice", LocalDateTime.of(2024, 3, 2, 9, 30),
+            0.0, null, null, OrderStatus.CANCELED, List.of());
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        exportService = new OrderExportService(exportRepository, objectMapper);
+    }
+
+    @Test
+    void export_Csv_WritesOneRowPerLineAndEscapesText() throws IOException {
+        stubOrders(withLines, empty);
+
+        String[] rows = export(ExportFormat.CSV).split("\n");
+
+        assertEquals(4, rows.length);
+        assertEquals(OrderExportService.CSV_HEADER, rows[0]);
+        assertEquals("7,2024-03-01T09:30,2,alice,DELIVERED,25.0,'=SUM(A1),10.0,1,\"Mug, \"\"large\"\"\",2,5.0", rows[1]);
+        assertEquals("7,2024-03-01T09:30,2,alice,DELIVERED,25.0,'=SUM(A1),10.0,2,Tea,3,5.0", rows[2]);
+        assertEquals("8,2024-03-02T09:30,2,alice,CANCELED,0.0,,,,,,", rows[3]);
+    }
+
+    @Test
+    void export_Ndjson_WritesOneOrderPerLine() throws IOException {
+        stubOrders(withLines, empty);
+
+        String[] rows = export(ExportFormat.NDJSON).split("\n");
+
+        assertEquals(2, rows.length);
+        assertTrue(rows[0].startsWith("{\"id\":7,"));
+        assertTrue(rows[0].contains("\"productName\":\"Tea\""));
+        assertTrue(rows[1].contains("\"items\":[]"));
+    }
+
+    private void stubOrders(OrderSummary... orders) {
+        doAnswer(invocation -> {
+            Consumer<OrderSummary> consumer = invocation.getArgument(1);
+            for (OrderSummary order : orders) {
+                consumer.accept(order);
+            }
+            return null;
+        }).when(exportRepository).forEachOrder(eq(OrderFilter.none()), any());
+    }
+
+    private String export(ExportFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(OrderFilter.none(), format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
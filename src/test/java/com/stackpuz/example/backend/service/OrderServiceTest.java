@@ -0,0 +1,346 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.dto.OrderFilter;
+import com.stackpuz.example.backend.dto.OrderLine;
+import com.stackpuz.example.backend.dto.OrderPage;
+import com.stackpuz.example.backend.dto.OrderSummary;
+import com.stackpuz.example.backend.entity.ArchivedOrder;
+import com.stackpuz.example.backend.entity.ArchivedOrderItem;
+import com.stackpuz.example.backend.entity.Cart;
+import com.stackpuz.example.backend.entity.CartItem;
+import com.stackpuz.example.backend.entity.Order;
+import com.stackpuz.example.backend.entity.OrderItem;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.event.OrderPlaced;
+import com.stackpuz.example.backend.event.OrderStatusChanged;
+import com.stackpuz.example.backend.repository.ArchivedOrderRepository;
+import com.stackpuz.example.backend.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private ArchivedOrderRepository archivedOrderRepository;
+
+    @Mock
+    private CartService cartService;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private SalesRollupService salesRollupService;
+
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @InjectMocks
+    private OrderService orderService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setId(7L);
+        user.setUsername("alice");
+    }
+
+    @Test
+    void getOrderPage_ShouldReturnCursorWhenMoreRowsExist() {
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        Order newest = order(3L, now);
+        Order middle = order(2L, now.minusHours(1));
+        Order oldest = order(1L, now.minusHours(2));
+        when(orderRepository.findAdminPage(null, null, null, null, null, null, PageRequest.of(0, 3)))
+                .thenReturn(List.of(newest, middle, oldest));
+
+        OrderPage page = orderService.getOrderPage(OrderFilter.none(), null, 2);
+
+        assertEquals(List.of(3L, 2L), page.items().stream().map(o -> o.id()).toList());
+        assertEquals("alice", page.items().get(0).username());
+        assertTrue(page.hasNext());
+        verify(orderRepository).findWithItemsByIdIn(List.of(3L, 2L));
+
+        when(orderRepository.findAdminPage(null, null, null, null, middle.getOrderDate(), 2L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(oldest));
+
+        OrderPage next = orderService.getOrderPage(OrderFilter.none(), page.nextCursor(), 2);
+
+        assertEquals(List.of(1L), next.items().stream().map(o -> o.id()).toList());
+        assertFalse(next.hasNext());
+    }
+
+    @Test
+    void getOrderPage_ShouldTranslateFilters() {
+        when(userService.findByUsername("alice")).thenReturn(Optional.of(user));
+        when(orderRepository.findAdminPage(any(), any(), any(), any(), any(), any(), any())).thenReturn(List.of());
+
+        OrderFilter filter = new OrderFilter(OrderStatus.SHIPPED, " alice ", LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 31));
+        orderService.getOrderPage(filter, null, null);
+
+        // The "to" day is inclusive, so the bound is the start of the next day
+        verify(orderRepository).findAdminPage(OrderStatus.SHIPPED, 7L,
+                LocalDateTime.of(2024, 5, 1, 0, 0), LocalDateTime.of(2024, 6, 1, 0, 0),
+                null, null, PageRequest.of(0, OrderService.DEFAULT_PAGE_SIZE + 1));
+        verify(orderRepository, never()).findWithItemsByIdIn(any());
+    }
+
+    @Test
+    void getOrderPage_ShouldReturnEmptyPageForUnknownUser() {
+        when(userService.findByUsername("nobody")).thenReturn(Optional.empty());
+
+        OrderPage page = orderService.getOrderPage(new OrderFilter(null, "nobody", null, null), null, 10);
+
+        assertTrue(page.items().isEmpty());
+        assertFalse(page.hasNext());
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void getOrderPage_ShouldRejectMalformedCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> orderService.getOrderPage(OrderFilter.none(), "%%%", 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> orderService.getOrderPage(OrderFilter.none(), "MXxub3QtYS1kYXRl", 10));
+    }
+
+    @Test
+    void getUserOrderHistory_ShouldMapOrdersToSummaries() {
+        Product product = new Product();
+        product.setId(4);
+        product.setName("Phone");
+        Order order = order(9L, LocalDateTime.of(2024, 5, 1, 12, 0));
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(product);
+        item.setQuantity(2);
+        item.setPriceAtOrder(99.5);
+        order.getItems().add(item);
+        when(orderRepository.findAdminPage(null, 7L, null, null, null, null, PageRequest.of(0, 26)))
+                .thenReturn(List.of(order));
+        when(archivedOrderRepository.findUserPage(7L, null, null, PageRequest.of(0, 26))).thenReturn(List.of());
+
+        OrderPage history = orderService.getUserOrderHistory(user, null, null);
+
+        assertEquals(1, history.items().size());
+        assertEquals(7L, history.items().get(0).userId());
+        assertEquals(List.of(new OrderLine(4, "Phone", 2, 99.5)), history.items().get(0).items());
+        assertFalse(history.hasNext());
+        verify(orderRepository).findWithItemsByIdIn(List.of(9L));
+        verify(archivedOrderRepository, never()).findWithItemsByIdIn(any());
+    }
+
+    @Test
+    void getUserOrderHistory_ShouldMergeArchivedOrdersNewestFirst() {
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        ArchivedOrder older = archived(3L, now.minusDays(200));
+        ArchivedOrderItem line = new ArchivedOrderItem();
+        line.setOrder(older);
+        line.setProductId(4);
+        line.setProductName("Phone");
+        line.setQuantity(1);
+        line.setPriceAtOrder(80.0);
+        older.getItems().add(line);
+        when(orderRepository.findAdminPage(isNull(), eq(7L), isNull(), isNull(), eq(now), eq(10L), eq(PageRequest.of(0, 3))))
+                .thenReturn(List.of(order(8L, now.minusDays(1)), order(2L, now.minusDays(300))));
+        when(archivedOrderRepository.findUserPage(7L, now, 10L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(archived(5L, now.minusDays(100)), older));
+
+        OrderPage history = orderService.getUserOrderHistory(user, cursor(10L, now), 2);
+
+        assertEquals(List.of(8L, 5L), history.items().stream().map(OrderSummary::id).toList());
+        assertEquals("alice", history.items().get(1).username());
+        assertEquals(cursor(5L, now.minusDays(100)), history.nextCursor());
+        verify(orderRepository).findWithItemsByIdIn(List.of(8L));
+        verify(archivedOrderRepository).findWithItemsByIdIn(List.of(5L));
+    }
+
+    @Test
+    void getUserOrderHistory_ShouldRejectMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.getUserOrderHistory(user, "%%%", 10));
+        verifyNoInteractions(orderRepository, archivedOrderRepository);
+    }
+
+    @Test
+    void updateOrderStatus_ShouldMoveRollupsFromOldStatus() {
+        Order order = order(4L, LocalDateTime.of(2024, 5, 1, 12, 0));
+        order.setStatus(OrderStatus.PROCESSING);
+        when(orderRepository.findById(4L)).thenReturn(Optional.of(order));
+        when(orderRepository.lockIdsInStatus(List.of(4L), "PROCESSING")).thenReturn(List.of(4L));
+        when(orderRepository.save(order)).thenReturn(order);
+
+        orderService.updateOrderStatus(4L, OrderStatus.SHIPPED);
+
+        verify(salesRollupService).recordMoved(List.of(4L), OrderStatus.PROCESSING, OrderStatus.SHIPPED);
+        verify(outboxService).append(new OrderStatusChanged(4L, 7L, OrderStatus.PROCESSING, OrderStatus.SHIPPED), 4L);
+        assertEquals(OrderStatus.SHIPPED, order.getStatus());
+    }
+
+    @Test
+    void updateOrderStatus_ShouldRestockWhenCanceled() {
+        Order order = order(4L, LocalDateTime.of(2024, 5, 1, 12, 0));
+        order.setStatus(OrderStatus.PLACED);
+        when(orderRepository.findById(4L)).thenReturn(Optional.of(order));
+        when(orderRepository.lockIdsInStatus(List.of(4L), "PLACED")).thenReturn(List.of(4L));
+        when(orderRepository.save(order)).thenReturn(order);
+
+        orderService.updateOrderStatus(4L, OrderStatus.CANCELED);
+
+        verify(stockService).restockOrders(List.of(4L));
+    }
+
+    @Test
+    void updateOrderStatus_ShouldRejectMovesOutsideTheLifecycle() {
+        Order order = order(4L, LocalDateTime.of(2024, 5, 1, 12, 0));
+        order.setStatus(OrderStatus.CANCELED);
+        when(orderRepository.findById(4L)).thenReturn(Optional.of(order));
+
+        assertThrows(IllegalArgumentException.class, () -> orderService.updateOrderStatus(4L, OrderStatus.PLACED));
+        assertThrows(IllegalArgumentException.class, () -> orderService.updateOrderStatus(4L, OrderStatus.CANCELED));
+
+        verify(orderRepository, never()).lockIdsInStatus(any(), any());
+        verifyNoInteractions(salesRollupService, stockService, outboxService);
+    }
+
+    @Test
+    void updateOrderStatus_ShouldRecordNothingWhenStatusChangedSinceRead() {
+        Order order = order(4L, LocalDateTime.of(2024, 5, 1, 12, 0));
+        order.setStatus(OrderStatus.PLACED);
+        when(orderRepository.findById(4L)).thenReturn(Optional.of(order));
+        when(orderRepository.lockIdsInStatus(List.of(4L), "PLACED")).thenReturn(List.of());
+
+        assertThrows(IllegalStateException.class, () -> orderService.updateOrderStatus(4L, OrderStatus.CANCELED));
+
+        verifyNoInteractions(salesRollupService, stockService, outboxService);
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @Test
+    void createOrderFromCart_ShouldHoldStockFirstAndDeductLast() {
+        Cart cart = cartWith(product(4, 10.0), 2, product(5, 3.0), 1, product(4, 10.0), 1);
+        when(cartService.getUserCart(user)).thenReturn(cart);
+        when(orderRepository.save(any(Order.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        orderService.createOrderFromCart(user);
+
+        Map<Integer, Integer> quantities = Map.of(4, 3, 5, 1);
+        InOrder inOrder = inOrder(stockService, orderRepository, cartService);
+        inOrder.verify(stockService).hold(quantities);
+        inOrder.verify(orderRepository).save(any(Order.class));
+        inOrder.verify(cartService).clearCart(user);
+        inOrder.verify(stockService).deduct(quantities);
+    }
+
+    @Test
+    void createOrderFromCart_ShouldLeaveRollupsToTheOutbox() {
+        when(cartService.getUserCart(user)).thenReturn(cartWith(product(4, 10.0), 2));
+        when(orderRepository.save(any(Order.class))).thenAnswer(inv -> {
+            Order order = inv.getArgument(0);
+            order.setId(12L);
+            return order;
+        });
+
+        orderService.createOrderFromCart(user);
+
+        ArgumentCaptor<OrderPlaced> event = ArgumentCaptor.forClass(OrderPlaced.class);
+        verify(outboxService).append(event.capture(), eq(12L));
+        assertEquals(7L, event.getValue().userId());
+        assertEquals(List.of(new OrderPlaced.Line(4, 2, 10.0)), event.getValue().lines());
+        assertEquals(20.0, event.getValue().totalPrice());
+        verifyNoInteractions(salesRollupService);
+    }
+
+    @Test
+    void createOrderFromCart_ShouldWriteNothingWhenStockIsShort() {
+        when(cartService.getUserCart(user)).thenReturn(cartWith(product(4, 10.0), 2));
+        doThrow(new IllegalStateException("Not enough stock for product 4")).when(stockService).hold(Map.of(4, 2));
+
+        assertThrows(IllegalStateException.class, () -> orderService.createOrderFromCart(user));
+        verify(orderRepository, never()).save(any());
+        verify(cartService, never()).clearCart(any());
+    }
+
+    @Test
+    void deleteOrder_ShouldRemoveFromRollupsBeforeDeleting() {
+        Order order = order(4L, LocalDateTime.of(2024, 5, 1, 12, 0));
+        when(orderRepository.findById(4L)).thenReturn(Optional.of(order));
+
+        orderService.deleteOrder(4L);
+
+        InOrder inOrder = inOrder(salesRollupService, orderRepository);
+        inOrder.verify(salesRollupService).recordRemoved(List.of(order));
+        inOrder.verify(orderRepository).delete(order);
+    }
+
+    private Order order(Long id, LocalDateTime orderDate) {
+        Order order = new Order();
+        order.setId(id);
+        order.setUser(user);
+        order.setOrderDate(orderDate);
+        return order;
+    }
+
+    private ArchivedOrder archived(Long id, LocalDateTime orderDate) {
+        ArchivedOrder order = new ArchivedOrder();
+        order.setId(id);
+        order.setUserId(user.getId());
+        order.setOrderDate(orderDate);
+        order.setStatus(OrderStatus.DELIVERED);
+        return order;
+    }
+
+    private static String cursor(Long id, LocalDateTime orderDate) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((id + "|" + orderDate).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Product product(int id, double price) {
+        Product product = new Product();
+        product.setId(id);
+        product.setPrice(price);
+        return product;
+    }
+
+    // Alternating product, quantity pairs
+    private static Cart cartWith(Object... lines) {
+        Cart cart = new Cart();
+        for (int i = 0; i < lines.length; i += 2) {
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setProduct((Product) lines[i]);
+            item.setQuantity((Integer) lines[i + 1]);
+            cart.getItems().add(item);
+        }
+        return cart;
+    }
+}
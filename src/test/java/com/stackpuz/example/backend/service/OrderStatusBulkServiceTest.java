@@ -0,0 +1,139 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.dto.BulkStatusRequest;
+import com.stackpuz.example.backend.dto.BulkStatusResult;
+import com.stackpuz.example.backend.entity.User;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderStatusBulkServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private SalesRollupService salesRollupService;
+
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private OrderStatusBulkService bulkService;
+
+    @Test
+    void transition_ShouldOnlyAllowForwardMoves() {
+        assertTrue(OrderStatus.PROCESSING.canTransitionTo(OrderStatus.SHIPPED));
+        assertFalse(OrderStatus.SHIPPED.canTransitionTo(OrderStatus.PLACED));
+        assertFalse(OrderStatus.CANCELED.canTransitionTo(OrderStatus.PROCESSING));
+        assertEquals(Set.of(OrderStatus.PLACED, OrderStatus.PROCESSING), OrderStatus.sourcesOf(OrderStatus.CANCELED));
+        assertTrue(OrderStatus.sourcesOf(OrderStatus.PLACED).isEmpty());
+    }
+
+    @Test
+    void transition_ShouldUpdateIdsInChunksAndCountSkipped() {
+        List<Long> ids = LongStream.rangeClosed(1, OrderStatusBulkService.CHUNK_SIZE + 10).boxed().toList();
+        Set<OrderStatus> sources = Set.of(OrderStatus.PROCESSING);
+        List<Long> firstChunk = ids.subList(0, OrderStatusBulkService.CHUNK_SIZE);
+        List<Long> secondChunk = ids.subList(OrderStatusBulkService.CHUNK_SIZE, ids.size());
+        List<Long> secondLocked = secondChunk.subList(0, 7);
+        when(orderRepository.lockIdsInStatus(firstChunk, "PROCESSING")).thenReturn(firstChunk);
+        when(orderRepository.lockIdsInStatus(secondChunk, "PROCESSING")).thenReturn(secondLocked);
+        when(orderRepository.updateStatus(firstChunk, sources, OrderStatus.SHIPPED))
+                .thenReturn(OrderStatusBulkService.CHUNK_SIZE);
+        when(orderRepository.updateStatus(secondLocked, sources, OrderStatus.SHIPPED))
+                .thenReturn(7);
+
+        BulkStatusResult result = bulkService.transition(
+                new BulkStatusRequest(OrderStatus.SHIPPED, ids, null, null, null, null));
+
+        assertEquals(OrderStatusBulkService.CHUNK_SIZE + 7, result.updated());
+        assertEquals(3, result.skipped());
+        assertEquals(List.of(new BulkStatusResult.Chunk(0, OrderStatusBulkService.CHUNK_SIZE, OrderStatusBulkService.CHUNK_SIZE),
+                new BulkStatusResult.Chunk(1, 10, 7)), result.chunks());
+        // Rollups move exactly the locked orders
+        verify(salesRollupService).recordMoved(secondLocked, OrderStatus.PROCESSING, OrderStatus.SHIPPED);
+        // One OrderStatusChanged per moved order, written in the chunk's transaction
+        verify(outboxService).appendStatusChanged(firstChunk, OrderStatus.PROCESSING, OrderStatus.SHIPPED);
+        verify(outboxService).appendStatusChanged(secondLocked, OrderStatus.PROCESSING, OrderStatus.SHIPPED);
+        verify(orderRepository, never()).findById(any());
+    }
+
+    @Test
+    void transition_ShouldWalkFilterMatchesByIdUntilExhausted() {
+        User alice = new User();
+        alice.setId(7L);
+        Set<OrderStatus> sources = Set.of(OrderStatus.PROCESSING);
+        when(userService.findByUsername("alice")).thenReturn(Optional.of(alice));
+        when(orderRepository.findIdsForTransition(sources, 7L, null, null, 0L, PageRequest.of(0, OrderStatusBulkService.CHUNK_SIZE)))
+                .thenReturn(List.of(3L, 9L));
+        when(orderRepository.findIdsForTransition(sources, 7L, null, null, 9L, PageRequest.of(0, OrderStatusBulkService.CHUNK_SIZE)))
+                .thenReturn(List.of());
+        when(orderRepository.lockIdsInStatus(List.of(3L, 9L), "PROCESSING")).thenReturn(List.of(3L, 9L));
+        when(orderRepository.updateStatus(List.of(3L, 9L), sources, OrderStatus.SHIPPED)).thenReturn(2);
+
+        BulkStatusResult result = bulkService.transition(
+                new BulkStatusRequest(OrderStatus.SHIPPED, null, OrderStatus.PROCESSING, "alice", null, null));
+
+        assertEquals(2, result.updated());
+        assertEquals(0, result.skipped());
+        assertEquals(1, result.chunks().size());
+    }
+
+    @Test
+    void transition_ShouldRestockCanceledOrders() {
+        when(orderRepository.lockIdsInStatus(List.of(1L, 2L), "PLACED")).thenReturn(List.of(2L));
+        when(orderRepository.lockIdsInStatus(List.of(1L, 2L), "PROCESSING")).thenReturn(List.of());
+        when(orderRepository.updateStatus(List.of(2L), Set.of(OrderStatus.PLACED), OrderStatus.CANCELED)).thenReturn(1);
+
+        bulkService.transition(new BulkStatusRequest(OrderStatus.CANCELED, List.of(1L, 2L), null, null, null, null));
+
+        verify(stockService).restockOrders(List.of(2L));
+        verifyNoMoreInteractions(stockService);
+    }
+
+    @Test
+    void transition_ShouldRejectInvalidTransitions() {
+        assertThrows(IllegalArgumentException.class, () -> bulkService.transition(
+                new BulkStatusRequest(OrderStatus.PLACED, List.of(1L), null, null, null, null)));
+        assertThrows(IllegalArgumentException.class, () -> bulkService.transition(
+                new BulkStatusRequest(OrderStatus.PROCESSING, null, OrderStatus.DELIVERED, null, null, null)));
+        assertThrows(IllegalArgumentException.class, () -> bulkService.transition(
+                new BulkStatusRequest(null, List.of(1L), null, null, null, null)));
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void transition_ShouldRejectRequestWithoutIdsOrFilter() {
+        assertThrows(IllegalArgumentException.class, () -> bulkService.transition(
+                new BulkStatusRequest(OrderStatus.CANCELED, null, null, null, null, null)));
+        assertThrows(IllegalArgumentException.class, () -> bulkService.transition(
+                new BulkStatusRequest(OrderStatus.CANCELED, List.of(), null, " ", null, null)));
+        verifyNoInteractions(orderRepository, userService, salesRollupService, stockService, outboxService);
+    }
+}
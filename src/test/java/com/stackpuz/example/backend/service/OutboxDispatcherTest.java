@@ -0,0 +1,150 @@
+package com.stackpuz.example.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stackpuz.example.backend.entity.OutboxEvent;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.enums.OutboxStatus;
+import com.stackpuz.example.backend.event.OrderPlaced;
+import com.stackpuz.example.backend.event.OrderStatusChanged;
+import com.stackpuz.example.backend.repository.OutboxEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxDispatcherTest {
+
+    @Mock
+    private OutboxEventRepository repository;
+
+    @Mock
+    private ApplicationEventPublisher publisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private OutboxService outboxService;
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        outboxService = new OutboxService(repository, new ObjectMapper().findAndRegisterModules());
+        dispatcher = new OutboxDispatcher(repository, outboxService, publisher, transactionManager, 2, 3, 1000);
+    }
+
+    @Test
+    void read_ShouldRoundTripEventsThroughJson() throws Exception {
+        OrderPlaced placed = new OrderPlaced(5L, 7L, LocalDateTime.of(2024, 5, 1, 12, 0), 20.0,
+                List.of(new OrderPlaced.Line(3, 2, 10.0)));
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+
+        assertEquals(placed, outboxService.read(row(1L, "OrderPlaced", mapper.writeValueAsString(placed))));
+        // Bulk transitions build this payload in SQL
+        assertEquals(new OrderStatusChanged(9L, 7L, OrderStatus.PLACED, OrderStatus.CANCELED), outboxService.read(
+                row(2L, "OrderStatusChanged", "{\"orderId\":9,\"userId\":7,\"from\":\"PLACED\",\"to\":\"CANCELED\"}")));
+    }
+
+    @Test
+    void dispatch_ShouldDeliverClaimedBatchesAndDeleteThem() {
+        OutboxEvent first = statusChanged(1L, 10L);
+        OutboxEvent second = statusChanged(2L, 11L);
+        OutboxEvent third = statusChanged(3L, 12L);
+        when(repository.findByLeaseTokenOrderById(anyString()))
+                .thenReturn(List.of(first, second), List.of(third));
+        deletesEveryLeasedRow();
+
+        int delivered = dispatcher.dispatch();
+
+        assertEquals(3, delivered);
+        verify(repository, times(2)).claim(anyString(), any(), any(), eq(2));
+        verify(publisher).publishEvent(new OrderStatusChanged(10L, 7L, OrderStatus.PLACED, OrderStatus.PROCESSING));
+        verify(repository).deleteLeased(List.of(1L, 2L), "token");
+        verify(repository).deleteLeased(List.of(3L), "token");
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void dispatch_ShouldIsolateAFailingEventAndBackOff() {
+        OutboxEvent good = statusChanged(1L, 10L);
+        OutboxEvent bad = row(2L, "Unknown", "{}");
+        when(repository.findByLeaseTokenOrderById(anyString())).thenReturn(List.of(good, bad), List.of());
+        deletesEveryLeasedRow();
+
+        int delivered = dispatcher.dispatch();
+
+        assertEquals(1, delivered);
+        verify(repository).deleteLeased(List.of(1L), "token");
+        verify(repository, never()).deleteLeased(List.of(2L), "token");
+        verify(repository).save(bad);
+        assertEquals(1, bad.getAttempts());
+        assertEquals(OutboxStatus.PENDING, bad.getStatus());
+        assertTrue(bad.getAvailableAt().isAfter(LocalDateTime.now()));
+        assertNull(bad.getLeaseToken());
+        assertTrue(bad.getLastError().contains("Unknown"));
+    }
+
+    @Test
+    void dispatch_ShouldGiveUpAfterMaxAttempts() {
+        OutboxEvent bad = row(2L, "Unknown", "{}");
+        bad.setAttempts(2);
+        when(repository.findByLeaseTokenOrderById(anyString())).thenReturn(List.of(bad));
+
+        assertEquals(0, dispatcher.dispatch());
+        assertEquals(OutboxStatus.FAILED, bad.getStatus());
+        assertEquals(3, bad.getAttempts());
+    }
+
+    @Test
+    void dispatch_ShouldRollBackABatchWhoseLeaseWasLost() {
+        OutboxEvent first = statusChanged(1L, 10L);
+        OutboxEvent second = statusChanged(2L, 11L);
+        when(repository.findByLeaseTokenOrderById(anyString())).thenReturn(List.of(first, second), List.of());
+        // Another dispatcher re-claimed the second row after this lease ran out
+        when(repository.deleteLeased(List.of(1L, 2L), "token")).thenReturn(1);
+
+        assertEquals(0, dispatcher.dispatch());
+        verify(transactionManager).rollback(any());
+        verify(repository, times(1)).deleteLeased(anyCollection(), anyString());
+        verify(repository, never()).save(any());
+        assertEquals(0, second.getAttempts());
+    }
+
+    @Test
+    void backoff_ShouldDoubleAndCap() {
+        assertEquals(1000, dispatcher.backoff(1));
+        assertEquals(8000, dispatcher.backoff(4));
+        assertEquals(600_000, dispatcher.backoff(30));
+    }
+
+    private void deletesEveryLeasedRow() {
+        when(repository.deleteLeased(anyCollection(), eq("token")))
+                .thenAnswer(invocation -> invocation.<Collection<?>>getArgument(0).size());
+    }
+
+    private static OutboxEvent statusChanged(Long id, Long orderId) {
+        return row(id, "OrderStatusChanged",
+                "{\"orderId\":" + orderId + ",\"userId\":7,\"from\":\"PLACED\",\"to\":\"PROCESSING\"}");
+    }
+
+    private static OutboxEvent row(Long id, String type, String payload) {
+        OutboxEvent row = new OutboxEvent();
+        row.setId(id);
+        row.setType(type);
+        row.setPayload(payload);
+        row.setAvailableAt(LocalDateTime.now());
+        row.setLeaseToken("token");
+        return row;
+    }
+}
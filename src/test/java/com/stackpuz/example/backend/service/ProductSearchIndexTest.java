@@ -0,0 +1,157 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSearchIndexTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex(productRepository);
+        index.index(product(1, "Microsoft Lumia 950"));
+        index.index(product(2, "Acer Iconia Tab A101"));
+        index.index(product(3, "Acer Iconia Tab A3-A20FHD"));
+        index.index(product(4, "Motorola V80"));
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(6)));
+        }
+        return word.toString();
+    }
+
+    // Up to two random substitutions, insertions or deletions
+    private static String typo(Random random, String word) {
+        StringBuilder typo = new StringBuilder(word);
+        for (int edits = random.nextInt(3); edits > 0 && typo.length() > 1; edits--) {
+            int at = random.nextInt(typo.length());
+            switch (random.nextInt(3)) {
+                case 0 -> typo.setCharAt(at, (char) ('a' + random.nextInt(6)));
+                case 1 -> typo.insert(at, (char) ('a' + random.nextInt(6)));
+                default -> typo.deleteCharAt(at);
+            }
+        }
+        return typo.toString();
+    }
+
+    private static Product product(int id, String name) {
+        Product p = new Product();
+        p.setId(id);
+        p.setName(name);
+        return p;
+    }
+
+    @Test
+    void search_matchesWholeTokensCaseInsensitively() {
+        assertEquals(List.of(4), index.search("MOTOROLA", 10));
+    }
+
+    @Test
+    void search_matchesPrefixes() {
+        assertEquals(List.of(2, 3), index.search("icon", 10));
+    }
+
+    @Test
+    void search_toleratesTypos() {
+        assertEquals(List.of(4), index.search("motorla", 10));
+        assertEquals(List.of(1), index.search("micorsoft", 10));
+    }
+
+    @Test
+    void search_requiresEveryTokenAndRanksExactAboveFuzzy() {
+        assertEquals(List.of(2), index.search("acer a101", 10));
+        assertEquals(List.of(2, 3), index.search("acer tab", 10));
+    }
+
+    @Test
+    void search_reflectsUpdatesAndRemovals() {
+        index.index(product(4, "Motorola Razr"));
+        assertTrue(index.search("v80", 10).isEmpty());
+        assertEquals(List.of(4), index.search("razr", 10));
+
+        index.remove(4);
+        assertTrue(index.search("motorola", 10).isEmpty());
+    }
+
+    @Test
+    void rebuild_replacesIndexWithCatalogContents() {
+        doAnswer(inv -> {
+            Consumer<List<Product>> consumer = inv.getArgument(1);
+            consumer.accept(List.of(product(10, "Honor 20 Pro")));
+            return null;
+        }).when(productRepository).forEachBatch(anyInt(), any());
+
+        index.rebuild();
+
+        assertTrue(index.isReady());
+        assertEquals(List.of(10), index.search("honor", 10));
+        assertTrue(index.search("motorola", 10).isEmpty());
+    }
+
+    @Test
+    void search_findsTheSameTyposAsAFullDictionaryScan() {
+        Random random = new Random(42);
+        ProductSearchIndex large = new ProductSearchIndex(productRepository);
+        List<String> words = new ArrayList<>();
+        for (int id = 1; id <= 2000; id++) {
+            String word = randomWord(random, 2 + random.nextInt(10));
+            words.add(word);
+            large.index(product(id, word));
+        }
+        // Churn, so removed terms must leave the deletion index too
+        for (int id = 1; id <= 200; id++) {
+            words.set(id - 1, "");
+            large.remove(id);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            String query = typo(random, words.get(200 + random.nextInt(1800)));
+            int maxEdits = query.length() < 4 ? 0 : query.length() < 8 ? 1 : 2;
+            Set<Integer> expected = new HashSet<>();
+            for (int id = 201; id <= 2000; id++) {
+                String word = words.get(id - 1);
+                if (word.startsWith(query) || ProductSearchIndex.boundedDistance(query, word, maxEdits) <= maxEdits) {
+                    expected.add(id);
+                }
+            }
+            assertEquals(expected, new HashSet<>(large.search(query, Integer.MAX_VALUE)), query);
+        }
+    }
+
+    @Test
+    void deletions_keepTheTermAndStopAtTwoCharacters() {
+        assertEquals(Set.of("abc", "bc", "ac", "ab"), ProductSearchIndex.deletions("abc", 2));
+        assertEquals(Set.of("ab"), ProductSearchIndex.deletions("ab", 2));
+    }
+
+    @Test
+    void boundedDistance_stopsPastLimit() {
+        assertEquals(1, ProductSearchIndex.boundedDistance("lumia", "lumaa", 2));
+        assertEquals(3, ProductSearchIndex.boundedDistance("abc", "xyz", 2));
+    }
+}
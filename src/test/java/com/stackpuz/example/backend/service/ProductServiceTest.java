@@ -1,7 +1,13 @@
 package com.stackpuz.example.backend.service;
 
+import com.stackpuz.example.backend.dto.ProductPage;
 import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.enums.ProductSort;
+import com.stackpuz.example.backend.repository.CartItemRepository;
+import com.stackpuz.example.backend.repository.OrderItemRepository;
 import com.stackpuz.example.backend.repository.ProductRepository;
+import com.stackpuz.example.backend.repository.ReviewRepository;
+import com.stackpuz.example.backend.repository.WishlistItemRepository;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,6 +15,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Arrays;
 import java.util.List;
@@ -23,6 +32,33 @@ class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private ReviewRepository reviewRepository;
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private WishlistItemRepository wishlistItemRepository;
+
+    @Mock
+    private OrderItemRepository orderItemRepository;
+
+    @Mock
+    private RatingStatsService ratingStatsService;
+
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private ProductSearchIndex searchIndex;
+
+    @Mock
+    private ProductSuggester suggester;
+
+    @Mock
+    private CartService cartService;
+
     @InjectMocks
     private ProductService productService;
 
@@ -45,17 +81,8 @@ class ProductServiceTest {
         assertNotNull(saved);
         assertEquals("Test Product", saved.getName());
         verify(productRepository).save(product);
-    }
-
-    @Test
-    void getProducts_ShouldReturnAllProducts() {
-        List<Product> products = Arrays.asList(product);
-        when(productRepository.findAll()).thenReturn(products);
-
-        List<Product> result = productService.getProducts();
-
-        assertEquals(1, result.size());
-        verify(productRepository).findAll();
+        verify(searchIndex).index(product);
+        verify(suggester).put(product);
     }
 
     @Test
@@ -109,6 +136,8 @@ class ProductServiceTest {
 
         verify(productRepository).existsById(1);
         verify(productRepository).deleteById(1);
+        verify(reviewRepository).deleteByProductId(1);
+        verify(ratingStatsService).deleteForProduct(1);
     }
 
     @Test
@@ -117,4 +146,150 @@ class ProductServiceTest {
 
         assertThrows(EntityNotFoundException.class, () -> productService.deleteProduct(999));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getProductPage_ShouldReturnCursorWhenMoreRowsExist() {
+        Product second = new Product();
+        second.setId(2);
+        second.setName("Second");
+        second.setPrice(50.0);
+        Product third = new Product();
+        third.setId(3);
+        when(productRepository.findAllByOrderByPriceAscIdAsc(PageRequest.of(0, 3)))
+                .thenReturn(Arrays.asList(product, second, third));
+
+        ProductPage page = productService.getProductPage(ProductSort.PRICE, null, 2);
+
+        assertEquals(List.of(product, second), page.items());
+        assertTrue(page.hasNext());
+
+        when(productRepository.findPricePageAfter(50.0, 2, PageRequest.of(0, 3)))
+                .thenReturn(List.of(third));
+
+        ProductPage next = productService.getProductPage(ProductSort.PRICE, page.nextCursor(), 2);
+
+        assertEquals(List.of(third), next.items());
+        assertFalse(next.hasNext());
+    }
+
+    @Test
+    void getProductPage_ShouldMovePastRowsWithoutAPriceOrName() {
+        Product blank = new Product();
+        blank.setId(4);
+        when(productRepository.findAllByOrderByPriceAscIdAsc(PageRequest.of(0, 2)))
+                .thenReturn(List.of(blank, product));
+        when(productRepository.findAllByOrderByNameAscIdAsc(PageRequest.of(0, 2)))
+                .thenReturn(List.of(blank, product));
+        when(productRepository.findPricePageAfterNull(4, PageRequest.of(0, 2))).thenReturn(List.of(product));
+        when(productRepository.findNamePageAfterNull(4, PageRequest.of(0, 2))).thenReturn(List.of(product));
+
+        for (ProductSort sort : List.of(ProductSort.PRICE, ProductSort.NAME)) {
+            ProductPage page = productService.getProductPage(sort, null, 1);
+            assertEquals(List.of(blank), page.items());
+
+            ProductPage next = productService.getProductPage(sort, page.nextCursor(), 1);
+            assertEquals(List.of(product), next.items());
+        }
+    }
+
+    @Test
+    void getProductPage_ShouldClampPageSize() {
+        when(productRepository.findAllByOrderByIdAsc(PageRequest.of(0, ProductService.MAX_PAGE_SIZE + 1)))
+                .thenReturn(List.of(product));
+
+        ProductPage page = productService.getProductPage(ProductSort.ID, null, 10_000);
+
+        assertEquals(ProductService.MAX_PAGE_SIZE, page.limit());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void getProductPage_ShouldRejectMalformedCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.getProductPage(ProductSort.NAME, "%%%", 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.getProductPage(ProductSort.PRICE, "MQ", 10));
+    }
+
+    @Test
+    void saveAndUpdate_ShouldTouchSearchStructuresOnlyOnCommit() {
+        when(productRepository.save(any(Product.class))).thenReturn(product);
+        when(productRepository.findById(1)).thenReturn(Optional.of(product));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            productService.saveProduct(product);
+            productService.updateProduct(1, product);
+            verifyNoInteractions(searchIndex, suggester);
+
+            // A rollback runs afterCompletion only
+            List<TransactionSynchronization> pending = TransactionSynchronizationManager.getSynchronizations();
+            pending.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            verifyNoInteractions(searchIndex, suggester);
+
+            pending.forEach(TransactionSynchronization::afterCommit);
+            verify(searchIndex, times(2)).index(product);
+            verify(suggester, times(2)).put(product);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void updateProduct_ShouldRepriceCartsOnlyAfterAPriceChangeCommits() {
+        Product renamed = new Product();
+        renamed.setName("Renamed");
+        renamed.setPrice(100.0);
+        Product repriced = new Product();
+        repriced.setName("Renamed");
+        repriced.setPrice(120.0);
+        when(productRepository.findById(1)).thenReturn(Optional.of(product));
+        when(productRepository.save(any(Product.class))).thenReturn(product);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            productService.updateProduct(1, renamed);
+            productService.updateProduct(1, repriced);
+            verifyNoInteractions(cartService);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(cartService, times(1)).markPriceChanged(1);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void deleteProduct_ShouldRemoveFromSearchStructures() {
+        when(productRepository.existsById(1)).thenReturn(true);
+
+        productService.deleteProduct(1);
+
+        verify(searchIndex).remove(1);
+        verify(suggester).remove(1);
+    }
+
+    @Test
+    void searchProductsByName_ShouldUseIndexRankingOrder() {
+        Product other = new Product();
+        other.setId(2);
+        other.setName("Test Phone");
+        when(searchIndex.isReady()).thenReturn(true);
+        when(searchIndex.search("test", ProductService.MAX_PAGE_SIZE)).thenReturn(List.of(2, 1));
+        when(productRepository.findAllById(List.of(2, 1))).thenReturn(List.of(product, other));
+
+        List<Product> result = productService.searchProductsByName("test");
+
+        assertEquals(List.of(other, product), result);
+        verify(productRepository, never()).findByNameContainingIgnoreCase(anyString());
+    }
+
+    @Test
+    void searchProductsByName_ShouldFallBackToDatabaseUntilIndexIsBuilt() {
+        when(searchIndex.isReady()).thenReturn(false);
+        when(productRepository.findByNameContainingIgnoreCase("test")).thenReturn(List.of(product));
+
+        assertEquals(List.of(product), productService.searchProductsByName("test"));
+        verify(searchIndex, never()).search(anyString(), anyInt());
+    }
+}
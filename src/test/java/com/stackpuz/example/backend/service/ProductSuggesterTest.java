@@ -0,0 +1,160 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.dto.ProductSuggestion;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.repository.OrderItemRepository;
+import com.stackpuz.example.backend.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSuggesterTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private OrderItemRepository orderItemRepository;
+
+    private ProductSuggester suggester;
+
+    @BeforeEach
+    void setUp() {
+        suggester = new ProductSuggester(productRepository, orderItemRepository);
+        suggester.put(product(1, "Acer Iconia Tab A101"));
+        suggester.put(product(2, "Acer Iconia Tab A3-A20FHD"));
+        suggester.put(product(3, "Asus ROG Phone 3 Strix"));
+        suggester.put(product(4, "Honor 20 Pro"));
+    }
+
+    private static Product product(int id, String name) {
+        Product p = new Product();
+        p.setId(id);
+        p.setName(name);
+        return p;
+    }
+
+    private static OrderItemRepository.ProductUnits units(int productId, long units) {
+        return new OrderItemRepository.ProductUnits() {
+            public Integer getProductId() {
+                return productId;
+            }
+
+            public Long getUnits() {
+                return units;
+            }
+        };
+    }
+
+    private static List<Integer> ids(List<ProductSuggestion> suggestions) {
+        return suggestions.stream().map(ProductSuggestion::id).toList();
+    }
+
+    @Test
+    void suggest_matchesStartOfAnyWord() {
+        assertEquals(List.of(1, 2), ids(suggester.suggest("icon", 10)));
+        assertEquals(List.of(3), ids(suggester.suggest("rog ph", 10)));
+        assertEquals(List.of(), ids(suggester.suggest("conia", 10)));
+    }
+
+    @Test
+    void suggest_ranksByUnitsSoldAndRespectsLimit() {
+        when(orderItemRepository.sumUnitsByProduct()).thenReturn(List.of(units(2, 40), units(3, 5)));
+        suggester.refreshWeights();
+
+        assertEquals(List.of(2, 3), ids(suggester.suggest("a", 2)));
+    }
+
+    @Test
+    void suggest_reflectsRenamesAndRemovals() {
+        suggester.put(product(4, "Huawei P30"));
+        assertTrue(suggester.suggest("honor", 5).isEmpty());
+        assertEquals(List.of(new ProductSuggestion(4, "Huawei P30")), suggester.suggest("hua", 5));
+
+        suggester.remove(4);
+        assertTrue(suggester.suggest("hua", 5).isEmpty());
+    }
+
+    @Test
+    void suggest_followsWritesAndWeights() {
+        when(orderItemRepository.sumUnitsByProduct()).thenReturn(List.of(units(1, 3), units(3, 9)));
+        suggester.refreshWeights();
+        assertEquals(List.of(3, 1, 2), ids(suggester.suggest("a", 10)));
+
+        suggester.put(product(5, "Alcatel 1"));
+        suggester.remove(3);
+        assertEquals(List.of(1, 5, 2), ids(suggester.suggest("a", 10)));
+        assertEquals(List.of(5), ids(suggester.suggest("alc", 10)));
+    }
+
+    // Precomputed heads (short prefixes here match well over SCAN_LIMIT keys), incremental writes and range scans
+    // must all agree with ranking every name by hand
+    @Test
+    void suggest_agreesWithABruteForceRankingAcrossWrites() {
+        Random random = new Random(42);
+        String[] words = {"acer", "alcatel", "apple", "asus", "honor", "huawei", "iconia", "ipad", "iphone", "pro",
+                "max", "mini", "phone", "tab", "xiaomi", "redmi", "note", "galaxy", "a10", "a20"};
+        Map<Integer, String> catalog = new HashMap<>();
+        suggester.remove(1);
+        suggester.remove(2);
+        suggester.remove(3);
+        suggester.remove(4);
+        List<OrderItemRepository.ProductUnits> sold = new ArrayList<>();
+        for (int id = 1; id <= 1000; id++) {
+            catalog.put(id, name(random, words));
+            sold.add(units(id, random.nextInt(50)));
+        }
+        when(orderItemRepository.sumUnitsByProduct()).thenReturn(sold);
+        Map<Integer, Long> weights = new HashMap<>();
+        sold.forEach(row -> weights.put(row.getProductId(), row.getUnits()));
+        catalog.forEach((id, name) -> suggester.put(product(id, name)));
+        suggester.refreshWeights();
+
+        for (int round = 0; round < 30; round++) {
+            int id = 1 + random.nextInt(1100);
+            if (random.nextInt(4) == 0) {
+                catalog.remove(id);
+                suggester.remove(id);
+            } else {
+                catalog.put(id, name(random, words));
+                suggester.put(product(id, catalog.get(id)));
+            }
+            for (String prefix : List.of("a", "ip", "pro", "iph", "ipho", "tab m", "x", "a2", "galaxy n")) {
+                assertEquals(bruteForce(catalog, weights, prefix, 8), ids(suggester.suggest(prefix, 8)), prefix);
+            }
+        }
+    }
+
+    private static String name(Random random, String[] words) {
+        StringJoiner name = new StringJoiner(" ");
+        for (int i = 0, count = 1 + random.nextInt(4); i < count; i++) {
+            name.add(words[random.nextInt(words.length)]);
+        }
+        return name.toString();
+    }
+
+    private static List<Integer> bruteForce(Map<Integer, String> catalog, Map<Integer, Long> weights, String prefix, int limit) {
+        return catalog.entrySet().stream()
+                .filter(entry -> (" " + ProductSuggester.normalize(entry.getValue())).contains(" " + prefix))
+                .sorted(Comparator.<Map.Entry<Integer, String>>comparingLong(entry -> -weights.getOrDefault(entry.getKey(), 0L))
+                        .thenComparingInt(entry -> entry.getValue().length())
+                        .thenComparingInt(Map.Entry::getKey))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @Test
+    void suggest_blankPrefixReturnsNothing() {
+        assertTrue(suggester.suggest("  ", 5).isEmpty());
+        assertTrue(suggester.suggest(null, 5).isEmpty());
+    }
+}
@@ -0,0 +1,95 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.dto.RatingSummary;
+import com.stackpuz.example.backend.entity.ProductRatingStats;
+import com.stackpuz.example.backend.repository.ProductRatingStatsRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RatingStatsServiceTest {
+
+    @Mock
+    private ProductRatingStatsRepository repository;
+
+    @InjectMocks
+    private RatingStatsService ratingStatsService;
+
+    @Test
+    void recordAdded_incrementsSumCountAndStarBucket() {
+        ratingStatsService.recordAdded(1, 4);
+
+        verify(repository).applyDelta(1, 4, 1, 0, 0, 0, 1, 0);
+    }
+
+    @Test
+    void recordRemoved_decrementsSumCountAndStarBucket() {
+        ratingStatsService.recordRemoved(1, 2);
+
+        verify(repository).applyDelta(1, -2, -1, 0, -1, 0, 0, 0);
+    }
+
+    @Test
+    void recordChanged_movesBetweenBucketsWithoutChangingCount() {
+        ratingStatsService.recordChanged(1, 5, 3);
+
+        verify(repository).applyDelta(1, -2, 0, 0, 0, 1, 0, -1);
+    }
+
+    @Test
+    void recordChanged_sameRatingIsNoOp() {
+        ratingStatsService.recordChanged(1, 3, 3);
+
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void getSummary_computesAverageFromStoredTotals() {
+        ProductRatingStats stats = new ProductRatingStats();
+        stats.setProductId(1);
+        stats.setRatingSum(9);
+        stats.setRatingCount(2);
+        when(repository.findById(1)).thenReturn(Optional.of(stats));
+
+        RatingSummary summary = ratingStatsService.getSummary(1);
+
+        assertEquals(4.5, summary.average());
+        assertEquals(2L, summary.count());
+    }
+
+    @Test
+    void getSummaries_fillsMissingProductsWithZero() {
+        ProductRatingStats stats = new ProductRatingStats();
+        stats.setProductId(1);
+        stats.setRatingSum(12);
+        stats.setRatingCount(3);
+        when(repository.findAllById(anyIterable())).thenReturn(List.of(stats));
+
+        Map<Integer, RatingSummary> summaries = ratingStatsService.getSummaries(List.of(1, 2));
+
+        assertEquals(4.0, summaries.get(1).average());
+        assertEquals(3L, summaries.get(1).count());
+        assertEquals(RatingSummary.empty(2), summaries.get(2));
+        verify(repository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    void rebuild_replacesAllRowsFromReviews() {
+        ratingStatsService.rebuild();
+
+        var order = inOrder(repository);
+        order.verify(repository).deleteAllStats();
+        order.verify(repository).insertFromReviews();
+    }
+}
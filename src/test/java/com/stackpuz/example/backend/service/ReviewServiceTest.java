@@ -1,5 +1,6 @@
 package com.stackpuz.example.backend.service;
 
+import com.stackpuz.example.backend.dto.RatingSummary;
 import com.stackpuz.example.backend.entity.Product;
 import com.stackpuz.example.backend.entity.Review;
 import com.stackpuz.example.backend.entity.User;
@@ -15,7 +16,11 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -29,6 +34,8 @@ class ReviewServiceTest {
     private ProductRepository productRepository;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private RatingStatsService ratingStatsService;
 
     @InjectMocks
     private ReviewService reviewService;
@@ -52,15 +59,15 @@ class ReviewServiceTest {
     @Test
     void addOrUpdateReview_createsNew_whenNotExists() {
         when(productRepository.findById(1)).thenReturn(Optional.of(product));
-        when(userRepository.findByUsername("john")).thenReturn(Optional.of(user));
-        when(reviewRepository.findByProductAndUser(product, user)).thenReturn(Optional.empty());
+        when(userRepository.getReferenceById(100L)).thenReturn(user);
+        when(reviewRepository.findByProductAndUserForUpdate(product, user)).thenReturn(Optional.empty());
         when(reviewRepository.save(any(Review.class))).thenAnswer(inv -> {
             Review r = inv.getArgument(0);
             r.setId(55L);
             return r;
         });
 
-        Review r = reviewService.addOrUpdateReview(1, "john", 5, "great");
+        Review r = reviewService.addOrUpdateReview(1, 100L, 5, "great");
 
         assertNotNull(r.getId());
         assertEquals(5, r.getRating());
@@ -72,16 +79,16 @@ class ReviewServiceTest {
     @Test
     void addOrUpdateReview_updatesExisting_whenExists() {
         when(productRepository.findById(1)).thenReturn(Optional.of(product));
-        when(userRepository.findByUsername("john")).thenReturn(Optional.of(user));
+        when(userRepository.getReferenceById(100L)).thenReturn(user);
         Review existing = new Review();
         existing.setId(77L);
         existing.setProduct(product);
         existing.setUser(user);
         existing.setRating(3);
-        when(reviewRepository.findByProductAndUser(product, user)).thenReturn(Optional.of(existing));
+        when(reviewRepository.findByProductAndUserForUpdate(product, user)).thenReturn(Optional.of(existing));
         when(reviewRepository.save(any(Review.class))).thenAnswer(inv -> inv.getArgument(0));
 
-        Review r = reviewService.addOrUpdateReview(1, "john", 4, "updated");
+        Review r = reviewService.addOrUpdateReview(1, 100L, 4, "updated");
 
         assertEquals(77L, r.getId());
         assertEquals(4, r.getRating());
@@ -91,36 +98,124 @@ class ReviewServiceTest {
     @Test
     void addOrUpdateReview_throwsOnInvalidRating() {
         when(productRepository.findById(1)).thenReturn(Optional.of(product));
-        when(userRepository.findByUsername("john")).thenReturn(Optional.of(user));
+        when(userRepository.getReferenceById(100L)).thenReturn(user);
         assertThrows(IllegalArgumentException.class,
-                () -> reviewService.addOrUpdateReview(1, "john", 0, "bad"));
+                () -> reviewService.addOrUpdateReview(1, 100L, 0, "bad"));
         assertThrows(IllegalArgumentException.class,
-                () -> reviewService.addOrUpdateReview(1, "john", 6, "bad"));
+                () -> reviewService.addOrUpdateReview(1, 100L, 6, "bad"));
     }
 
     @Test
-    void addOrUpdateReview_throwsWhenProductOrUserMissing() {
+    void addOrUpdateReview_throwsWhenProductMissing() {
         when(productRepository.findById(1)).thenReturn(Optional.empty());
         assertThrows(EntityNotFoundException.class,
-                () -> reviewService.addOrUpdateReview(1, "john", 5, null));
-
-        when(productRepository.findById(1)).thenReturn(Optional.of(product));
-        when(userRepository.findByUsername("john")).thenReturn(Optional.empty());
-        assertThrows(EntityNotFoundException.class,
-                () -> reviewService.addOrUpdateReview(1, "john", 5, null));
+                () -> reviewService.addOrUpdateReview(1, 100L, 5, null));
+        verifyNoInteractions(userRepository);
     }
 
     @Test
-    void getAverageRating_nullBecomesZero() {
-        when(reviewRepository.getAverageRating(1)).thenReturn(null);
+    void getAverageRating_missingStatsBecomesZero() {
+        when(ratingStatsService.getSummary(1)).thenReturn(RatingSummary.empty(1));
         assertEquals(0.0, reviewService.getAverageRating(1));
+        verifyNoInteractions(reviewRepository);
     }
 
     @Test
-    void getReviewCount_nullBecomesZero() {
-        when(reviewRepository.getReviewCount(1)).thenReturn(null);
+    void getReviewCount_missingStatsBecomesZero() {
+        when(ratingStatsService.getSummary(1)).thenReturn(RatingSummary.empty(1));
         assertEquals(0L, reviewService.getReviewCount(1));
+        verifyNoInteractions(reviewRepository);
+    }
+
+    @Test
+    void getRatingSummaries_readsFromStats() {
+        Map<Integer, RatingSummary> summaries = Map.of(1, new RatingSummary(1, 4.0, 3L));
+        when(ratingStatsService.getSummaries(Set.of(1))).thenReturn(summaries);
+
+        assertEquals(summaries, reviewService.getRatingSummaries(List.of(1, 1, 1)));
+        verifyNoInteractions(reviewRepository);
+    }
+
+    @Test
+    void getRatingSummaries_rejectsMoreIdsThanAPage() {
+        List<Integer> ids = IntStream.rangeClosed(1, ProductService.MAX_PAGE_SIZE + 1).boxed().toList();
+
+        assertThrows(IllegalArgumentException.class, () -> reviewService.getRatingSummaries(ids));
+        verifyNoInteractions(ratingStatsService);
+    }
+
+    @Test
+    void addOrUpdateReview_recordsAddedRating_whenNew() {
+        when(productRepository.findById(1)).thenReturn(Optional.of(product));
+        when(userRepository.getReferenceById(100L)).thenReturn(user);
+        when(reviewRepository.findByProductAndUserForUpdate(product, user)).thenReturn(Optional.empty());
+        when(reviewRepository.save(any(Review.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        reviewService.addOrUpdateReview(1, 100L, 5, "great");
+
+        verify(ratingStatsService).recordAdded(1, 5);
+        verify(ratingStatsService, never()).recordChanged(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void addOrUpdateReview_recordsChangedRating_whenExisting() {
+        when(productRepository.findById(1)).thenReturn(Optional.of(product));
+        when(userRepository.getReferenceById(100L)).thenReturn(user);
+        Review existing = new Review();
+        existing.setId(77L);
+        existing.setRating(3);
+        when(reviewRepository.findByProductAndUserForUpdate(product, user)).thenReturn(Optional.of(existing));
+        when(reviewRepository.save(any(Review.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        reviewService.addOrUpdateReview(1, 100L, 4, "updated");
+
+        verify(ratingStatsService).recordChanged(1, 3, 4);
+        verify(ratingStatsService, never()).recordAdded(anyInt(), anyInt());
     }
 
+    @Test
+    void updateReview_recordsTheRatingReadUnderTheRowLock() {
+        Review existing = new Review();
+        existing.setId(77L);
+        existing.setProduct(product);
+        existing.setUser(user);
+        existing.setRating(2);
+        when(reviewRepository.findByIdForUpdate(77L)).thenReturn(Optional.of(existing));
+        when(reviewRepository.save(any(Review.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        reviewService.updateReview(77L, 100L, 5, "better");
+
+        verify(reviewRepository, never()).findById(anyLong());
+        verify(ratingStatsService).recordChanged(1, 2, 5);
+    }
 
+    @Test
+    void updateAndDeleteReview_rejectAnotherUsersReview() {
+        Review existing = new Review();
+        existing.setId(77L);
+        existing.setProduct(product);
+        existing.setUser(user);
+        existing.setRating(2);
+        when(reviewRepository.findByIdForUpdate(77L)).thenReturn(Optional.of(existing));
+
+        assertThrows(SecurityException.class, () -> reviewService.updateReview(77L, 200L, 5, null));
+        assertThrows(SecurityException.class, () -> reviewService.deleteReview(77L, 200L));
+        verify(reviewRepository, never()).delete(any());
+        verifyNoInteractions(userRepository, ratingStatsService);
+    }
+
+    @Test
+    void deleteReview_recordsRemovedRating() {
+        Review existing = new Review();
+        existing.setId(77L);
+        existing.setProduct(product);
+        existing.setUser(user);
+        existing.setRating(2);
+        when(reviewRepository.findByIdForUpdate(77L)).thenReturn(Optional.of(existing));
+
+        reviewService.deleteReview(77L, 100L);
+
+        verify(reviewRepository).delete(existing);
+        verify(ratingStatsService).recordRemoved(1, 2);
+    }
 }
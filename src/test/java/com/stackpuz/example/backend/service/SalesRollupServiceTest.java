@@ -0,0 +1,147 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.dto.SalesDashboard;
+import com.stackpuz.example.backend.entity.Order;
+import com.stackpuz.example.backend.entity.Product;
+import com.stackpuz.example.backend.enums.OrderStatus;
+import com.stackpuz.example.backend.event.OrderPlaced;
+import com.stackpuz.example.backend.repository.ProductRepository;
+import com.stackpuz.example.backend.repository.ProductSalesDailyRepository;
+import com.stackpuz.example.backend.repository.SalesDailyRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SalesRollupServiceTest {
+
+    @Mock
+    private SalesDailyRepository dailyRepository;
+
+    @Mock
+    private ProductSalesDailyRepository productDailyRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @InjectMocks
+    private SalesRollupService salesRollupService;
+
+    @Test
+    void onOrderPlaced_addsEventTotalsUnderPlaced() {
+        LocalDateTime orderDate = LocalDateTime.of(2024, 5, 1, 12, 0);
+        OrderPlaced event = new OrderPlaced(5L, 7L, orderDate, 45.0, List.of(
+                new OrderPlaced.Line(3, 2, 10.0), new OrderPlaced.Line(4, 1, 25.0), new OrderPlaced.Line(3, 1, 10.0)));
+
+        salesRollupService.onOrderPlaced(event);
+
+        LocalDate day = orderDate.toLocalDate();
+        verify(dailyRepository).add(day, "PLACED", 1, 4, 45.0);
+        verify(productDailyRepository).add(day, 3, "PLACED", 3, 30.0);
+        verify(productDailyRepository).add(day, 4, "PLACED", 1, 25.0);
+        verify(dailyRepository, never()).apply(any(), any(), anyInt());
+    }
+
+    @Test
+    void recordMoved_subtractsFromOldStatusThenAddsToNew() {
+        salesRollupService.recordMoved(List.of(1L, 2L), OrderStatus.PROCESSING, OrderStatus.SHIPPED);
+
+        InOrder inOrder = inOrder(dailyRepository);
+        inOrder.verify(dailyRepository).apply(List.of(1L, 2L), "PROCESSING", -1);
+        inOrder.verify(dailyRepository).apply(List.of(1L, 2L), "SHIPPED", 1);
+        verify(productDailyRepository).apply(List.of(1L, 2L), "PROCESSING", -1);
+        verify(productDailyRepository).apply(List.of(1L, 2L), "SHIPPED", 1);
+    }
+
+    @Test
+    void recordMoved_ignoresNoOpMoves() {
+        salesRollupService.recordMoved(List.of(1L), OrderStatus.SHIPPED, OrderStatus.SHIPPED);
+        salesRollupService.recordMoved(List.of(), OrderStatus.PLACED, OrderStatus.SHIPPED);
+
+        verifyNoInteractions(dailyRepository, productDailyRepository);
+    }
+
+    @Test
+    void recordRemoved_groupsOrdersByStatus() {
+        Order placed = new Order();
+        placed.setId(1L);
+        Order shipped = new Order();
+        shipped.setId(2L);
+        shipped.setStatus(OrderStatus.SHIPPED);
+
+        salesRollupService.recordRemoved(List.of(placed, shipped));
+
+        verify(dailyRepository).apply(List.of(1L), "PLACED", -1);
+        verify(dailyRepository).apply(List.of(2L), "SHIPPED", -1);
+    }
+
+    @Test
+    void rebuild_replacesRollupsFromOrders() {
+        salesRollupService.rebuild();
+
+        InOrder inOrder = inOrder(dailyRepository, productDailyRepository);
+        inOrder.verify(dailyRepository).deleteAllRows();
+        inOrder.verify(productDailyRepository).deleteAllRows();
+        inOrder.verify(dailyRepository).insertFromOrders();
+        inOrder.verify(productDailyRepository).insertFromOrders();
+    }
+
+    @Test
+    void rebuild_subtractsOrdersStillWaitingInTheOutbox() {
+        LocalDateTime orderDate = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(outboxService.lockPending(OrderPlaced.class)).thenReturn(List.of(
+                new OrderPlaced(5L, 7L, orderDate, 20.0, List.of(new OrderPlaced.Line(3, 2, 10.0)))));
+
+        salesRollupService.rebuild();
+
+        InOrder inOrder = inOrder(dailyRepository, productDailyRepository);
+        inOrder.verify(dailyRepository).insertFromOrders();
+        inOrder.verify(productDailyRepository).insertFromOrders();
+        inOrder.verify(dailyRepository).add(orderDate.toLocalDate(), "PLACED", -1, -2, -20.0);
+        inOrder.verify(productDailyRepository).add(orderDate.toLocalDate(), 3, "PLACED", -2, -20.0);
+    }
+
+    @Test
+    void getDashboard_defaultsToLastThirtyDaysWithoutCanceled() {
+        ProductSalesDailyRepository.ProductTotals top = mock(ProductSalesDailyRepository.ProductTotals.class);
+        when(top.getProductId()).thenReturn(3);
+        when(top.getUnits()).thenReturn(4L);
+        when(top.getRevenue()).thenReturn(40.0);
+        when(productDailyRepository.topProducts(any(), any(), any(), any())).thenReturn(List.of(top));
+        Product product = new Product();
+        product.setId(3);
+        product.setName("Phone");
+        when(productRepository.findAllById(List.of(3))).thenReturn(List.of(product));
+
+        SalesDashboard dashboard = salesRollupService.getDashboard(null, LocalDate.of(2024, 5, 31), null);
+
+        assertEquals(LocalDate.of(2024, 5, 2), dashboard.from());
+        assertEquals(EnumSet.complementOf(EnumSet.of(OrderStatus.CANCELED)), dashboard.statuses());
+        assertEquals(List.of(new SalesDashboard.ProductLine(3, "Phone", 4, 40.0)), dashboard.topProducts());
+        verify(dailyRepository).sumByDay(LocalDate.of(2024, 5, 2), LocalDate.of(2024, 5, 31), dashboard.statuses());
+    }
+
+    @Test
+    void getDashboard_rejectsInvalidRanges() {
+        assertThrows(IllegalArgumentException.class, () -> salesRollupService.getDashboard(
+                LocalDate.of(2024, 6, 1), LocalDate.of(2024, 5, 1), Set.of()));
+        assertThrows(IllegalArgumentException.class, () -> salesRollupService.getDashboard(
+                LocalDate.of(2020, 1, 1), LocalDate.of(2024, 1, 1), Set.of()));
+    }
+}
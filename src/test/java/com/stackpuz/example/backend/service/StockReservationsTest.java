@@ -0,0 +1,99 @@
+package com.stackpuz.example.backend.service;
+
+import com.stackpuz.example.backend.repository.ProductStockRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationsTest {
+
+    @Mock
+    private ProductStockRepository stockRepository;
+
+    @InjectMocks
+    private StockReservations reservations;
+
+    @Test
+    void tryHold_ShouldNeverHandOutMoreThanTheStock() throws Exception {
+        when(stockRepository.findQuantity(1)).thenReturn(Optional.of(100));
+        when(stockRepository.findQuantity(2)).thenReturn(Optional.of(37));
+        int threads = 64;
+        AtomicInteger held1 = new AtomicInteger();
+        AtomicInteger held2 = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 50; i++) {
+                        if (reservations.tryHold(1, 1)) {
+                            held1.incrementAndGet();
+                        }
+                        if (reservations.tryHold(2, 2)) {
+                            held2.addAndGet(2);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(100, held1.get());
+        assertEquals(36, held2.get());
+        // Loaded once per product, not once per request
+        verify(stockRepository, times(1)).findQuantity(1);
+        verify(stockRepository, times(1)).findQuantity(2);
+    }
+
+    @Test
+    void release_ShouldMakeUnitsAvailableAgain() {
+        when(stockRepository.findQuantity(1)).thenReturn(Optional.of(1));
+
+        assertTrue(reservations.tryHold(1, 1));
+        assertFalse(reservations.tryHold(1, 1));
+        reservations.release(1, 1);
+        assertTrue(reservations.tryHold(1, 1));
+    }
+
+    @Test
+    void tryHold_ShouldAlwaysAllowUntrackedProducts() {
+        when(stockRepository.findQuantity(3)).thenReturn(Optional.empty());
+
+        assertTrue(reservations.tryHold(3, 1_000_000));
+        assertFalse(reservations.isTracked(3));
+        assertTrue(reservations.isTracked(4));
+    }
+
+    @Test
+    void invalidate_ShouldReloadFromTheDatabase() {
+        when(stockRepository.findQuantity(1)).thenReturn(Optional.of(0), Optional.of(5));
+
+        assertFalse(reservations.tryHold(1, 1));
+        reservations.invalidate(1);
+        assertTrue(reservations.tryHold(1, 5));
+    }
+}